@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.arakelian.store.StoreConfig;
+import com.arakelian.store.event.StoreListener;
+import com.arakelian.store.memory.InMemoryStore;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Measures {@link com.arakelian.store.AbstractStore#getAll(java.util.Collection)} for several
+ * partition sizes, and the {@link com.arakelian.store.AbstractStore#idsOf(List)} conversion it
+ * performs, for lists of ids, lists of values and mixed lists.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GetAllBenchmark {
+    /**
+     * Exposes {@link #idsOf(List)} to the benchmark.
+     */
+    public static final class Store extends InMemoryStore<Item> {
+        public Store(final StoreConfig<Item> config) {
+            super(config);
+        }
+
+        public Object[] ids(final List<?> idsOrValues) {
+            return idsOf(idsOrValues);
+        }
+    }
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({ "10", "100", "1000" })
+    public int partitionSize;
+
+    private Store store;
+
+    private List<String> ids;
+
+    private List<Item> values;
+
+    private List<Object> mixed;
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Item> getAll() {
+        return store.getAll(ids);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Object[] idsOfIds() {
+        return store.ids(ids);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Object[] idsOfMixed() {
+        return store.ids(mixed);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Object[] idsOfValues() {
+        return store.ids(values);
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        store = new Store(new StoreConfig<Item>() {
+            @Override
+            public Class<Item> getClazz() {
+                return Item.class;
+            }
+
+            @Override
+            public List<StoreListener<Item>> getListeners() {
+                return ImmutableList.of();
+            }
+
+            @Override
+            public int getPartitionSize() {
+                return partitionSize;
+            }
+        });
+
+        ids = new ArrayList<>(BATCH_SIZE);
+        values = new ArrayList<>(BATCH_SIZE);
+        mixed = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final Item item = new Item(Integer.toString(i), "item", i);
+            store.put(item);
+            ids.add(item.getId());
+            values.add(item);
+            mixed.add(i % 2 == 0 ? item : item.getId());
+        }
+    }
+}
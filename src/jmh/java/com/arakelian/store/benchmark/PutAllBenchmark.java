@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.arakelian.store.StoreConfig;
+import com.arakelian.store.event.StoreListener;
+import com.arakelian.store.json.JacksonStoreObjectMapper;
+import com.arakelian.store.memory.InMemoryStore;
+import com.arakelian.store.wal.FsyncPolicy;
+import com.arakelian.store.wal.WriteAheadLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Compares storing a batch of values one at a time with {@link InMemoryStore#put} against a single
+ * call to {@link InMemoryStore#putAll}, when every write is made durable by a {@link WriteAheadLog}
+ * that forces each commit to disk.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PutAllBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({ "10", "100" })
+    public int partitionSize;
+
+    private Path directory;
+
+    private WriteAheadLog<Item> wal;
+
+    private InMemoryStore<Item> store;
+
+    private List<Item> batch;
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void put() {
+        for (final Item item : batch) {
+            store.put(item);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void putAll() {
+        store.putAll(batch);
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("putall-benchmark");
+        wal = new WriteAheadLog<>(directory,
+                new JacksonStoreObjectMapper<>(Item.class, new ObjectMapper()), FsyncPolicy.ALWAYS);
+        store = new InMemoryStore<>(new StoreConfig<Item>() {
+            @Override
+            public Class<Item> getClazz() {
+                return Item.class;
+            }
+
+            @Override
+            public List<StoreListener<Item>> getListeners() {
+                return ImmutableList.of();
+            }
+
+            @Override
+            public int getPartitionSize() {
+                return partitionSize;
+            }
+
+            @Override
+            public WriteAheadLog<Item> getWriteAheadLog() {
+                return wal;
+            }
+        });
+
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new Item(Integer.toString(i), "item", i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        wal.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
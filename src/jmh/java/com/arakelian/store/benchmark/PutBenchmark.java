@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.arakelian.store.StoreConfig;
+import com.arakelian.store.event.StoreListener;
+import com.arakelian.store.memory.InMemoryStore;
+
+/**
+ * Measures {@link com.arakelian.store.AbstractMutableStore#put} and
+ * {@link com.arakelian.store.AbstractMutableStore#putAll} on an {@link InMemoryStore}, with no
+ * listeners, one listener and several listeners, to show the cost of notification.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PutBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({ "0", "1", "4" })
+    public int listeners;
+
+    private InMemoryStore<Item> store;
+
+    private List<Item> batch;
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void put() {
+        for (final Item item : batch) {
+            store.put(item);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void putAll() {
+        store.putAll(batch);
+    }
+
+    @Setup(Level.Trial)
+    public void setup(final Blackhole blackhole) {
+        final List<StoreListener<Item>> list = new ArrayList<>();
+        for (int i = 0; i < listeners; i++) {
+            list.add(new StoreListener<Item>() {
+                @Override
+                public void delete(final Item value) {
+                    blackhole.consume(value);
+                }
+
+                @Override
+                public void delete(final String id) {
+                    blackhole.consume(id);
+                }
+
+                @Override
+                public void put(final Item value) {
+                    blackhole.consume(value);
+                }
+            });
+        }
+
+        store = new InMemoryStore<>(new StoreConfig<Item>() {
+            @Override
+            public Class<Item> getClazz() {
+                return Item.class;
+            }
+
+            @Override
+            public List<StoreListener<Item>> getListeners() {
+                return list;
+            }
+        });
+
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new Item(Integer.toString(i), "item", i));
+        }
+    }
+}
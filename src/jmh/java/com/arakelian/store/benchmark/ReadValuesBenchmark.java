@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.arakelian.store.json.JacksonStoreObjectMapper;
+import com.arakelian.store.json.StoreObjectMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Measures records decoded per second when a batch is read one record at a time with
+ * {@link StoreObjectMapper#readValue(byte[])}, against the batch methods of
+ * {@link StoreObjectMapper}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadValuesBenchmark {
+    private static final int BATCH_SIZE = 1000;
+
+    private JacksonStoreObjectMapper<Item> mapper;
+
+    private List<byte[]> payloads;
+
+    private byte[] ndjson;
+
+    private ExecutorService executor;
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void readValue(final Blackhole blackhole) throws IOException {
+        for (final byte[] bytes : payloads) {
+            blackhole.consume(mapper.readValue(bytes));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Item> readValues() throws IOException {
+        return mapper.readValues(payloads);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Item> readValuesParallel() throws IOException {
+        return mapper.readValues(payloads, executor);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Item> readValuesStream() throws IOException {
+        return mapper.readValues(new ByteArrayInputStream(ndjson));
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mapper = new JacksonStoreObjectMapper<>(Item.class, new ObjectMapper());
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        payloads = new ArrayList<>(BATCH_SIZE);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final byte[] bytes = mapper.writeValueAsBytes(new Item(Integer.toString(i), "item", i));
+            payloads.add(bytes);
+            out.write(bytes);
+            out.write('\n');
+        }
+        ndjson = out.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.arakelian.store.event.StoreEventPublisher;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.TimeoutBlockingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.dsl.ProducerType;
+
+/**
+ * Measures the latency of publishing a store event, the latency of publishing an event and waiting
+ * until the handler has seen it, and the throughput of publishing events, for each producer type
+ * and wait strategy of {@link StoreEventPublisher}.
+ * Strategies that spin need a spare core for the handler thread to give meaningful results.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoreEventPublisherBenchmark {
+    public enum Strategy {
+        BLOCKING, SLEEPING, YIELDING, BUSY_SPIN, TIMEOUT_BLOCKING;
+
+        public WaitStrategy create() {
+            switch (this) {
+            case BLOCKING:
+                return new BlockingWaitStrategy();
+            case SLEEPING:
+                return new SleepingWaitStrategy();
+            case YIELDING:
+                return new YieldingWaitStrategy();
+            case BUSY_SPIN:
+                return new BusySpinWaitStrategy();
+            case TIMEOUT_BLOCKING:
+                return new TimeoutBlockingWaitStrategy(1, TimeUnit.MILLISECONDS);
+            default:
+                throw new IllegalStateException("Unknown strategy " + this);
+            }
+        }
+    }
+
+    @Param({ "SINGLE", "MULTI" })
+    public ProducerType producerType;
+
+    @Param({ "BLOCKING", "SLEEPING", "YIELDING", "BUSY_SPIN", "TIMEOUT_BLOCKING" })
+    public Strategy waitStrategy;
+
+    private StoreEventPublisher<Item> publisher;
+
+    private final Item item = new Item("1", "item", 1);
+
+    /** Number of events published by benchmark thread **/
+    private long published;
+
+    /** Number of events seen by handler **/
+    private volatile long handled;
+
+    @Benchmark
+    public void publish() {
+        publisher.put(item);
+        published++;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void publishThroughput() {
+        publisher.put(item);
+        published++;
+    }
+
+    @Benchmark
+    public void roundTrip() {
+        publisher.put(item);
+        final long target = ++published;
+        while (handled < target) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        published = 0;
+        handled = 0;
+        publisher = StoreEventPublisher.<Item> builder() //
+                .producerType(producerType) //
+                .waitStrategy(waitStrategy.create()) //
+                .handler((event, sequence, endOfBatch) -> handled = sequence + 1) //
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        publisher.close();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.arakelian.store.json.JacksonStoreObjectMapper;
+import com.arakelian.store.json.SmileStoreObjectMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Measures reading and writing a single value with {@link JacksonStoreObjectMapper}, as bytes and
+ * as a string, in JSON and in Smile.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoreObjectMapperBenchmark {
+    public enum Format {
+        JSON, SMILE;
+    }
+
+    @Param({ "JSON", "SMILE" })
+    public Format format;
+
+    private JacksonStoreObjectMapper<Item> mapper;
+
+    private final Item item = new Item("8d5f4c7e-1b0a-4f7e-9c55-3a1d2b6e0f91", "item", 42);
+
+    private byte[] bytes;
+
+    private String string;
+
+    @Benchmark
+    public Item readBytes() throws IOException {
+        return mapper.readValue(bytes);
+    }
+
+    @Benchmark
+    public Item readString() throws IOException {
+        return mapper.readValue(string);
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mapper = format == Format.SMILE ? new SmileStoreObjectMapper<>(Item.class)
+                : new JacksonStoreObjectMapper<>(Item.class, new ObjectMapper());
+        bytes = mapper.writeValueAsBytes(item);
+        string = mapper.writeValueAsString(item);
+    }
+
+    @Benchmark
+    public byte[] writeBytes() throws IOException {
+        return mapper.writeValueAsBytes(item);
+    }
+
+    @Benchmark
+    public String writeString() throws IOException {
+        return mapper.writeValueAsString(item);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.arakelian.store.StoreConfig;
+import com.arakelian.store.event.StoreListener;
+import com.arakelian.store.json.JacksonStoreObjectMapper;
+import com.arakelian.store.memory.InMemoryStore;
+import com.arakelian.store.wal.FsyncPolicy;
+import com.arakelian.store.wal.WriteAheadLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Measures put throughput of an {@link InMemoryStore} that logs every change to a
+ * {@link WriteAheadLog}, for each {@link FsyncPolicy}. Writers run concurrently so that their
+ * records are grouped into shared commits.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteAheadLogBenchmark {
+    private static final int KEYS = 100_000;
+
+    @Param({ "ALWAYS", "INTERVAL", "OS" })
+    public FsyncPolicy policy;
+
+    private Path directory;
+
+    private WriteAheadLog<Item> wal;
+
+    private InMemoryStore<Item> store;
+
+    @Benchmark
+    @Threads(1)
+    public void put() {
+        doPut();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void putConcurrent() {
+        doPut();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("wal-benchmark");
+        wal = new WriteAheadLog<>(directory,
+                new JacksonStoreObjectMapper<>(Item.class, new ObjectMapper()), policy);
+        store = new InMemoryStore<>(new StoreConfig<Item>() {
+            @Override
+            public Class<Item> getClazz() {
+                return Item.class;
+            }
+
+            @Override
+            public List<StoreListener<Item>> getListeners() {
+                return ImmutableList.of();
+            }
+
+            @Override
+            public WriteAheadLog<Item> getWriteAheadLog() {
+                return wal;
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        wal.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private void doPut() {
+        final int key = ThreadLocalRandom.current().nextInt(KEYS);
+        store.put(new Item(Integer.toString(key), "item", key));
+    }
+}
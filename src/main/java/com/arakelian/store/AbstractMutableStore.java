@@ -17,21 +17,52 @@
 
 package com.arakelian.store;
 
+import java.time.Clock;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.arakelian.store.event.StoreListener;
 import com.arakelian.store.feature.HasId;
+import com.arakelian.store.feature.HasMutableTimestamp;
+import com.arakelian.store.wal.WriteAheadLog;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
+/**
+ * Base class for mutable stores.
+ *
+ * <p>
+ * When {@link StoreConfig#isTimestamps()} is enabled and values implement
+ * {@link HasMutableTimestamp}, the created timestamp is assigned on first put and the updated
+ * timestamp on every put, before the value is written to the write-ahead log. Deletes are likewise
+ * given their time of deletion up front. The <code>do*</code> hooks only apply what they are
+ * given, so that replaying the log, or loading values through {@link LoadableStore}, reproduces
+ * the original timestamps.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
 public abstract class AbstractMutableStore<T extends HasId> extends AbstractStore<T>
-        implements MutableStore<T> {
+        implements LoadableStore<T> {
+    /** Used to assign timestamps **/
+    private final Clock clock;
+
     public AbstractMutableStore(final StoreConfig<T> config) {
+        this(config, Clock.systemUTC());
+    }
+
+    public AbstractMutableStore(final StoreConfig<T> config, final Clock clock) {
         super(config);
+        Preconditions.checkArgument(clock != null, "clock must be non-null");
+        this.clock = clock;
     }
 
     /*
@@ -41,7 +72,7 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
     @Override
     public void delete(final String id) {
         if (!StringUtils.isEmpty(id)) {
-            doDelete(id);
+            logAndDelete(id, now());
             notifyDeleted(id);
         }
     }
@@ -55,7 +86,7 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
         if (value != null) {
             final String id = value.getId();
             if (!StringUtils.isEmpty(id)) {
-                doDelete(id);
+                logAndDelete(id, now());
                 notifyDeleted(value);
             }
         }
@@ -80,12 +111,18 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
         }
 
         // process values in groups of <partition size>
-        for (final List<T> partition : Lists.partition(valuesList, config.getPartitionSize())) {
-            doDeleteAllValues(partition);
-            for (final T value : partition) {
-                notifyDeleted(value);
+        final ZonedDateTime deleted = now();
+        final WriteAheadLog<T> wal = config.getWriteAheadLog();
+        forEachPartition(Lists.partition(valuesList, config.getPartitionSize()), partition -> {
+            if (wal != null) {
+                final List<String> ids = Lists
+                        .transform(partition, value -> value != null ? value.getId() : null);
+                wal.logDeleteAll(ids, deleted, () -> doDeleteAllValues(partition, deleted));
+            } else {
+                doDeleteAllValues(partition, deleted);
             }
-        }
+            return null;
+        }, (partition, ignored) -> notifyDeletedValues(partition));
     }
 
     /*
@@ -100,10 +137,31 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
 
         // process ids in groups of <partition size>
         final ArrayList<String> list = Lists.newArrayList(ids);
-        for (final List<String> partition : Lists.partition(list, config.getPartitionSize())) {
-            doDeleteAllIds(partition);
-            for (final String id : partition) {
-                notifyDeleted(id);
+        final ZonedDateTime deleted = now();
+        final WriteAheadLog<T> wal = config.getWriteAheadLog();
+        forEachPartition(Lists.partition(list, config.getPartitionSize()), partition -> {
+            if (wal != null) {
+                wal.logDeleteAll(partition, deleted, () -> doDeleteAllIds(partition, deleted));
+            } else {
+                doDeleteAllIds(partition, deleted);
+            }
+            return null;
+        }, (partition, ignored) -> notifyDeletedIds(partition));
+    }
+
+    @Override
+    public void loadAll(final Collection<T> values, final boolean notify) {
+        if (values == null || values.size() == 0) {
+            return;
+        }
+
+        final List<T> list = requireIds(values);
+        for (final List<T> partition : Lists.partition(list, config.getPartitionSize())) {
+            doPutAll(partition);
+            if (notify) {
+                for (final StoreListener<T> listener : config.getListeners()) {
+                    listener.putAll(partition);
+                }
             }
         }
     }
@@ -120,8 +178,16 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
             throw new StoreException("Id not specified for " + value);
         }
 
+        // timestamps must be assigned before value is logged
+        Timestamps.stamp(config, value, now());
+
         // defer to actual implementation
-        doPut(value);
+        final WriteAheadLog<T> wal = config.getWriteAheadLog();
+        if (wal != null) {
+            wal.logPut(value, this::doPut);
+        } else {
+            doPut(value);
+        }
 
         // notify listeners
         for (final StoreListener<T> listener : config.getListeners()) {
@@ -138,8 +204,28 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
         if (values == null || values.size() == 0) {
             return;
         }
-        for (final T value : values) {
-            put(value);
+
+        // make sure every bean has an id before we store any of them
+        final List<T> list = requireIds(values);
+
+        // timestamps must be assigned before values are logged
+        final ZonedDateTime now = now();
+        for (final T value : list) {
+            Timestamps.stamp(config, value, now);
+        }
+
+        // process values in groups of <partition size>, one after another, so that when an id
+        // appears more than once the last value wins and listeners see the values in the same order
+        final WriteAheadLog<T> wal = config.getWriteAheadLog();
+        for (final List<T> partition : Lists.partition(list, config.getPartitionSize())) {
+            if (wal != null) {
+                wal.logPutAll(partition, () -> doPutAll(partition));
+            } else {
+                doPutAll(partition);
+            }
+            for (final StoreListener<T> listener : config.getListeners()) {
+                listener.putAll(partition);
+            }
         }
     }
 
@@ -152,8 +238,17 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
         if (values == null || values.length == 0) {
             return;
         }
-        for (final T value : values) {
-            put(value);
+        putAll(Arrays.asList(values));
+    }
+
+    /**
+     * Replays the write-ahead log configured for this store, if any, directly into the store without
+     * notifying listeners. This should be called once at startup, before the store is modified.
+     */
+    public void recover() {
+        final WriteAheadLog<T> wal = config.getWriteAheadLog();
+        if (wal != null) {
+            wal.replay(this::doPut, (id, deleted) -> doUnloadAll(Collections.singletonList(id), deleted));
         }
     }
 
@@ -164,6 +259,21 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
                 .toString();
     }
 
+    @Override
+    public void unloadAll(final List<String> ids, final ZonedDateTime deleted, final boolean notify) {
+        Preconditions.checkArgument(deleted != null, "deleted must be non-null");
+        if (ids == null || ids.size() == 0) {
+            return;
+        }
+
+        for (final List<String> partition : Lists.partition(ids, config.getPartitionSize())) {
+            doUnloadAll(partition, deleted);
+            if (notify) {
+                notifyDeletedIds(partition);
+            }
+        }
+    }
+
     /**
      * Internal method to delete a value identified by the given id.
      *
@@ -172,6 +282,20 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
      */
     protected abstract void doDelete(final String id);
 
+    /**
+     * Internal method to delete a value identified by the given id, at the given time. The default
+     * implementation ignores the time of deletion; engines that keep tombstones should override
+     * this method.
+     *
+     * @param id
+     *            uniquely identifies the value, guaranteed to be non-empty
+     * @param deleted
+     *            time of deletion
+     */
+    protected void doDelete(final String id, final ZonedDateTime deleted) {
+        doDelete(id);
+    }
+
     /**
      * Internal method to delete the given values.
      *
@@ -180,6 +304,19 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
      */
     protected abstract void doDeleteAllIds(final List<String> ids);
 
+    /**
+     * Internal method to delete the given values, at the given time. The default implementation
+     * ignores the time of deletion; engines that keep tombstones should override this method.
+     *
+     * @param ids
+     *            list of ids to delete, already partitioned into a small list
+     * @param deleted
+     *            time of deletion
+     */
+    protected void doDeleteAllIds(final List<String> ids, final ZonedDateTime deleted) {
+        doDeleteAllIds(ids);
+    }
+
     /**
      * Internal method to delete the given values.
      *
@@ -188,6 +325,19 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
      */
     protected abstract void doDeleteAllValues(final List<T> values);
 
+    /**
+     * Internal method to delete the given values, at the given time. The default implementation
+     * ignores the time of deletion; engines that keep tombstones should override this method.
+     *
+     * @param values
+     *            list of values to delete, already partitioned into a small list
+     * @param deleted
+     *            time of deletion
+     */
+    protected void doDeleteAllValues(final List<T> values, final ZonedDateTime deleted) {
+        doDeleteAllValues(values);
+    }
+
     /**
      * Internal method that gets all values with the given ids, and appends them to the given list.
      *
@@ -208,6 +358,37 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
      */
     protected abstract void doPut(final T value);
 
+    /**
+     * Internal method that stores the given values. The default implementation stores each value
+     * individually; engines that can write several values in one operation should override this
+     * method.
+     *
+     * @param values
+     *            list of values to store, already partitioned into a small list, guaranteed not to
+     *            contain nulls or values without ids
+     */
+    protected void doPutAll(final List<T> values) {
+        for (final T value : values) {
+            doPut(value);
+        }
+    }
+
+    /**
+     * Internal method that applies deletions that were made elsewhere, such as those replayed from
+     * the write-ahead log. Unlike {@link #doDeleteAllIds(List, ZonedDateTime)}, values that are
+     * already soft-deleted must be left as they are. The default implementation defers to
+     * {@link #doDeleteAllIds(List, ZonedDateTime)}, which is correct for engines that do not keep
+     * tombstones.
+     *
+     * @param ids
+     *            list of ids to delete, already partitioned into a small list
+     * @param deleted
+     *            time of deletion
+     */
+    protected void doUnloadAll(final List<String> ids, final ZonedDateTime deleted) {
+        doDeleteAllIds(ids, deleted);
+    }
+
     protected void notifyDeleted(final String id) {
         if (!StringUtils.isEmpty(id)) {
             for (final StoreListener<T> listener : config.getListeners()) {
@@ -223,4 +404,63 @@ public abstract class AbstractMutableStore<T extends HasId> extends AbstractStor
             }
         }
     }
+
+    protected void notifyDeletedIds(final List<String> ids) {
+        final List<String> deleted = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id)) {
+                deleted.add(id);
+            }
+        }
+        if (deleted.size() != 0) {
+            for (final StoreListener<T> listener : config.getListeners()) {
+                listener.deleteAllIds(deleted);
+            }
+        }
+    }
+
+    protected void notifyDeletedValues(final List<T> values) {
+        final List<T> deleted = new ArrayList<>(values.size());
+        for (final T value : values) {
+            if (value != null && !StringUtils.isEmpty(value.getId())) {
+                deleted.add(value);
+            }
+        }
+        if (deleted.size() != 0) {
+            for (final StoreListener<T> listener : config.getListeners()) {
+                listener.deleteAllValues(deleted);
+            }
+        }
+    }
+
+    /**
+     * Returns the current time, according to the clock used to assign timestamps.
+     *
+     * @return the current time
+     */
+    protected ZonedDateTime now() {
+        return ZonedDateTime.now(clock);
+    }
+
+    private void logAndDelete(final String id, final ZonedDateTime deleted) {
+        final WriteAheadLog<T> wal = config.getWriteAheadLog();
+        if (wal != null) {
+            wal.logDelete(id, deleted, key -> doDelete(key, deleted));
+        } else {
+            doDelete(id, deleted);
+        }
+    }
+
+    private List<T> requireIds(final Collection<T> values) {
+        final List<T> list = new ArrayList<>(values.size());
+        for (final T value : values) {
+            if (value != null) {
+                if (StringUtils.isEmpty(value.getId())) {
+                    throw new StoreException("Id not specified for " + value);
+                }
+                list.add(value);
+            }
+        }
+        return list;
+    }
 }
@@ -17,13 +17,20 @@
 
 package com.arakelian.store;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.arakelian.store.feature.HasId;
+import com.arakelian.store.metrics.StoreMetrics;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.Lists;
 
@@ -53,9 +60,25 @@ public abstract class AbstractStore<T extends HasId> implements Store<T> {
         }
 
         // fetch records in groups of X
+        final List<List<String>> partitions = Lists.partition(idList, config.getPartitionSize());
+        final StoreMetrics metrics = config.getMetrics();
+        if (metrics != null) {
+            metrics.recordPartitions(partitions.size());
+        }
         List<T> result = null;
-        for (final List<String> partition : Lists.partition(idList, config.getPartitionSize())) {
-            result = doGetAll(result, partition);
+        if (config.getExecutor() == null || partitions.size() == 1) {
+            for (final List<String> partition : partitions) {
+                result = doGetAll(result, partition);
+            }
+        } else {
+            // partitions are fetched concurrently but merged in order of ids
+            final List<T> merged = new ArrayList<>(idList.size());
+            forEachPartition(partitions, partition -> doGetAll(null, partition), (partition, values) -> {
+                if (values != null) {
+                    merged.addAll(values);
+                }
+            });
+            result = merged;
         }
 
         // make sure we always return non-null list
@@ -98,6 +121,77 @@ public abstract class AbstractStore<T extends HasId> implements Store<T> {
      */
     protected abstract List<T> doGetAll(List<T> result, final List<String> ids);
 
+    /**
+     * Applies a function to each of the given partitions, and passes each partition and its result
+     * to a consumer on the calling thread, in partition order.
+     *
+     * <p>
+     * If {@link StoreConfig#getExecutor()} is configured, the function is applied to up to
+     * {@link StoreConfig#getMaxInFlightPartitions()} partitions concurrently; otherwise it is
+     * applied to one partition after another on the calling thread. If the function fails, no
+     * further partitions are started, partitions already started are allowed to finish and are
+     * passed to the consumer, and the first failure is then rethrown.
+     * </p>
+     *
+     * @param partitions
+     *            partitions to process
+     * @param function
+     *            processes a partition
+     * @param consumer
+     *            receives each partition and its result
+     * @param <P>
+     *            type of partition element
+     * @param <R>
+     *            type of result
+     */
+    protected <P, R> void forEachPartition(
+            final List<List<P>> partitions,
+            final Function<List<P>, R> function,
+            final BiConsumer<List<P>, R> consumer) {
+        final Executor executor = config.getExecutor();
+        if (executor == null || partitions.size() <= 1) {
+            for (final List<P> partition : partitions) {
+                consumer.accept(partition, function.apply(partition));
+            }
+            return;
+        }
+
+        final int maxInFlight = Math.max(1, config.getMaxInFlightPartitions());
+        final List<CompletableFuture<R>> futures = new ArrayList<>(partitions.size());
+        RuntimeException failure = null;
+        for (int i = 0; i < partitions.size(); i++) {
+            // keep partitions running ahead of the one we are waiting for
+            while (failure == null && futures.size() < partitions.size()
+                    && futures.size() < i + maxInFlight) {
+                final List<P> partition = partitions.get(futures.size());
+                futures.add(CompletableFuture.supplyAsync(() -> function.apply(partition), executor));
+            }
+            if (i == futures.size()) {
+                break;
+            }
+
+            final R result;
+            try {
+                result = futures.get(i).join();
+            } catch (final CompletionException e) {
+                final RuntimeException cause = e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause()
+                        : new StoreException(e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+                continue;
+            }
+            consumer.accept(partitions.get(i), result);
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
     /**
      * Returns an array of non-empty ids from the given list of ids or values.
      *
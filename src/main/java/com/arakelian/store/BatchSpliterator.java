@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Spliterator over an iterator that cannot be split itself, such as a merge of several sorted
+ * sources. Each split copies a fixed-size batch of elements into an array that is handed to another
+ * thread, so that work done downstream of the iterator can proceed in parallel.
+ *
+ * <p>
+ * Only sequential traversal uses memory bounded by the iterator itself. Since the size of the
+ * iterator is unknown, a parallel stream keeps splitting until the iterator is exhausted, and may
+ * hold batches covering most of the elements before downstream work has consumed them.
+ * </p>
+ *
+ * @param <E>
+ *            type of element
+ */
+public final class BatchSpliterator<E> implements Spliterator<E> {
+    /** Underlying iterator **/
+    private final Iterator<? extends E> iterator;
+
+    /** Number of elements in each split **/
+    private final int batchSize;
+
+    /** Characteristics of elements **/
+    private final int characteristics;
+
+    public BatchSpliterator(
+            final Iterator<? extends E> iterator,
+            final int batchSize,
+            final int characteristics) {
+        Preconditions.checkArgument(iterator != null, "iterator must be non-null");
+        Preconditions.checkArgument(batchSize > 0, "batchSize must be positive");
+        this.iterator = iterator;
+        this.batchSize = batchSize;
+        this.characteristics = characteristics & ~(SIZED | SUBSIZED);
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super E> action) {
+        iterator.forEachRemaining(action);
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super E> action) {
+        if (!iterator.hasNext()) {
+            return false;
+        }
+        action.accept(iterator.next());
+        return true;
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        final Object[] batch = new Object[batchSize];
+        int n = 0;
+        while (n < batchSize && iterator.hasNext()) {
+            batch[n++] = iterator.next();
+        }
+        return Spliterators.spliterator(batch, 0, n, characteristics);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import com.arakelian.store.feature.HasId;
+
+/**
+ * Mutable store that can be loaded with changes that were already made elsewhere, such as the
+ * contents of a snapshot or the changes shipped to a read replica.
+ *
+ * <p>
+ * Loaded values are stored exactly as given: timestamps are not assigned, and changes are not
+ * written to the store's write-ahead log, since they are already durable at their source.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public interface LoadableStore<T extends HasId> extends MutableStore<T> {
+    /**
+     * Stores the given values as they are.
+     *
+     * @param values
+     *            values to store
+     * @param notify
+     *            true if listeners should be notified of the values stored
+     */
+    public void loadAll(Collection<T> values, boolean notify);
+
+    /**
+     * Deletes the values with the given ids, recording the given time of deletion. Unlike
+     * {@link #deleteAll(String...)}, unloading a value that is already soft-deleted leaves its
+     * tombstone alone, so the same deletions may safely be unloaded more than once.
+     *
+     * @param ids
+     *            ids of values to delete
+     * @param deleted
+     *            time at which the values were deleted
+     * @param notify
+     *            true if listeners should be notified of the ids deleted
+     */
+    public void unloadAll(List<String> ids, ZonedDateTime deleted, boolean notify);
+}
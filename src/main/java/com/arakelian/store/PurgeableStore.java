@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.feature.HasSoftDeletes;
+
+/**
+ * Mutable store that retains soft-deleted values, and allows them to be permanently removed once
+ * they are no longer needed.
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public interface PurgeableStore<T extends HasId> extends MutableStore<T> {
+    /**
+     * Returns a lazily evaluated stream of the ids of values that were soft-deleted before the
+     * given time, either by a delete that left a tombstone behind, or by setting
+     * {@link HasSoftDeletes#getDeleted()}.
+     *
+     * @param before
+     *            exclusive upper bound of deletion time
+     * @return stream of ids of values soft-deleted before the given time
+     */
+    public Stream<String> deletedIds(ZonedDateTime before);
+
+    /**
+     * Permanently removes the values with the given ids, if they are still soft-deleted. Values
+     * that have been stored again since they were deleted are left alone. Listeners are notified
+     * of each id that was removed.
+     *
+     * @param ids
+     *            ids of soft-deleted values
+     * @return number of values removed
+     */
+    public int purgeAll(List<String> ids);
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import java.util.stream.Stream;
+
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.feature.HasSoftDeletes;
+
+/**
+ * Store whose contents can be scanned as a lazily evaluated stream.
+ *
+ * <p>
+ * Streams are weakly consistent: they reflect some state of the store at or since the creation of
+ * the stream, never throw {@link java.util.ConcurrentModificationException}, and may or may not
+ * reflect changes made while they are consumed. Sequential streams use memory bounded regardless of
+ * the size of the store. Streams can be made {@link Stream#parallel() parallel} to spread
+ * deserialization of values across cores, but a parallel stream may buffer a large part of the
+ * store while it splits, so prefer sequential streams when scanning stores larger than the heap.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public interface ScannableStore<T extends HasId> extends Store<T> {
+    /**
+     * Returns true if the given value has been soft-deleted by setting
+     * {@link HasSoftDeletes#getDeleted()}.
+     *
+     * @param value
+     *            a value
+     * @return true if the given value has been soft-deleted
+     */
+    public static boolean isSoftDeleted(final Object value) {
+        return value instanceof HasSoftDeletes && ((HasSoftDeletes) value).getDeleted() != null;
+    }
+
+    /**
+     * Returns a stream of the ids of all values in the store. Ids of values that have been deleted
+     * are not returned, even if the store retains a tombstone for them.
+     *
+     * @return stream of ids, in no particular order unless the store specifies one
+     */
+    public Stream<String> ids();
+
+    /**
+     * Returns a stream of all values in the store, including values that have been soft-deleted
+     * by setting {@link HasSoftDeletes#getDeleted()}.
+     *
+     * @return stream of values, in no particular order unless the store specifies one
+     */
+    public Stream<T> stream();
+
+    /**
+     * Returns a stream of all values in the store, optionally excluding values that have been
+     * soft-deleted by setting {@link HasSoftDeletes#getDeleted()}.
+     *
+     * @param excludeSoftDeleted
+     *            true if soft-deleted values should not be returned
+     * @return stream of values, in no particular order unless the store specifies one
+     */
+    public default Stream<T> stream(final boolean excludeSoftDeleted) {
+        final Stream<T> stream = stream();
+        return excludeSoftDeleted ? stream.filter(value -> !isSoftDeleted(value)) : stream;
+    }
+}
@@ -18,6 +18,9 @@
 package com.arakelian.store;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nullable;
 
 import org.immutables.value.Value;
 
@@ -25,18 +28,69 @@ import com.arakelian.store.event.StoreListener;
 import com.arakelian.store.feature.HasId;
 import com.arakelian.store.feature.HasSoftDeletes;
 import com.arakelian.store.feature.HasTimestamp;
+import com.arakelian.store.metrics.StoreMetrics;
+import com.arakelian.store.wal.WriteAheadLog;
 
 @Value.Style(get = { "is*", "get*" })
 public interface StoreConfig<T extends HasId> {
     public Class<T> getClazz();
 
+    /**
+     * Returns the executor that partitions of a <code>getAll</code> or <code>deleteAll</code> are
+     * processed on, or null if partitions are processed one after another by the calling thread.
+     * When an executor is configured, a store's <code>doGetAll</code> and <code>doDeleteAll</code>
+     * methods may be called concurrently.
+     *
+     * @return executor for partitions, or null
+     */
+    @Nullable
+    @Value.Default
+    public default Executor getExecutor() {
+        return null;
+    }
+
     public List<StoreListener<T>> getListeners();
 
+    /**
+     * Returns the maximum number of partitions of a single <code>getAll</code> or
+     * <code>deleteAll</code> that may be in flight on the {@link #getExecutor() executor} at once.
+     *
+     * @return maximum number of partitions in flight
+     */
+    @Value.Default
+    public default int getMaxInFlightPartitions() {
+        return 8;
+    }
+
+    /**
+     * Returns the metrics that the number of partitions of each <code>getAll</code> is recorded in,
+     * or null if they are not recorded.
+     *
+     * @return metrics, or null
+     */
+    @Nullable
+    @Value.Default
+    public default StoreMetrics getMetrics() {
+        return null;
+    }
+
     @Value.Default
     public default int getPartitionSize() {
         return 10;
     }
 
+    /**
+     * Returns the write-ahead log that puts and deletes are recorded in as they are applied, or null
+     * if changes are not logged.
+     *
+     * @return the write-ahead log, or null
+     */
+    @Nullable
+    @Value.Default
+    public default WriteAheadLog<T> getWriteAheadLog() {
+        return null;
+    }
+
     @Value.Default
     public default boolean isSoftDeletes() {
         return HasSoftDeletes.class.isAssignableFrom(getClazz());
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import java.time.ZonedDateTime;
+
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.feature.HasMutableTimestamp;
+
+/**
+ * Assigns timestamps to values as they are stored, for the synchronous and asynchronous store
+ * base classes alike.
+ */
+public final class Timestamps {
+    /**
+     * Assigns the created timestamp of the given value, if it does not have one yet, and its updated
+     * timestamp. Nothing is assigned unless {@link StoreConfig#isTimestamps()} is enabled and the
+     * value implements {@link HasMutableTimestamp}.
+     *
+     * @param config
+     *            configuration of the store
+     * @param value
+     *            value about to be stored
+     * @param now
+     *            current time
+     * @param <T>
+     *            type of value stored
+     */
+    public static <T extends HasId> void stamp(
+            final StoreConfig<T> config,
+            final T value,
+            final ZonedDateTime now) {
+        if (config.isTimestamps() && value instanceof HasMutableTimestamp) {
+            final HasMutableTimestamp timestamp = (HasMutableTimestamp) value;
+            if (timestamp.getCreated() == null) {
+                timestamp.setCreated(now);
+            }
+            timestamp.setUpdated(now);
+        }
+    }
+
+    private Timestamps() {
+        // utility class
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store.async;
+
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.arakelian.store.StoreConfig;
+import com.arakelian.store.StoreException;
+import com.arakelian.store.Timestamps;
+import com.arakelian.store.event.StoreListener;
+import com.arakelian.store.feature.HasId;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Base class for engines that implement {@link AsyncMutableStore} natively, without blocking a
+ * thread for the duration of each call.
+ *
+ * <p>
+ * Subclasses implement the <code>do*Async</code> hooks; this class validates arguments, partitions
+ * bulk requests using {@link StoreConfig#getPartitionSize()}, merges results in the order of the
+ * requested ids, and notifies listeners once each change has completed successfully. Listeners are
+ * notified on the thread that completes the engine's future, and are not notified of changes that
+ * fail.
+ * </p>
+ *
+ * <p>
+ * Timestamps are assigned as by {@link com.arakelian.store.AbstractMutableStore}: when
+ * {@link StoreConfig#isTimestamps()} is enabled, values are stamped before they are handed to the
+ * engine, and deletes are given their time of deletion up front.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public abstract class AbstractAsyncMutableStore<T extends HasId> implements AsyncMutableStore<T> {
+    private static <R> CompletableFuture<Void> allOf(final List<CompletableFuture<R>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+    }
+
+    protected final StoreConfig<T> config;
+
+    /** Used to assign timestamps **/
+    private final Clock clock;
+
+    public AbstractAsyncMutableStore(final StoreConfig<T> config) {
+        this(config, Clock.systemUTC());
+    }
+
+    public AbstractAsyncMutableStore(final StoreConfig<T> config, final Clock clock) {
+        Preconditions.checkArgument(clock != null, "clock must be non-null");
+        this.config = config;
+        this.clock = clock;
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(final String id) {
+        if (StringUtils.isEmpty(id)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return doDeleteAsync(id, now()).thenRun(() -> notifyDeleted(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(final T value) {
+        if (value == null || StringUtils.isEmpty(value.getId())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return doDeleteAsync(value.getId(), now()).thenRun(() -> notifyDeleted(value));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAll(final Collection<T> values) {
+        if (values == null || values.size() == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // process values in groups of <partition size>
+        final List<T> list = new ArrayList<>(values.size());
+        for (final T value : values) {
+            if (value != null && !StringUtils.isEmpty(value.getId())) {
+                list.add(value);
+            }
+        }
+        final ZonedDateTime deleted = now();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (final List<T> partition : Lists.partition(list, config.getPartitionSize())) {
+            final List<String> ids = Lists.transform(partition, HasId::getId);
+            futures.add(doDeleteAllAsync(ids, deleted).thenRun(() -> {
+                for (final StoreListener<T> listener : config.getListeners()) {
+                    listener.deleteAllValues(partition);
+                }
+            }));
+        }
+        return allOf(futures);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAll(final String... ids) {
+        if (ids == null || ids.length == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // process ids in groups of <partition size>
+        final List<String> list = nonEmpty(Lists.newArrayList(ids));
+        final ZonedDateTime deleted = now();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (final List<String> partition : Lists.partition(list, config.getPartitionSize())) {
+            futures.add(doDeleteAllAsync(partition, deleted).thenRun(() -> {
+                for (final StoreListener<T> listener : config.getListeners()) {
+                    listener.deleteAllIds(partition);
+                }
+            }));
+        }
+        return allOf(futures);
+    }
+
+    @Override
+    public CompletableFuture<T> get(final String id) {
+        if (StringUtils.isEmpty(id)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return doGetAsync(id);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getAll(final Collection<String> ids) {
+        if (ids == null || ids.size() == 0) {
+            return CompletableFuture.completedFuture(Collections.<T> emptyList());
+        }
+
+        // fetch partitions concurrently, and merge them in order of ids
+        final List<String> list = nonEmpty(ids);
+        final List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+        for (final List<String> partition : Lists.partition(list, config.getPartitionSize())) {
+            futures.add(doGetAllAsync(partition));
+        }
+        return allOf(futures).thenApply(ignored -> {
+            final List<T> result = new ArrayList<>(list.size());
+            for (final CompletableFuture<List<T>> future : futures) {
+                result.addAll(future.join());
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getAll(final String... ids) {
+        if (ids == null || ids.length == 0) {
+            return CompletableFuture.completedFuture(Collections.<T> emptyList());
+        }
+        return getAll(Lists.newArrayList(ids));
+    }
+
+    @Override
+    public CompletableFuture<Void> put(final T value) {
+        if (value == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // make sure bean has id
+        final String id = value.getId();
+        if (StringUtils.isEmpty(id)) {
+            return CompletableFuture.failedFuture(new StoreException("Id not specified for " + value));
+        }
+
+        // timestamps must be assigned before value is handed to engine
+        Timestamps.stamp(config, value, now());
+
+        // notify listeners once change has completed
+        return doPutAsync(value).thenRun(() -> {
+            for (final StoreListener<T> listener : config.getListeners()) {
+                listener.put(value);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> putAll(final Collection<T> values) {
+        if (values == null || values.size() == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // make sure every bean has an id before we store any of them; partitions run concurrently,
+        // so only the last value of each id is stored, to keep the outcome deterministic
+        final Map<String, T> last = new LinkedHashMap<>();
+        for (final T value : values) {
+            if (value != null) {
+                if (StringUtils.isEmpty(value.getId())) {
+                    return CompletableFuture
+                            .failedFuture(new StoreException("Id not specified for " + value));
+                }
+                last.put(value.getId(), value);
+            }
+        }
+
+        final List<T> list = new ArrayList<>(last.values());
+        final ZonedDateTime now = now();
+        for (final T value : list) {
+            Timestamps.stamp(config, value, now);
+        }
+
+        // process values in groups of <partition size>
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (final List<T> partition : Lists.partition(list, config.getPartitionSize())) {
+            futures.add(doPutAllAsync(partition).thenRun(() -> {
+                for (final StoreListener<T> listener : config.getListeners()) {
+                    listener.putAll(partition);
+                }
+            }));
+        }
+        return allOf(futures);
+    }
+
+    @Override
+    public CompletableFuture<Void> putAll(final T[] values) {
+        if (values == null || values.length == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return putAll(Lists.newArrayList(values));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("config", config) //
+                .toString();
+    }
+
+    /**
+     * Internal method to delete all values with the given ids, at the given time. The default
+     * implementation deletes each id individually; engines that support batches should override
+     * this method.
+     *
+     * @param ids
+     *            list of ids to delete, already partitioned into a small list, guaranteed not to
+     *            contain nulls or empty values
+     * @param deleted
+     *            time of deletion
+     * @return future that is completed when values have been deleted
+     */
+    protected CompletableFuture<Void> doDeleteAllAsync(final List<String> ids, final ZonedDateTime deleted) {
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            futures.add(doDeleteAsync(id, deleted));
+        }
+        return allOf(futures);
+    }
+
+    /**
+     * Internal method to delete a value identified by the given id.
+     *
+     * @param id
+     *            uniquely identifies the value, guaranteed to be non-empty
+     * @return future that is completed when value has been deleted
+     */
+    protected abstract CompletableFuture<Void> doDeleteAsync(final String id);
+
+    /**
+     * Internal method to delete a value identified by the given id, at the given time. The default
+     * implementation ignores the time of deletion; engines that keep tombstones should override
+     * this method.
+     *
+     * @param id
+     *            uniquely identifies the value, guaranteed to be non-empty
+     * @param deleted
+     *            time of deletion
+     * @return future that is completed when value has been deleted
+     */
+    protected CompletableFuture<Void> doDeleteAsync(final String id, final ZonedDateTime deleted) {
+        return doDeleteAsync(id);
+    }
+
+    /**
+     * Internal method that gets all values with the given ids. The default implementation gets each
+     * id individually; engines that support batches should override this method.
+     *
+     * @param ids
+     *            list of ids, already partitioned into a small list, guaranteed not to contain nulls
+     *            or empty values
+     * @return future list of values that were found, in order of ids
+     */
+    protected CompletableFuture<List<T>> doGetAllAsync(final List<String> ids) {
+        final List<CompletableFuture<T>> futures = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            futures.add(doGetAsync(id));
+        }
+        return allOf(futures).thenApply(ignored -> {
+            final List<T> result = new ArrayList<>(futures.size());
+            for (final CompletableFuture<T> future : futures) {
+                final T value = future.join();
+                if (value != null) {
+                    result.add(value);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Internal method that gets the value with the given id.
+     *
+     * @param id
+     *            uniquely identifies the value, guaranteed to be non-empty
+     * @return future value, or null if not found
+     */
+    protected abstract CompletableFuture<T> doGetAsync(final String id);
+
+    /**
+     * Internal method that stores the given values. The default implementation stores each value
+     * individually; engines that support batches should override this method.
+     *
+     * @param values
+     *            list of values to store, already partitioned into a small list, guaranteed not to
+     *            contain nulls, values without ids, or more than one value with the same id
+     * @return future that is completed when values have been stored
+     */
+    protected CompletableFuture<Void> doPutAllAsync(final List<T> values) {
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(values.size());
+        for (final T value : values) {
+            futures.add(doPutAsync(value));
+        }
+        return allOf(futures);
+    }
+
+    /**
+     * Internal method that stores the given value.
+     *
+     * @param value
+     *            value to be stored, guaranteed to have a non-empty id
+     * @return future that is completed when value has been stored
+     */
+    protected abstract CompletableFuture<Void> doPutAsync(final T value);
+
+    /**
+     * Returns the current time, according to the clock used to assign timestamps.
+     *
+     * @return the current time
+     */
+    protected ZonedDateTime now() {
+        return ZonedDateTime.now(clock);
+    }
+
+    protected void notifyDeleted(final String id) {
+        for (final StoreListener<T> listener : config.getListeners()) {
+            listener.delete(id);
+        }
+    }
+
+    protected void notifyDeleted(final T value) {
+        for (final StoreListener<T> listener : config.getListeners()) {
+            listener.delete(value);
+        }
+    }
+
+    private List<String> nonEmpty(final Collection<String> ids) {
+        final List<String> list = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id)) {
+                list.add(id);
+            }
+        }
+        return list;
+    }
+}
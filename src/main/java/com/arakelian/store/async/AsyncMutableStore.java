@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store.async;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+import com.arakelian.store.MutableStore;
+import com.arakelian.store.feature.HasId;
+
+/**
+ * Asynchronous counterpart of {@link MutableStore}. Methods return immediately, and the returned
+ * future is completed once the change has been applied and listeners have been notified.
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public interface AsyncMutableStore<T extends HasId> extends AsyncStore<T> {
+    /**
+     * Deletes the value in the data store uniquely identified by the given identifier, if it
+     * exists.
+     *
+     * @param id
+     *            uniquely identifes the value
+     * @return future that is completed when value has been deleted
+     */
+    public CompletableFuture<Void> delete(final String id);
+
+    /**
+     * Deletes the given value from the data store
+     *
+     * @param value
+     *            value to delete
+     * @return future that is completed when value has been deleted
+     */
+    public CompletableFuture<Void> delete(final T value);
+
+    /**
+     * Deletes the given values from the data store
+     *
+     * @param values
+     *            collection of values
+     * @return future that is completed when values have been deleted
+     */
+    public CompletableFuture<Void> deleteAll(final Collection<T> values);
+
+    /**
+     * Deletes the values from the data store with the given ids
+     *
+     * @param ids
+     *            uniquely identifies the values to be deleted
+     * @return future that is completed when values have been deleted
+     */
+    public CompletableFuture<Void> deleteAll(final String... ids);
+
+    /**
+     * Stores the given value in the data store.
+     *
+     * @param value
+     *            value to store
+     * @return future that is completed when value has been stored
+     */
+    public CompletableFuture<Void> put(T value);
+
+    /**
+     * Stores the given values in the data store.
+     *
+     * @param values
+     *            values to store
+     * @return future that is completed when values have been stored
+     */
+    public CompletableFuture<Void> putAll(Collection<T> values);
+
+    /**
+     * Stores the given values in the data store.
+     *
+     * @param values
+     *            values to store
+     * @return future that is completed when values have been stored
+     */
+    public CompletableFuture<Void> putAll(T[] values);
+}
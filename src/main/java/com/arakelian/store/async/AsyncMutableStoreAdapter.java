@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store.async;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.arakelian.store.MutableStore;
+import com.arakelian.store.feature.HasId;
+
+/**
+ * Adapts a blocking {@link MutableStore} to {@link AsyncMutableStore} by running each call on an
+ * executor. The delegate notifies its listeners before the returned future is completed.
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class AsyncMutableStoreAdapter<T extends HasId> extends AsyncStoreAdapter<T>
+        implements AsyncMutableStore<T> {
+    /** Blocking store **/
+    private final MutableStore<T> mutableDelegate;
+
+    public AsyncMutableStoreAdapter(final MutableStore<T> delegate, final Executor executor) {
+        super(delegate, executor);
+        this.mutableDelegate = delegate;
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(final String id) {
+        return CompletableFuture.runAsync(() -> mutableDelegate.delete(id), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(final T value) {
+        return CompletableFuture.runAsync(() -> mutableDelegate.delete(value), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAll(final Collection<T> values) {
+        return CompletableFuture.runAsync(() -> mutableDelegate.deleteAll(values), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAll(final String... ids) {
+        return CompletableFuture.runAsync(() -> mutableDelegate.deleteAll(ids), executor);
+    }
+
+    @Override
+    public MutableStore<T> getDelegate() {
+        return mutableDelegate;
+    }
+
+    @Override
+    public CompletableFuture<Void> put(final T value) {
+        return CompletableFuture.runAsync(() -> mutableDelegate.put(value), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> putAll(final Collection<T> values) {
+        return CompletableFuture.runAsync(() -> mutableDelegate.putAll(values), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> putAll(final T[] values) {
+        return CompletableFuture.runAsync(() -> mutableDelegate.putAll(values), executor);
+    }
+}
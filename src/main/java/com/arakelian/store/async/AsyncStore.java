@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store.async;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.arakelian.store.Store;
+import com.arakelian.store.feature.HasId;
+
+/**
+ * Asynchronous counterpart of {@link Store}. Methods return immediately, and the returned future is
+ * completed once the operation has finished.
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public interface AsyncStore<T extends HasId> {
+    /**
+     * Returns a future that is completed with the record with the given id, or null
+     *
+     * @param id
+     *            record id
+     * @return future record with given id, or null if not found
+     */
+    public CompletableFuture<T> get(String id);
+
+    /**
+     * Returns a future that is completed with a list of all records with the given ids, in the
+     * order of the ids. If there are no matching records, the list is empty.
+     *
+     * @param ids
+     *            list of ids
+     * @return future list of all records with the given ids
+     */
+    public CompletableFuture<List<T>> getAll(Collection<String> ids);
+
+    /**
+     * Returns a future that is completed with a list of all records with the given ids, in the
+     * order of the ids. If there are no matching records, the list is empty.
+     *
+     * @param ids
+     *            list of ids
+     * @return future list of all records with the given ids
+     */
+    public CompletableFuture<List<T>> getAll(String... ids);
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store.async;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.arakelian.store.Store;
+import com.arakelian.store.feature.HasId;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Adapts a blocking {@link Store} to {@link AsyncStore} by running each call on an executor. The
+ * executor should be bounded, so that a slow backend cannot exhaust threads, or use virtual threads
+ * where they are available.
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class AsyncStoreAdapter<T extends HasId> implements AsyncStore<T> {
+    /** Blocking store **/
+    protected final Store<T> delegate;
+
+    /** Executor that blocking calls are made on **/
+    protected final Executor executor;
+
+    public AsyncStoreAdapter(final Store<T> delegate, final Executor executor) {
+        Preconditions.checkArgument(delegate != null, "delegate must be non-null");
+        Preconditions.checkArgument(executor != null, "executor must be non-null");
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<T> get(final String id) {
+        return CompletableFuture.supplyAsync(() -> delegate.get(id), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getAll(final Collection<String> ids) {
+        return CompletableFuture.supplyAsync(() -> delegate.getAll(ids), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getAll(final String... ids) {
+        return CompletableFuture.supplyAsync(() -> delegate.getAll(ids), executor);
+    }
+
+    public Store<T> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("delegate", delegate) //
+                .toString();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store.cache;
+
+import java.util.Collection;
+import java.util.function.ToIntFunction;
+
+import com.arakelian.store.MutableStore;
+import com.arakelian.store.feature.HasId;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Read-through cache in front of a {@link MutableStore}. Changes made through this store are
+ * written to the delegate first, and then invalidate the cached value, so the cache stays
+ * consistent with the delegate even if {@link #getListener()} has not been registered with it;
+ * registering the listener is still required to observe changes made directly to the delegate.
+ *
+ * <p>
+ * Puts invalidate rather than replace the cached value, regardless of <code>refreshOnPut</code>:
+ * the delegate write and the cache update are separate steps, so replacing the value could let a
+ * slower writer cache a value that has already been overwritten in the delegate.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class CachingMutableStore<T extends HasId> extends CachingStore<T> implements MutableStore<T> {
+    /** Underlying store **/
+    private final MutableStore<T> mutableDelegate;
+
+    public CachingMutableStore(final MutableStore<T> delegate, final long maximumSize) {
+        super(delegate, maximumSize);
+        this.mutableDelegate = delegate;
+    }
+
+    public CachingMutableStore(
+            final MutableStore<T> delegate,
+            final long maximumWeight,
+            final ToIntFunction<? super T> weigher) {
+        super(delegate, maximumWeight, weigher);
+        this.mutableDelegate = delegate;
+    }
+
+    public CachingMutableStore(
+            final MutableStore<T> delegate,
+            final Caffeine<? super String, ? super T> builder,
+            final boolean refreshOnPut) {
+        super(delegate, builder, refreshOnPut);
+        this.mutableDelegate = delegate;
+    }
+
+    @Override
+    public void delete(final String id) {
+        mutableDelegate.delete(id);
+        invalidate(id);
+    }
+
+    @Override
+    public void delete(final T value) {
+        mutableDelegate.delete(value);
+        if (value != null) {
+            invalidate(value.getId());
+        }
+    }
+
+    @Override
+    public void deleteAll(final Collection<T> values) {
+        mutableDelegate.deleteAll(values);
+        if (values != null) {
+            for (final T value : values) {
+                if (value != null) {
+                    invalidate(value.getId());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void deleteAll(final String... ids) {
+        mutableDelegate.deleteAll(ids);
+        if (ids != null) {
+            for (final String id : ids) {
+                invalidate(id);
+            }
+        }
+    }
+
+    @Override
+    public MutableStore<T> getDelegate() {
+        return mutableDelegate;
+    }
+
+    @Override
+    public void put(final T value) {
+        mutableDelegate.put(value);
+        if (value != null) {
+            invalidate(value.getId());
+        }
+    }
+
+    @Override
+    public void putAll(final Collection<T> values) {
+        mutableDelegate.putAll(values);
+        if (values != null) {
+            for (final T value : values) {
+                if (value != null) {
+                    invalidate(value.getId());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void putAll(final T[] values) {
+        mutableDelegate.putAll(values);
+        if (values != null) {
+            for (final T value : values) {
+                if (value != null) {
+                    invalidate(value.getId());
+                }
+            }
+        }
+    }
+}
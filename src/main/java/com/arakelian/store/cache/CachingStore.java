@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.arakelian.store.Store;
+import com.arakelian.store.event.StoreListener;
+import com.arakelian.store.feature.HasId;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Read-through cache in front of another {@link Store}.
+ *
+ * <p>
+ * The cache is bounded either by number of entries or by the estimated size of the cached values,
+ * and uses Caffeine's W-TinyLFU policy: a new value is only admitted if it is likely to be used
+ * more often than the value it would evict, so that a scan of cold ids does not flush the hot set.
+ * </p>
+ *
+ * <p>
+ * Values that change in the delegate store are refreshed or invalidated through the
+ * {@link StoreListener} callbacks, so the listener returned by {@link #getListener()} should be
+ * registered with the delegate. {@link #getAll(Collection)} serves ids that are cached and fetches
+ * only the misses from the delegate, in a single call. A value that is invalidated or refreshed
+ * while that call is in progress is returned to the caller but not cached, so that a stale value
+ * cannot overwrite the invalidation.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class CachingStore<T extends HasId> implements Store<T> {
+    /**
+     * Misses being fetched from the delegate by {@link CachingStore#getAll(Collection)}.
+     */
+    private static final class Load {
+        /** Ids being fetched **/
+        private final Set<String> ids;
+
+        /** Ids invalidated since fetch started **/
+        private final Set<String> invalidated = ConcurrentHashMap.newKeySet();
+
+        /** True if every id was invalidated since fetch started **/
+        private volatile boolean cleared;
+
+        private Load(final Set<String> ids) {
+            this.ids = ids;
+        }
+
+        private boolean isInvalidated(final String id) {
+            return cleared || invalidated.contains(id);
+        }
+    }
+
+    /**
+     * Refreshes or invalidates cached values when the delegate store notifies us of changes.
+     */
+    private final class Listener implements StoreListener<T> {
+        @Override
+        public void delete(final String id) {
+            invalidate(id);
+        }
+
+        @Override
+        public void delete(final T value) {
+            if (value != null) {
+                invalidate(value.getId());
+            }
+        }
+
+        @Override
+        public void put(final T value) {
+            refresh(value);
+        }
+    }
+
+    /** Underlying store **/
+    protected final Store<T> delegate;
+
+    /** Cached values by id **/
+    protected final Cache<String, T> cache;
+
+    /** True if cached values are replaced when they are put, false if they are invalidated **/
+    private final boolean refreshOnPut;
+
+    /** Receives change notifications from delegate **/
+    private final StoreListener<T> listener = new Listener();
+
+    /** Fetches from delegate that are in progress **/
+    private final Set<Load> loads = ConcurrentHashMap.newKeySet();
+
+    /** Statistics of cache, which also record the fetches made by getAll **/
+    private final StatsCounter stats = new ConcurrentStatsCounter();
+
+    /**
+     * Creates a cache that holds at most the given number of values.
+     *
+     * @param delegate
+     *            underlying store
+     * @param maximumSize
+     *            maximum number of cached values
+     */
+    public CachingStore(final Store<T> delegate, final long maximumSize) {
+        this(delegate, Caffeine.newBuilder().maximumSize(maximumSize), true);
+    }
+
+    /**
+     * Creates a cache that holds values whose estimated total size does not exceed the given
+     * weight.
+     *
+     * @param delegate
+     *            underlying store
+     * @param maximumWeight
+     *            maximum total weight of cached values, e.g. in bytes
+     * @param weigher
+     *            estimates the weight of a value
+     */
+    public CachingStore(
+            final Store<T> delegate,
+            final long maximumWeight,
+            final ToIntFunction<? super T> weigher) {
+        this(delegate, Caffeine.newBuilder().maximumWeight(maximumWeight)
+                .weigher((final String id, final T value) -> weigher.applyAsInt(value)), true);
+    }
+
+    /**
+     * Creates a cache from the given Caffeine builder.
+     *
+     * @param delegate
+     *            underlying store
+     * @param builder
+     *            configures size bound, expiry, and so on; statistics are always recorded
+     * @param refreshOnPut
+     *            true if a cached value should be replaced when the listener is notified of a put,
+     *            false if it should be invalidated and reloaded on next read; replacing is only safe
+     *            if puts of each id are notified in the order they were applied
+     */
+    public CachingStore(
+            final Store<T> delegate,
+            final Caffeine<? super String, ? super T> builder,
+            final boolean refreshOnPut) {
+        Preconditions.checkArgument(delegate != null, "delegate must be non-null");
+        Preconditions.checkArgument(builder != null, "builder must be non-null");
+        this.delegate = delegate;
+        this.cache = builder.recordStats(() -> stats).<String, T> build();
+        this.refreshOnPut = refreshOnPut;
+    }
+
+    /**
+     * Performs any pending maintenance operations, such as evictions, needed by the cache.
+     */
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    @Override
+    public T get(final String id) {
+        if (StringUtils.isEmpty(id)) {
+            return null;
+        }
+
+        // loads are atomic with respect to invalidation of same id
+        return cache.get(id, delegate::get);
+    }
+
+    @Override
+    public List<T> getAll(final Collection<String> ids) {
+        if (ids == null || ids.size() == 0) {
+            return Collections.<T> emptyList();
+        }
+
+        final Set<String> keys = new LinkedHashSet<>();
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id)) {
+                keys.add(id);
+            }
+        }
+
+        // hits are served from cache, and misses are fetched from delegate with a single call
+        final Map<String, T> values = new HashMap<>(cache.getAllPresent(keys));
+        keys.removeAll(values.keySet());
+        if (keys.size() != 0) {
+            final Load load = new Load(keys);
+            loads.add(load);
+            final long start = System.nanoTime();
+            try {
+                final List<T> loaded;
+                try {
+                    loaded = delegate.getAll(Lists.newArrayList(keys));
+                } catch (final RuntimeException e) {
+                    stats.recordLoadFailure(System.nanoTime() - start);
+                    throw e;
+                }
+                stats.recordLoadSuccess(System.nanoTime() - start);
+                for (final T value : loaded) {
+                    final String id = value.getId();
+                    values.put(id, value);
+
+                    // invalidations are marked before they are applied, so if one is not marked by
+                    // the time we check, it has yet to be applied and will remove our value
+                    cache.asMap().putIfAbsent(id, value);
+                    if (load.isInvalidated(id)) {
+                        cache.asMap().remove(id, value);
+                    }
+                }
+            } finally {
+                loads.remove(load);
+            }
+        }
+
+        // preserve order of requested ids
+        List<T> result = null;
+        for (final String id : ids) {
+            final T value = StringUtils.isEmpty(id) ? null : values.get(id);
+            if (value != null) {
+                if (result == null) {
+                    result = new ArrayList<>(ids.size());
+                }
+                result.add(value);
+            }
+        }
+        return result != null ? result : Collections.<T> emptyList();
+    }
+
+    @Override
+    public List<T> getAll(final String... ids) {
+        if (ids == null || ids.length == 0) {
+            return Collections.<T> emptyList();
+        }
+        return getAll(Lists.newArrayList(ids));
+    }
+
+    /**
+     * Returns the underlying store.
+     *
+     * @return the underlying store
+     */
+    public Store<T> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the approximate number of cached values.
+     *
+     * @return approximate number of cached values
+     */
+    public long getEstimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Returns the listener that keeps this cache consistent with the delegate store; it should be
+     * added to the {@link com.arakelian.store.StoreConfig#getListeners() listeners} of the
+     * delegate.
+     *
+     * @return listener that refreshes or invalidates cached values
+     */
+    public StoreListener<T> getListener() {
+        return listener;
+    }
+
+    /**
+     * Returns a snapshot of hit, miss, load and eviction statistics.
+     *
+     * @return snapshot of cache statistics
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Removes the value with the given id from the cache, without affecting the delegate store.
+     *
+     * @param id
+     *            id of value to remove
+     */
+    public void invalidate(final String id) {
+        if (!StringUtils.isEmpty(id)) {
+            markInvalidated(id);
+            cache.invalidate(id);
+        }
+    }
+
+    /**
+     * Removes all values from the cache, without affecting the delegate store.
+     */
+    public void invalidateAll() {
+        for (final Load load : loads) {
+            load.cleared = true;
+        }
+        cache.invalidateAll();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("delegate", delegate) //
+                .add("stats", cache.stats()) //
+                .toString();
+    }
+
+    /**
+     * Replaces or invalidates the cached value after the given value was put to the delegate store.
+     *
+     * @param value
+     *            value that was stored
+     */
+    protected void refresh(final T value) {
+        if (value == null || StringUtils.isEmpty(value.getId())) {
+            return;
+        }
+        if (refreshOnPut) {
+            markInvalidated(value.getId());
+            cache.put(value.getId(), value);
+        } else {
+            invalidate(value.getId());
+        }
+    }
+
+    private void markInvalidated(final String id) {
+        for (final Load load : loads) {
+            if (load.ids.contains(id)) {
+                load.invalidated.add(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.coalesce;
+
+import java.time.Duration;
+import java.util.Collection;
+
+import com.arakelian.store.MutableStore;
+import com.arakelian.store.feature.HasId;
+
+/**
+ * Coalescing decorator for a {@link MutableStore}. Changes made through this store are written to
+ * the delegate first, and then stop later gets of the changed ids from joining reads that were
+ * already in flight, so every get that follows a change observes it.
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class CoalescingMutableStore<T extends HasId> extends CoalescingStore<T> implements MutableStore<T> {
+    /** Underlying store **/
+    private final MutableStore<T> mutableDelegate;
+
+    public CoalescingMutableStore(
+            final MutableStore<T> delegate,
+            final Duration window,
+            final int maxBatchSize) {
+        super(delegate, window, maxBatchSize);
+        this.mutableDelegate = delegate;
+    }
+
+    @Override
+    public void delete(final String id) {
+        mutableDelegate.delete(id);
+        forget(id);
+    }
+
+    @Override
+    public void delete(final T value) {
+        mutableDelegate.delete(value);
+        if (value != null) {
+            forget(value.getId());
+        }
+    }
+
+    @Override
+    public void deleteAll(final Collection<T> values) {
+        mutableDelegate.deleteAll(values);
+        if (values != null) {
+            for (final T value : values) {
+                if (value != null) {
+                    forget(value.getId());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void deleteAll(final String... ids) {
+        mutableDelegate.deleteAll(ids);
+        if (ids != null) {
+            for (final String id : ids) {
+                forget(id);
+            }
+        }
+    }
+
+    @Override
+    public MutableStore<T> getDelegate() {
+        return mutableDelegate;
+    }
+
+    @Override
+    public void put(final T value) {
+        mutableDelegate.put(value);
+        if (value != null) {
+            forget(value.getId());
+        }
+    }
+
+    @Override
+    public void putAll(final Collection<T> values) {
+        mutableDelegate.putAll(values);
+        if (values != null) {
+            for (final T value : values) {
+                if (value != null) {
+                    forget(value.getId());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void putAll(final T[] values) {
+        mutableDelegate.putAll(values);
+        if (values != null) {
+            for (final T value : values) {
+                if (value != null) {
+                    forget(value.getId());
+                }
+            }
+        }
+    }
+}
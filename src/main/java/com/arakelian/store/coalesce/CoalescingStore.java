@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.coalesce;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.arakelian.store.Store;
+import com.arakelian.store.StoreException;
+import com.arakelian.store.feature.HasId;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Decorator that coalesces concurrent reads of another {@link Store}.
+ *
+ * <p>
+ * A get of an id that is already being read joins the read in flight rather than reading the id
+ * again. Gets of other ids are collected into a batch: the first caller waits for up to
+ * {@link #getWindow()} for other callers to join, and then reads the whole batch with a single
+ * {@link Store#getAll(Collection)}; a caller that fills the batch to {@link #getMaxBatchSize()},
+ * which is typically the partition size of the delegate, reads it straight away. No threads are
+ * created; every read runs on one of the waiting callers.
+ * </p>
+ *
+ * <p>
+ * A get that joins a read in flight may return a value that was read shortly before the get was
+ * called. Use {@link CoalescingMutableStore} to make writes through this store visible to every
+ * get that follows them.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class CoalescingStore<T extends HasId> implements Store<T> {
+    /**
+     * Ids collected for a single read of the delegate, and the future of each. An id may appear
+     * more than once if it was forgotten while the batch was collecting.
+     **/
+    private final class Batch {
+        private final Thread leader = Thread.currentThread();
+        private final List<String> ids = new ArrayList<>();
+        private final List<CompletableFuture<T>> futures = new ArrayList<>();
+
+        private void add(final String id, final CompletableFuture<T> future) {
+            ids.add(id);
+            futures.add(future);
+        }
+    }
+
+    /** Underlying store **/
+    protected final Store<T> delegate;
+
+    /** How long the first caller of a batch waits for others to join **/
+    private final Duration window;
+
+    /** Maximum number of ids read at once **/
+    private final int maxBatchSize;
+
+    /** Reads in flight, by id **/
+    private final ConcurrentHashMap<String, CompletableFuture<T>> inflight = new ConcurrentHashMap<>();
+
+    /** Guards batch **/
+    private final Object lock = new Object();
+
+    /** Batch that is collecting ids, or null; guarded by lock **/
+    private Batch batch;
+
+    /** Number of ids requested **/
+    private final LongAdder requested = new LongAdder();
+
+    /** Number of ids that joined a read in flight **/
+    private final LongAdder coalesced = new LongAdder();
+
+    /** Number of reads of delegate **/
+    private final LongAdder batches = new LongAdder();
+
+    public CoalescingStore(final Store<T> delegate, final Duration window, final int maxBatchSize) {
+        Preconditions.checkArgument(delegate != null, "delegate must be non-null");
+        Preconditions.checkArgument(window != null && !window.isNegative(), "window must be non-negative");
+        Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+        this.delegate = delegate;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public T get(final String id) {
+        if (StringUtils.isEmpty(id)) {
+            return null;
+        }
+        requested.increment();
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final CompletableFuture<T> existing = inflight.putIfAbsent(id, future);
+        if (existing != null) {
+            coalesced.increment();
+            return join(existing);
+        }
+
+        Batch full = null;
+        Batch led = null;
+        synchronized (lock) {
+            if (batch == null) {
+                batch = new Batch();
+                led = batch;
+            }
+            batch.add(id, future);
+            if (batch.ids.size() >= maxBatchSize) {
+                full = batch;
+                batch = null;
+            }
+        }
+
+        if (full != null) {
+            if (full.leader != Thread.currentThread()) {
+                LockSupport.unpark(full.leader);
+            }
+            read(full);
+        } else if (led != null) {
+            awaitWindow(led);
+        }
+        return join(future);
+    }
+
+    @Override
+    public List<T> getAll(final Collection<String> ids) {
+        if (ids == null || ids.size() == 0) {
+            return Collections.<T> emptyList();
+        }
+
+        // join reads in flight, and read the remaining ids ourselves
+        final List<CompletableFuture<T>> futures = new ArrayList<>(ids.size());
+        final Batch own = new Batch();
+        for (final String id : ids) {
+            if (StringUtils.isEmpty(id)) {
+                continue;
+            }
+            requested.increment();
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            final CompletableFuture<T> existing = inflight.putIfAbsent(id, future);
+            if (existing != null) {
+                coalesced.increment();
+                futures.add(existing);
+            } else {
+                own.add(id, future);
+                futures.add(future);
+            }
+        }
+        if (own.ids.size() != 0) {
+            read(own);
+        }
+
+        final List<T> values = new ArrayList<>(futures.size());
+        for (final CompletableFuture<T> future : futures) {
+            final T value = join(future);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public List<T> getAll(final String... ids) {
+        if (ids == null || ids.length == 0) {
+            return Collections.<T> emptyList();
+        }
+        return getAll(Arrays.asList(ids));
+    }
+
+    /**
+     * Returns the number of reads of the delegate.
+     *
+     * @return number of reads of the delegate
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Returns the number of requested ids that joined a read already in flight.
+     *
+     * @return number of requested ids that joined a read in flight
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public Store<T> getDelegate() {
+        return delegate;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Returns the number of ids requested from this store.
+     *
+     * @return number of ids requested
+     */
+    public long getRequestedCount() {
+        return requested.sum();
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("delegate", delegate) //
+                .add("window", window) //
+                .add("maxBatchSize", maxBatchSize) //
+                .toString();
+    }
+
+    /**
+     * Stops later gets of the given id from joining a read that is already in flight, which may
+     * have started before the value was changed.
+     *
+     * @param id
+     *            id of value that was changed
+     */
+    protected void forget(final String id) {
+        if (!StringUtils.isEmpty(id)) {
+            inflight.remove(id);
+        }
+    }
+
+    /**
+     * Gives other callers a chance to join the batch we started, and reads it once the window has
+     * passed, unless another caller filled and read it first.
+     */
+    private void awaitWindow(final Batch led) {
+        final long deadline = System.nanoTime() + window.toNanos();
+        while (true) {
+            final long remaining = deadline - System.nanoTime();
+            synchronized (lock) {
+                if (batch != led) {
+                    return;
+                }
+                if (remaining <= 0) {
+                    batch = null;
+                    break;
+                }
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+        read(led);
+    }
+
+    private T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new StoreException(e.getCause());
+        }
+    }
+
+    private void read(final Batch read) {
+        batches.increment();
+        try {
+            final Map<String, T> values = new HashMap<>(read.ids.size() * 2);
+            for (final T value : delegate.getAll(read.ids)) {
+                values.put(value.getId(), value);
+            }
+            for (int i = 0; i < read.ids.size(); i++) {
+                read.futures.get(i).complete(values.get(read.ids.get(i)));
+            }
+        } catch (final RuntimeException | Error e) {
+            for (final CompletableFuture<T> future : read.futures) {
+                future.completeExceptionally(e);
+            }
+        } finally {
+            for (int i = 0; i < read.ids.size(); i++) {
+                inflight.remove(read.ids.get(i), read.futures.get(i));
+            }
+        }
+    }
+}
@@ -18,9 +18,20 @@
 package com.arakelian.store.event;
 
 import com.arakelian.store.feature.HasId;
+import com.arakelian.store.metrics.Histogram;
 import com.lmax.disruptor.EventHandler;
 
+/**
+ * Base class for handlers of store events, which resets each event once it has been handled and
+ * records how long handling took.
+ *
+ * @param <T>
+ *            type of value stored
+ */
 public abstract class AbstractStoreEventHandler<T extends HasId> implements EventHandler<StoreEvent<T>> {
+    /** Time spent handling each event, in nanoseconds **/
+    private final Histogram processingTime = new Histogram();
+
     /*
      * (non-Javadoc)
      * @see com.lmax.disruptor.EventHandler#onEvent(java.lang.Object, long, boolean)
@@ -28,12 +39,23 @@ public abstract class AbstractStoreEventHandler<T extends HasId> implements Even
     @Override
     public final void onEvent(final StoreEvent<T> event, final long sequence, final boolean endOfBatch)
             throws Exception {
+        final long start = System.nanoTime();
         try {
             handle(event, sequence, endOfBatch);
         } finally {
+            processingTime.record(System.nanoTime() - start);
             event.reset();
         }
     }
 
+    /**
+     * Returns the histogram of time spent handling each event, in nanoseconds.
+     *
+     * @return histogram of processing time
+     */
+    public Histogram getProcessingTime() {
+        return processingTime;
+    }
+
     protected abstract void handle(StoreEvent<T> event, long sequence, boolean endOfBatch) throws Exception;
 }
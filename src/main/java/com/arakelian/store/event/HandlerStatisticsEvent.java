@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+/**
+ * Flight recorder event emitted periodically for each handler of a {@link StoreEventPublisher}
+ * that extends {@link AbstractStoreEventHandler}, with percentiles of the time it spent handling
+ * each event since the previous emission.
+ */
+@Name("com.arakelian.store.HandlerStatistics")
+@Label("Store Event Handler Statistics")
+@Category({ "Store", "Events" })
+@Description("Number of events handled and percentiles of processing time since the previous period")
+@Period("1 s")
+final class HandlerStatisticsEvent extends jdk.jfr.Event {
+    @Label("Handler")
+    String handler;
+
+    @Label("Handler Index")
+    int index;
+
+    @Label("Events Handled")
+    long handled;
+
+    @Label("Median Processing Time (us)")
+    double p50Micros;
+
+    @Label("99th Percentile Processing Time (us)")
+    double p99Micros;
+
+    @Label("Maximum Processing Time (us)")
+    double maxMicros;
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event emitted when a {@link StoreEventPublisher} has to wait for a slot in a full
+ * ring buffer. Its duration is the time that the writer was blocked.
+ */
+@Name("com.arakelian.store.PublisherBlocked")
+@Label("Store Event Publisher Blocked")
+@Category({ "Store", "Events" })
+@Description("Writer blocked waiting for capacity in ring buffer")
+final class PublisherBlockedEvent extends jdk.jfr.Event {
+    @Label("Events Claimed")
+    int claimed;
+
+    @Label("Ring Buffer Size")
+    int bufferSize;
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+/**
+ * Flight recorder event emitted periodically with the occupancy, throughput and lag of a
+ * {@link StoreEventPublisher}.
+ */
+@Name("com.arakelian.store.PublisherStatistics")
+@Label("Store Event Publisher Statistics")
+@Category({ "Store", "Events" })
+@Description("Ring buffer occupancy, publish count and handler lag")
+@Period("1 s")
+final class PublisherStatisticsEvent extends jdk.jfr.Event {
+    @Label("Ring Buffer Size")
+    int bufferSize;
+
+    @Label("Remaining Capacity")
+    long remainingCapacity;
+
+    @Label("Events Published")
+    long published;
+
+    @Label("Maximum Handler Lag")
+    long maxLag;
+
+    @Label("Blocked Claims")
+    long blocked;
+}
@@ -18,54 +18,240 @@
 package com.arakelian.store.event;
 
 import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjIntConsumer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.arakelian.core.utils.ExecutorUtils;
+import com.arakelian.store.StoreException;
 import com.arakelian.store.event.StoreEvent.Action;
 import com.arakelian.store.feature.HasId;
+import com.arakelian.store.metrics.Histogram;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.lmax.disruptor.BlockingWaitStrategy;
 import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
 import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
 
-public class StoreEventPublisher<T extends HasId> implements StoreListener<T>, Closeable {
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Publishes store changes to a Disruptor ring buffer, so that handlers can process them on their own
+ * threads without slowing down the store.
+ *
+ * <p>
+ * Use {@link #builder()} to choose the ring buffer size, producer type, wait strategy and thread
+ * factory. By default, the publisher accepts events from many threads concurrently
+ * ({@link ProducerType#MULTI}) and handler threads block while waiting for events
+ * ({@link BlockingWaitStrategy}). {@link ProducerType#SINGLE} is faster, but is only safe if a
+ * single thread modifies the store; {@link com.lmax.disruptor.YieldingWaitStrategy} and
+ * {@link com.lmax.disruptor.BusySpinWaitStrategy} lower handler latency at the cost of keeping a
+ * core busy for each handler.
+ * </p>
+ *
+ * <p>
+ * The publisher reports the remaining capacity of the ring buffer, the number of events published,
+ * how far behind each handler is, how long each {@link AbstractStoreEventHandler} takes to handle
+ * an event, and how often and for how long writers were blocked waiting for a full ring buffer.
+ * These are available as getters, as an MBean once {@link #register(String)} is called, and as
+ * flight recorder events: periodic <code>PublisherStatistics</code> and
+ * <code>HandlerStatistics</code> events, and a <code>PublisherBlocked</code> event each time a
+ * writer has to wait.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class StoreEventPublisher<T extends HasId>
+        implements StoreListener<T>, StoreEventPublisherMBean, Closeable {
+    /**
+     * Builds a {@link StoreEventPublisher} that creates, starts and shuts down its own Disruptor.
+     *
+     * @param <T>
+     *            type of value stored
+     */
+    public static final class Builder<T extends HasId> {
+        private int ringBufferSize = DEFAULT_RING_BUFFER_SIZE;
+
+        private ProducerType producerType = ProducerType.MULTI;
+
+        private WaitStrategy waitStrategy;
+
+        private ThreadFactory threadFactory;
+
+        private final List<EventHandler<StoreEvent<T>>> handlers = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public StoreEventPublisher<T> build() {
+            Preconditions.checkState(handlers.size() != 0, "at least one handler must be added");
+            return new StoreEventPublisher<>(this);
+        }
+
+        public Builder<T> handler(final EventHandler<StoreEvent<T>> handler) {
+            Preconditions.checkArgument(handler != null, "handler must be non-null");
+            handlers.add(handler);
+            return this;
+        }
+
+        @SafeVarargs
+        public final Builder<T> handlers(final EventHandler<StoreEvent<T>>... handlers) {
+            for (final EventHandler<StoreEvent<T>> handler : handlers) {
+                handler(handler);
+            }
+            return this;
+        }
+
+        public Builder<T> handlers(final List<EventHandler<StoreEvent<T>>> handlers) {
+            Preconditions.checkArgument(handlers != null, "handlers must be non-null");
+            for (final EventHandler<StoreEvent<T>> handler : handlers) {
+                handler(handler);
+            }
+            return this;
+        }
+
+        public Builder<T> producerType(final ProducerType producerType) {
+            Preconditions.checkArgument(producerType != null, "producerType must be non-null");
+            this.producerType = producerType;
+            return this;
+        }
+
+        public Builder<T> ringBufferSize(final int ringBufferSize) {
+            Preconditions.checkArgument(
+                    ringBufferSize > 0 && Integer.bitCount(ringBufferSize) == 1,
+                    "ringBufferSize must be a power of 2");
+            this.ringBufferSize = ringBufferSize;
+            return this;
+        }
+
+        public Builder<T> threadFactory(final ThreadFactory threadFactory) {
+            Preconditions.checkArgument(threadFactory != null, "threadFactory must be non-null");
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        public Builder<T> waitStrategy(final WaitStrategy waitStrategy) {
+            Preconditions.checkArgument(waitStrategy != null, "waitStrategy must be non-null");
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+    }
+
+    private static final int DEFAULT_RING_BUFFER_SIZE = 1024;
+
+    public static <T extends HasId> Builder<T> builder() {
+        return new Builder<>();
+    }
+
     /** Optional disruptor we create, start and shutdown **/
     private final Disruptor<StoreEvent<T>> disruptor;
 
     /** Ring buffer we publish to **/
     private final RingBuffer<StoreEvent<T>> ringBuffer;
 
+    /** Handlers of disruptor we created, used to report lag of each **/
+    private final List<EventHandler<StoreEvent<T>>> handlers;
+
     /** We can only be closed once **/
     private final AtomicBoolean closed = new AtomicBoolean();
 
+    /** Number of events published **/
+    private final LongAdder published = new LongAdder();
+
+    /** Time that writers spent blocked waiting for capacity, in nanoseconds **/
+    private final Histogram blocked = new Histogram();
+
+    /** Emits periodic flight recorder statistics **/
+    private final Runnable statistics = this::emitStatistics;
+
+    /** Emits periodic flight recorder statistics of each handler **/
+    private final Runnable handlerStatistics = this::emitHandlerStatistics;
+
+    /** Processing times of each handler when statistics were last emitted, so we report intervals **/
+    private final Histogram.Snapshot[] handlerSnapshots;
+
+    /** MBean we registered, or null **/
+    private ObjectName objectName;
+
+    /**
+     * Creates a publisher that accepts events from many threads, and whose handlers block while
+     * waiting for events.
+     *
+     * @param ringBufferSize
+     *            size of ring buffer, a power of 2
+     * @param handlers
+     *            handlers that process events
+     */
     @SafeVarargs
+    @SuppressWarnings("varargs")
     public StoreEventPublisher(final int ringBufferSize, final EventHandler<StoreEvent<T>>... handlers) {
+        // handlers are copied before they leave this constructor
+        this(ringBufferSize, ImmutableList.copyOf(handlers));
+    }
+
+    /**
+     * Creates a publisher that accepts events from many threads, and whose handlers block while
+     * waiting for events.
+     *
+     * @param ringBufferSize
+     *            size of ring buffer, a power of 2
+     * @param handlers
+     *            handlers that process events
+     */
+    public StoreEventPublisher(final int ringBufferSize, final List<EventHandler<StoreEvent<T>>> handlers) {
+        this(StoreEventPublisher.<T> builder().ringBufferSize(ringBufferSize).handlers(handlers));
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private StoreEventPublisher(final Builder<T> builder) {
         // start disruptor that receives DAO events and forwards to consumers
         this.disruptor = new Disruptor<>( //
                 new StoreEventFactory<T>(), //
-                ringBufferSize, //
-                ExecutorUtils.newThreadFactory(StoreEventPublisher.class, false), //
-                ProducerType.SINGLE, //
-                new BlockingWaitStrategy());
-        disruptor.handleEventsWith(handlers);
+                builder.ringBufferSize, //
+                builder.threadFactory != null ? builder.threadFactory
+                        : ExecutorUtils.newThreadFactory(StoreEventPublisher.class, false), //
+                builder.producerType, //
+                builder.waitStrategy != null ? builder.waitStrategy : new BlockingWaitStrategy());
+        disruptor.handleEventsWith(builder.handlers.toArray(new EventHandler[builder.handlers.size()]));
         disruptor.start();
 
         // get ring buffer we publish to
         this.ringBuffer = disruptor.getRingBuffer();
+        this.handlers = ImmutableList.copyOf(builder.handlers);
+        this.handlerSnapshots = new Histogram.Snapshot[handlers.size()];
+        FlightRecorder.addPeriodicEvent(PublisherStatisticsEvent.class, statistics);
+        FlightRecorder.addPeriodicEvent(HandlerStatisticsEvent.class, handlerStatistics);
     }
 
     public StoreEventPublisher(final RingBuffer<StoreEvent<T>> ringBuffer) {
+        Preconditions.checkArgument(ringBuffer != null, "ringBuffer must be non-null");
         this.disruptor = null;
         this.ringBuffer = ringBuffer;
+        this.handlers = ImmutableList.of();
+        this.handlerSnapshots = new Histogram.Snapshot[0];
+        FlightRecorder.addPeriodicEvent(PublisherStatisticsEvent.class, statistics);
     }
 
     @Override
     public void close() {
         if (closed.compareAndSet(false, true)) {
+            FlightRecorder.removePeriodicEvent(statistics);
+            FlightRecorder.removePeriodicEvent(handlerStatistics);
+            unregister();
             if (disruptor != null) {
                 this.disruptor.shutdown();
             }
@@ -75,7 +261,7 @@ public class StoreEventPublisher<T extends HasId> implements StoreListener<T>, C
     @Override
     public void delete(final String id) {
         Preconditions.checkArgument(!StringUtils.isEmpty(id), "id must be non-empty");
-        final long sequence = ringBuffer.next();
+        final long sequence = next(1);
         try {
             final StoreEvent<T> event = ringBuffer.get(sequence);
             event.reset();
@@ -83,13 +269,14 @@ public class StoreEventPublisher<T extends HasId> implements StoreListener<T>, C
             event.setId(id);
         } finally {
             ringBuffer.publish(sequence);
+            published.increment();
         }
     }
 
     @Override
     public void delete(final T value) {
         Preconditions.checkArgument(value != null, "value must be non-null");
-        final long sequence = ringBuffer.next();
+        final long sequence = next(1);
         try {
             final StoreEvent<T> event = ringBuffer.get(sequence);
             event.reset();
@@ -98,13 +285,136 @@ public class StoreEventPublisher<T extends HasId> implements StoreListener<T>, C
             event.setValue(value);
         } finally {
             ringBuffer.publish(sequence);
+            published.increment();
+        }
+    }
+
+    @Override
+    public void deleteAllIds(final List<String> ids) {
+        for (final String id : ids) {
+            Preconditions.checkArgument(!StringUtils.isEmpty(id), "id must be non-empty");
+        }
+        publishAll(ids.size(), (event, index) -> {
+            event.setAction(Action.DELETE);
+            event.setId(ids.get(index));
+        });
+    }
+
+    @Override
+    public void deleteAllValues(final List<T> values) {
+        checkValues(values);
+        publishAll(values.size(), (event, index) -> {
+            final T value = values.get(index);
+            event.setAction(Action.DELETE);
+            event.setId(value.getId());
+            event.setValue(value);
+        });
+    }
+
+    /**
+     * Returns the number of times that a writer had to wait for capacity in a full ring buffer.
+     *
+     * @return number of times that a writer was blocked
+     */
+    @Override
+    public long getBlockedCount() {
+        return blocked.getCount();
+    }
+
+    @Override
+    public double getBlockedP99Micros() {
+        return blocked.getPercentile(99) / 1000d;
+    }
+
+    /**
+     * Returns the histogram of time that writers spent blocked waiting for capacity in a full ring
+     * buffer, in nanoseconds.
+     *
+     * @return histogram of blocked time
+     */
+    public Histogram getBlockedTime() {
+        return blocked;
+    }
+
+    @Override
+    public double getBlockedTotalMillis() {
+        return blocked.getSum() / 1_000_000d;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return ringBuffer.getBufferSize();
+    }
+
+    /**
+     * Returns the number of events that each handler has yet to process, in the order that handlers
+     * were added. This is empty if the publisher was created from an existing ring buffer.
+     *
+     * @return number of events that each handler has yet to process
+     */
+    @Override
+    public long[] getHandlerLags() {
+        final long cursor = ringBuffer.getCursor();
+        final long[] lags = new long[handlers.size()];
+        for (int i = 0; i < lags.length; i++) {
+            lags[i] = Math.max(0, cursor - disruptor.getSequenceValueFor(handlers.get(i)));
         }
+        return lags;
+    }
+
+    /**
+     * Returns the median time that each handler spends handling an event, in microseconds, in the
+     * order that handlers were added. Handlers that do not extend {@link AbstractStoreEventHandler}
+     * do not record their processing time, and are reported as {@link Double#NaN}.
+     *
+     * @return median processing time of each handler
+     */
+    @Override
+    public double[] getHandlerP50Micros() {
+        return processingTimePercentiles(50);
+    }
+
+    /**
+     * Returns the 99th percentile of time that each handler spends handling an event, in
+     * microseconds, in the order that handlers were added. Handlers that do not extend
+     * {@link AbstractStoreEventHandler} are reported as {@link Double#NaN}.
+     *
+     * @return 99th percentile of processing time of each handler
+     */
+    @Override
+    public double[] getHandlerP99Micros() {
+        return processingTimePercentiles(99);
+    }
+
+    /**
+     * Returns the number of events that the slowest handler has yet to process.
+     *
+     * @return number of events that slowest handler has yet to process
+     */
+    @Override
+    public long getMaxHandlerLag() {
+        return Math.max(0, ringBuffer.getCursor() - ringBuffer.getMinimumGatingSequence());
+    }
+
+    /**
+     * Returns the number of events published; sampling this periodically gives the publish rate.
+     *
+     * @return number of events published
+     */
+    @Override
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    @Override
+    public long getRemainingCapacity() {
+        return ringBuffer.remainingCapacity();
     }
 
     @Override
     public void put(final T value) {
         Preconditions.checkArgument(value != null, "value must be non-null");
-        final long sequence = ringBuffer.next();
+        final long sequence = next(1);
         try {
             final StoreEvent<T> event = ringBuffer.get(sequence);
             event.reset();
@@ -113,6 +423,166 @@ public class StoreEventPublisher<T extends HasId> implements StoreListener<T>, C
             event.setValue(value);
         } finally {
             ringBuffer.publish(sequence);
+            published.increment();
+        }
+    }
+
+    @Override
+    public void putAll(final List<T> values) {
+        checkValues(values);
+        publishAll(values.size(), (event, index) -> {
+            final T value = values.get(index);
+            event.setAction(Action.PUT);
+            event.setId(value.getId());
+            event.setValue(value);
+        });
+    }
+
+    /**
+     * Registers this publisher with the platform MBean server, as
+     * <code>com.arakelian.store:type=StoreEventPublisher,name=&lt;name&gt;</code>. The MBean is
+     * unregistered when the publisher is closed.
+     *
+     * @param name
+     *            name of publisher
+     * @throws StoreException
+     *             if the MBean cannot be registered
+     */
+    public synchronized void register(final String name) {
+        Preconditions.checkArgument(!StringUtils.isEmpty(name), "name must be non-empty");
+        Preconditions.checkState(objectName == null, "publisher is already registered");
+        try {
+            final ObjectName on = new ObjectName(
+                    "com.arakelian.store:type=StoreEventPublisher,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+            objectName = on;
+        } catch (final JMException e) {
+            throw new StoreException("Unable to register publisher " + name, e);
+        }
+    }
+
+    private void checkValues(final List<T> values) {
+        for (final T value : values) {
+            Preconditions.checkArgument(value != null, "value must be non-null");
+        }
+    }
+
+    /**
+     * Claims a range of slots for the given number of events, fills them in and publishes the whole
+     * range at once, so that consumers are woken once per range rather than once per event. Events
+     * must be validated before calling this method, since every claimed slot must be published.
+     *
+     * @param count
+     *            number of events to publish
+     * @param translator
+     *            fills in the event with the given index
+     */
+    private void publishAll(final int count, final ObjIntConsumer<StoreEvent<T>> translator) {
+        final int bufferSize = ringBuffer.getBufferSize();
+        for (int start = 0; start < count; start += bufferSize) {
+            final int n = Math.min(bufferSize, count - start);
+            final long hi = next(n);
+            final long lo = hi - (n - 1);
+            try {
+                for (int i = 0; i < n; i++) {
+                    final StoreEvent<T> event = ringBuffer.get(lo + i);
+                    event.reset();
+                    translator.accept(event, start + i);
+                }
+            } finally {
+                ringBuffer.publish(lo, hi);
+                published.add(n);
+            }
+        }
+    }
+
+    private void emitHandlerStatistics() {
+        for (int i = 0; i < handlers.size(); i++) {
+            final Histogram processingTime = processingTime(i);
+            if (processingTime != null) {
+                // flight recorder calls us from a single thread, so snapshots need no lock
+                final Histogram.Snapshot snapshot = processingTime.snapshot();
+                final Histogram.Snapshot interval = handlerSnapshots[i] != null
+                        ? snapshot.since(handlerSnapshots[i])
+                        : snapshot;
+                handlerSnapshots[i] = snapshot;
+
+                final HandlerStatisticsEvent event = new HandlerStatisticsEvent();
+                event.handler = handlers.get(i).getClass().getName();
+                event.index = i;
+                event.handled = interval.getCount();
+                event.p50Micros = interval.getPercentile(50) / 1000d;
+                event.p99Micros = interval.getPercentile(99) / 1000d;
+                event.maxMicros = interval.getMax() / 1000d;
+                event.commit();
+            }
+        }
+    }
+
+    private void emitStatistics() {
+        final PublisherStatisticsEvent event = new PublisherStatisticsEvent();
+        event.bufferSize = ringBuffer.getBufferSize();
+        event.remainingCapacity = ringBuffer.remainingCapacity();
+        event.published = published.sum();
+        event.maxLag = getMaxHandlerLag();
+        event.blocked = blocked.getCount();
+        event.commit();
+    }
+
+    /**
+     * Claims the given number of slots, without blocking if the ring buffer has capacity. If it does
+     * not, a handler has fallen behind, and we record how long we were blocked.
+     *
+     * @param n
+     *            number of slots
+     * @return highest claimed sequence
+     */
+    private long next(final int n) {
+        try {
+            return ringBuffer.tryNext(n);
+        } catch (final InsufficientCapacityException e) {
+            final PublisherBlockedEvent event = new PublisherBlockedEvent();
+            event.begin();
+            final long start = System.nanoTime();
+            final long hi = ringBuffer.next(n);
+            blocked.record(System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.claimed = n;
+                event.bufferSize = ringBuffer.getBufferSize();
+                event.commit();
+            }
+            return hi;
+        }
+    }
+
+    private Histogram processingTime(final int index) {
+        final EventHandler<StoreEvent<T>> handler = handlers.get(index);
+        return handler instanceof AbstractStoreEventHandler
+                ? ((AbstractStoreEventHandler<T>) handler).getProcessingTime()
+                : null;
+    }
+
+    private double[] processingTimePercentiles(final double percentile) {
+        final double[] micros = new double[handlers.size()];
+        for (int i = 0; i < micros.length; i++) {
+            final Histogram processingTime = processingTime(i);
+            micros[i] = processingTime != null //
+                    ? processingTime.getPercentile(percentile) / 1000d
+                    : Double.NaN;
+        }
+        return micros;
+    }
+
+    private synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (final JMException e) {
+                throw new StoreException("Unable to unregister " + objectName, e);
+            } finally {
+                objectName = null;
+            }
         }
     }
 }
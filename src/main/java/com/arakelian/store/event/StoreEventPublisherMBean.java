@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.event;
+
+/**
+ * JMX view of the health of a {@link StoreEventPublisher}.
+ */
+public interface StoreEventPublisherMBean {
+    public long getBlockedCount();
+
+    public double getBlockedP99Micros();
+
+    public double getBlockedTotalMillis();
+
+    public int getBufferSize();
+
+    public long[] getHandlerLags();
+
+    public double[] getHandlerP50Micros();
+
+    public double[] getHandlerP99Micros();
+
+    public long getMaxHandlerLag();
+
+    public long getPublishedCount();
+
+    public long getRemainingCapacity();
+}
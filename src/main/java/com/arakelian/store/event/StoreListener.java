@@ -17,6 +17,8 @@
 
 package com.arakelian.store.event;
 
+import java.util.List;
+
 import com.arakelian.store.Store;
 import com.arakelian.store.feature.HasId;
 
@@ -45,6 +47,34 @@ public interface StoreListener<T extends HasId> {
      */
     public void delete(T value);
 
+    /**
+     * Notifies listener that values with the given ids were deleted from data store. This is called
+     * once for each partition of a bulk delete; the default implementation calls
+     * {@link #delete(String)} for each id.
+     *
+     * @param ids
+     *            non-empty ids of values that were deleted
+     */
+    public default void deleteAllIds(final List<String> ids) {
+        for (final String id : ids) {
+            delete(id);
+        }
+    }
+
+    /**
+     * Notifies listener that the given values were deleted from data store. This is called once for
+     * each partition of a bulk delete; the default implementation calls {@link #delete(HasId)} for
+     * each value.
+     *
+     * @param values
+     *            values that were deleted, each with a non-empty id
+     */
+    public default void deleteAllValues(final List<T> values) {
+        for (final T value : values) {
+            delete(value);
+        }
+    }
+
     /**
      * Notifies listener that value was put to data store.
      *
@@ -52,4 +82,17 @@ public interface StoreListener<T extends HasId> {
      *            value that was stored
      */
     public void put(T value);
+
+    /**
+     * Notifies listener that the given values were put to data store. This is called once for each
+     * partition of a bulk put; the default implementation calls {@link #put(HasId)} for each value.
+     *
+     * @param values
+     *            values that were stored
+     */
+    public default void putAll(final List<T> values) {
+        for (final T value : values) {
+            put(value);
+        }
+    }
 }
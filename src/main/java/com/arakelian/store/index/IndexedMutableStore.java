@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.index;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.arakelian.store.IndexedStore;
+import com.arakelian.store.MutableStore;
+import com.arakelian.store.event.StoreListener;
+import com.arakelian.store.feature.HasId;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * {@link IndexedStore} that keeps in-memory indexes over the values of another
+ * {@link MutableStore}: {@link SecondaryIndex secondary indexes} that look up values by key, and
+ * {@link TimestampIndex timestamp indexes} that return values changed within a range of time.
+ *
+ * <p>
+ * Indexes are maintained incrementally from the {@link StoreListener} callbacks of the delegate,
+ * so the listener returned by {@link #getListener()} must be registered with the delegate, and
+ * indexes must be added before values are stored. Queries resolve ids from the index and then
+ * fetch the values with a single {@link MutableStore#getAll(Collection)} call; values that no
+ * longer match the query because they were updated concurrently are discarded.
+ * </p>
+ *
+ * <p>
+ * A delete removes the id from every index, whether or not the delegate keeps a tombstone, so
+ * soft deletes made through the store do not appear in a {@link TimestampIndex.Field#DELETED}
+ * index; see {@link TimestampIndex}.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class IndexedMutableStore<T extends HasId> implements IndexedStore<T>, MutableStore<T> {
+    /**
+     * Updates every index when the delegate store notifies us of changes.
+     */
+    private final class Listener implements StoreListener<T> {
+        @Override
+        public void delete(final String id) {
+            for (final StoreIndex<T> index : indexes.values()) {
+                index.remove(id);
+            }
+        }
+
+        @Override
+        public void delete(final T value) {
+            delete(value.getId());
+        }
+
+        @Override
+        public void put(final T value) {
+            for (final StoreIndex<T> index : indexes.values()) {
+                index.put(value);
+            }
+        }
+    }
+
+    /** Underlying store **/
+    private final MutableStore<T> delegate;
+
+    /** Indexes by name **/
+    private final ConcurrentHashMap<String, StoreIndex<T>> indexes = new ConcurrentHashMap<>();
+
+    /** Receives change notifications from delegate **/
+    private final StoreListener<T> listener = new Listener();
+
+    public IndexedMutableStore(final MutableStore<T> delegate) {
+        Preconditions.checkArgument(delegate != null, "delegate must be non-null");
+        this.delegate = delegate;
+    }
+
+    /**
+     * Adds the given index, which indexes values stored from now on.
+     *
+     * @param index
+     *            index to add
+     * @param <I>
+     *            type of index
+     * @return the given index
+     */
+    public <I extends StoreIndex<T>> I addIndex(final I index) {
+        Preconditions.checkArgument(index != null, "index must be non-null");
+        Preconditions.checkArgument(
+                indexes.putIfAbsent(index.getName(), index) == null,
+                "index " + index.getName() + " already exists");
+        return index;
+    }
+
+    /**
+     * Adds a {@link SecondaryIndex} with the given name, which indexes values stored from now on.
+     *
+     * @param name
+     *            name of index
+     * @param keyExtractor
+     *            returns the key that a value is indexed under, or null if it should not be indexed
+     * @return the new index
+     */
+    public SecondaryIndex<T> addIndex(final String name, final Function<? super T, ?> keyExtractor) {
+        return addIndex(new SecondaryIndex<>(name, keyExtractor));
+    }
+
+    /**
+     * Adds a {@link TimestampIndex} with the given name, which indexes values stored from now on.
+     *
+     * @param name
+     *            name of index
+     * @param field
+     *            timestamp that values are ordered by
+     * @return the new index
+     */
+    public TimestampIndex<T> addTimestampIndex(final String name, final TimestampIndex.Field field) {
+        return addIndex(new TimestampIndex<>(name, field));
+    }
+
+    @Override
+    public void delete(final String id) {
+        delegate.delete(id);
+    }
+
+    @Override
+    public void delete(final T value) {
+        delegate.delete(value);
+    }
+
+    @Override
+    public void deleteAll(final Collection<T> values) {
+        delegate.deleteAll(values);
+    }
+
+    @Override
+    public void deleteAll(final String... ids) {
+        delegate.deleteAll(ids);
+    }
+
+    @Override
+    public void deleteBy(final String indexName, final Object... args) {
+        final List<T> values = getAllBy(indexName, args);
+        if (values.size() != 0) {
+            delegate.deleteAll(values);
+        }
+    }
+
+    @Override
+    public T get(final String id) {
+        return delegate.get(id);
+    }
+
+    @Override
+    public List<T> getAll(final Collection<String> ids) {
+        return delegate.getAll(ids);
+    }
+
+    @Override
+    public List<T> getAll(final String... ids) {
+        return delegate.getAll(ids);
+    }
+
+    /**
+     * Returns a page of values whose timestamp is in the given range, ordered by timestamp. A page
+     * may hold fewer values than the limit if values changed after they were looked up; an empty
+     * page means there are no more values in the range.
+     *
+     * @param indexName
+     *            name of a {@link TimestampIndex}
+     * @param from
+     *            inclusive lower bound, or null if unbounded
+     * @param to
+     *            exclusive upper bound, or null if unbounded
+     * @param after
+     *            entry of last value of previous page, as returned by
+     *            {@link TimestampIndex#entryOf(HasId)}, or null for the first page
+     * @param limit
+     *            maximum number of values to return
+     * @return list of values, or empty list if there are none
+     */
+    public List<T> getAllBetween(
+            final String indexName,
+            final ZonedDateTime from,
+            final ZonedDateTime to,
+            final TimestampIndex.Entry after,
+            final int limit) {
+        final StoreIndex<T> index = getIndex(indexName);
+        Preconditions.checkArgument(
+                index instanceof TimestampIndex,
+                "index " + indexName + " is not a timestamp index");
+        final List<String> ids = Lists.transform(
+                ((TimestampIndex<T>) index).getEntries(from, to, after, limit),
+                TimestampIndex.Entry::getId);
+        return getAll(index, ids, from, to);
+    }
+
+    @Override
+    public List<T> getAllBy(final String indexName, final Object... args) {
+        final StoreIndex<T> index = getIndex(indexName);
+        return getAll(index, index.lookup(args), args);
+    }
+
+    @Override
+    public T getBy(final String indexName, final Object... args) {
+        final List<T> values = getAllBy(indexName, args);
+        return values.size() != 0 ? values.get(0) : null;
+    }
+
+    public MutableStore<T> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the index with the given name.
+     *
+     * @param name
+     *            name of index
+     * @return the index with the given name
+     * @throws IllegalArgumentException
+     *             if there is no index with the given name
+     */
+    public StoreIndex<T> getIndex(final String name) {
+        final StoreIndex<T> index = name != null ? indexes.get(name) : null;
+        Preconditions.checkArgument(index != null, "index " + name + " does not exist");
+        return index;
+    }
+
+    /**
+     * Returns the listener that keeps the indexes consistent with the delegate store; it should be
+     * added to the {@link com.arakelian.store.StoreConfig#getListeners() listeners} of the
+     * delegate.
+     *
+     * @return listener that updates indexes
+     */
+    public StoreListener<T> getListener() {
+        return listener;
+    }
+
+    @Override
+    public void put(final T value) {
+        delegate.put(value);
+    }
+
+    @Override
+    public void putAll(final Collection<T> values) {
+        delegate.putAll(values);
+    }
+
+    @Override
+    public void putAll(final T[] values) {
+        delegate.putAll(values);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("delegate", delegate) //
+                .add("indexes", indexes.values()) //
+                .toString();
+    }
+
+    private List<T> getAll(final StoreIndex<T> index, final List<String> ids, final Object... args) {
+        if (ids.size() == 0) {
+            return Collections.<T> emptyList();
+        }
+
+        // values are returned in order of ids
+        List<T> result = null;
+        for (final T value : delegate.getAll(ids)) {
+            if (index.matches(value, args)) {
+                if (result == null) {
+                    result = new ArrayList<>(ids.size());
+                }
+                result.add(value);
+            }
+        }
+        return result != null ? result : Collections.<T> emptyList();
+    }
+}
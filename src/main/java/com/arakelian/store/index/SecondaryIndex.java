@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.index;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.arakelian.store.feature.HasId;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Named secondary index that maps the key extracted from each value to the ids of the values with
+ * that key.
+ *
+ * <p>
+ * The index is backed by a concurrent multimap of keys to ids, and by a reverse map of ids to keys
+ * so that a value can be removed from the index when only its id is known, or moved to a new key
+ * when it is updated. Updates of the same id are serialized; lookups never block.
+ * </p>
+ *
+ * <p>
+ * The key extractor may return null for values that should not be indexed. Composite keys should
+ * be returned as a {@link List}, so that they match the arguments of a query such as
+ * {@link com.arakelian.store.IndexedStore#getAllBy(String, Object...)}.
+ * </p>
+ *
+ * @param <T>
+ *            type of value indexed
+ */
+public final class SecondaryIndex<T extends HasId> extends StoreIndex<T> {
+    /**
+     * Returns the key that is looked up for the given query arguments: a single argument is used
+     * as is, and several arguments are combined into a list.
+     *
+     * @param args
+     *            query arguments
+     * @return key to look up
+     */
+    public static Object keyOf(final Object... args) {
+        Preconditions.checkArgument(args != null && args.length != 0, "args must be non-empty");
+        return args.length == 1 ? args[0] : Arrays.asList(args);
+    }
+
+    /** Extracts key from value **/
+    private final Function<? super T, ?> keyExtractor;
+
+    /** Maps key to ids of values with that key **/
+    private final ConcurrentHashMap<Object, Set<String>> idsByKey = new ConcurrentHashMap<>();
+
+    /** Maps id to key it is currently indexed under **/
+    private final ConcurrentHashMap<String, Object> keysById = new ConcurrentHashMap<>();
+
+    public SecondaryIndex(final String name, final Function<? super T, ?> keyExtractor) {
+        super(name);
+        Preconditions.checkArgument(keyExtractor != null, "keyExtractor must be non-null");
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * Returns the ids of values that are indexed under the given key.
+     *
+     * @param key
+     *            key to look up
+     * @return snapshot of ids, or empty list if there are none
+     */
+    public List<String> getIds(final Object key) {
+        if (key == null) {
+            return Collections.<String> emptyList();
+        }
+        final Set<String> ids = idsByKey.get(key);
+        return ids != null ? ImmutableList.copyOf(ids) : Collections.<String> emptyList();
+    }
+
+    /**
+     * Returns the number of distinct keys in the index.
+     *
+     * @return number of distinct keys
+     */
+    public int getKeyCount() {
+        return idsByKey.size();
+    }
+
+    @Override
+    public List<String> lookup(final Object... args) {
+        return getIds(keyOf(args));
+    }
+
+    @Override
+    public boolean matches(final T value, final Object... args) {
+        return value != null && Objects.equals(keyExtractor.apply(value), keyOf(args));
+    }
+
+    @Override
+    public int size() {
+        return keysById.size();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("name", getName()) //
+                .add("keys", idsByKey.size()) //
+                .add("size", keysById.size()) //
+                .toString();
+    }
+
+    @Override
+    protected void put(final T value) {
+        final String id = value.getId();
+        final Object key = keyExtractor.apply(value);
+        keysById.compute(id, (ignored, previous) -> {
+            if (previous != null && !previous.equals(key)) {
+                removeId(previous, id);
+            }
+            if (key != null) {
+                idsByKey.compute(key, (k, ids) -> {
+                    final Set<String> set = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                    set.add(id);
+                    return set;
+                });
+            }
+            return key;
+        });
+    }
+
+    @Override
+    protected void remove(final String id) {
+        keysById.computeIfPresent(id, (ignored, previous) -> {
+            removeId(previous, id);
+            return null;
+        });
+    }
+
+    private void removeId(final Object key, final String id) {
+        idsByKey.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.index;
+
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.arakelian.store.feature.HasId;
+import com.google.common.base.Preconditions;
+
+/**
+ * Named index over the values of a store, which is kept up to date by {@link IndexedMutableStore}
+ * as values are stored and deleted, and which can be queried by
+ * {@link com.arakelian.store.IndexedStore} methods.
+ *
+ * @param <T>
+ *            type of value indexed
+ */
+public abstract class StoreIndex<T extends HasId> {
+    /** Name of index **/
+    private final String name;
+
+    protected StoreIndex(final String name) {
+        Preconditions.checkArgument(!StringUtils.isEmpty(name), "name must be non-empty");
+        this.name = name;
+    }
+
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the ids of values that match the given query arguments.
+     *
+     * @param args
+     *            query arguments
+     * @return snapshot of ids, or empty list if there are none
+     */
+    public abstract List<String> lookup(Object... args);
+
+    /**
+     * Returns true if the given value matches the given query arguments; this is used to discard
+     * values that were updated after their ids were looked up.
+     *
+     * @param value
+     *            value to test
+     * @param args
+     *            query arguments
+     * @return true if value matches query arguments
+     */
+    public abstract boolean matches(T value, Object... args);
+
+    /**
+     * Returns the number of ids in the index.
+     *
+     * @return number of ids
+     */
+    public abstract int size();
+
+    /**
+     * Indexes the given value, replacing any entry previously indexed for the same id.
+     *
+     * @param value
+     *            value that was stored
+     */
+    protected abstract void put(T value);
+
+    /**
+     * Removes the value with the given id from the index.
+     *
+     * @param id
+     *            id of value that was deleted
+     */
+    protected abstract void remove(String id);
+}
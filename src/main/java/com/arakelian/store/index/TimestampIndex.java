@@ -0,0 +1,344 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.index;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.feature.HasSoftDeletes;
+import com.arakelian.store.feature.HasTimestamp;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Index that orders values by one of their timestamps, and answers range queries such as "all
+ * values updated since T" without scanning the store.
+ *
+ * <p>
+ * Entries are kept in a concurrent skip list ordered by timestamp and then by id, so that range
+ * queries can be paginated with the last {@link Entry} of the previous page as a cursor, even when
+ * many values share the same timestamp. Timestamps are compared as instants, regardless of zone.
+ * </p>
+ *
+ * <p>
+ * Values that do not have the indexed timestamp, or whose timestamp is null, are not indexed.
+ * Deleting a value removes it from every index, including a {@link Field#DELETED} index, even when
+ * the store keeps a tombstone for it: store listeners are not told the time of deletion, and cannot
+ * tell a soft delete from a purge. A {@link Field#DELETED} index therefore only holds values that
+ * were put with {@link HasSoftDeletes#getDeleted()} already set; tombstones left by deletes are
+ * found with {@link com.arakelian.store.PurgeableStore#deletedIds(ZonedDateTime)} instead.
+ * </p>
+ *
+ * @param <T>
+ *            type of value indexed
+ */
+public final class TimestampIndex<T extends HasId> extends StoreIndex<T> {
+    /**
+     * Position of a value in the index.
+     */
+    public static final class Entry implements Comparable<Entry> {
+        /**
+         * Returns an entry for the given timestamp and id.
+         *
+         * @param timestamp
+         *            timestamp of value
+         * @param id
+         *            id of value, or empty string for the first position at the given timestamp
+         * @return entry for the given timestamp and id
+         */
+        public static Entry of(final ZonedDateTime timestamp, final String id) {
+            Preconditions.checkArgument(timestamp != null, "timestamp must be non-null");
+            Preconditions.checkArgument(id != null, "id must be non-null");
+            return new Entry(timestamp, id);
+        }
+
+        private final ZonedDateTime timestamp;
+
+        private final Instant instant;
+
+        private final String id;
+
+        private Entry(final ZonedDateTime timestamp, final String id) {
+            this.timestamp = timestamp;
+            this.instant = timestamp.toInstant();
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            final int result = instant.compareTo(other.instant);
+            return result != 0 ? result : id.compareTo(other.id);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            final Entry other = (Entry) obj;
+            return instant.equals(other.instant) && id.equals(other.id);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public ZonedDateTime getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * instant.hashCode() + id.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this) //
+                    .add("timestamp", timestamp) //
+                    .add("id", id) //
+                    .toString();
+        }
+    }
+
+    /**
+     * Timestamp that values are ordered by. {@link #DELETED} is read from
+     * {@link HasSoftDeletes#getDeleted()}, so it only covers values that were put with that
+     * timestamp set, and not values deleted through the store.
+     */
+    public enum Field {
+        CREATED, UPDATED, DELETED;
+
+        /**
+         * Returns this timestamp of the given value.
+         *
+         * @param value
+         *            a value
+         * @return this timestamp of the given value, or null if it does not have one
+         */
+        public ZonedDateTime get(final Object value) {
+            switch (this) {
+            case CREATED:
+                return value instanceof HasTimestamp ? ((HasTimestamp) value).getCreated() : null;
+            case UPDATED:
+                return value instanceof HasTimestamp ? ((HasTimestamp) value).getUpdated() : null;
+            case DELETED:
+                return value instanceof HasSoftDeletes ? ((HasSoftDeletes) value).getDeleted() : null;
+            default:
+                throw new IllegalStateException("Unknown field " + this);
+            }
+        }
+    }
+
+    /** Timestamp that values are ordered by **/
+    private final Field field;
+
+    /** Entries ordered by timestamp and id **/
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    /** Maps id to its current entry **/
+    private final ConcurrentHashMap<String, Entry> entriesById = new ConcurrentHashMap<>();
+
+    public TimestampIndex(final String name, final Field field) {
+        super(name);
+        Preconditions.checkArgument(field != null, "field must be non-null");
+        this.field = field;
+    }
+
+    /**
+     * Returns the entry of the given value, which can be used as the cursor of the next page after
+     * a page that ended with the given value.
+     *
+     * @param value
+     *            a value
+     * @return entry of the given value, or null if the value does not have the indexed timestamp
+     */
+    public Entry entryOf(final T value) {
+        final ZonedDateTime timestamp = value != null ? field.get(value) : null;
+        return timestamp != null && !StringUtils.isEmpty(value.getId()) ? new Entry(timestamp, value.getId())
+                : null;
+    }
+
+    /**
+     * Returns a page of entries whose timestamp is in the given range, in order.
+     *
+     * @param from
+     *            inclusive lower bound, or null if unbounded
+     * @param to
+     *            exclusive upper bound, or null if unbounded
+     * @param after
+     *            last entry of previous page, or null for the first page
+     * @param limit
+     *            maximum number of entries to return
+     * @return snapshot of entries, or empty list if there are none
+     */
+    public List<Entry> getEntries(
+            final ZonedDateTime from,
+            final ZonedDateTime to,
+            final Entry after,
+            final int limit) {
+        Preconditions.checkArgument(limit >= 0, "limit must be non-negative");
+        final NavigableSet<Entry> range = range(from, to, after);
+        if (range == null || limit == 0) {
+            return Collections.<Entry> emptyList();
+        }
+
+        final List<Entry> page = new ArrayList<>(Math.min(limit, 64));
+        for (final Entry entry : range) {
+            page.add(entry);
+            if (page.size() == limit) {
+                break;
+            }
+        }
+        return page;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Returns the ids of values whose timestamp is in the given range, in order.
+     *
+     * @param from
+     *            inclusive lower bound, or null if unbounded
+     * @param to
+     *            exclusive upper bound, or null if unbounded
+     * @return snapshot of ids, or empty list if there are none
+     */
+    public List<String> getIds(final ZonedDateTime from, final ZonedDateTime to) {
+        final NavigableSet<Entry> range = range(from, to, null);
+        if (range == null) {
+            return Collections.<String> emptyList();
+        }
+        final List<String> ids = new ArrayList<>();
+        for (final Entry entry : range) {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the ids of values whose timestamp is in the range given by the query arguments.
+     *
+     * @param args
+     *            inclusive lower bound and optional exclusive upper bound, either of which may be
+     *            null if unbounded
+     * @return snapshot of ids, or empty list if there are none
+     */
+    @Override
+    public List<String> lookup(final Object... args) {
+        return getIds(from(args), to(args));
+    }
+
+    @Override
+    public boolean matches(final T value, final Object... args) {
+        final Entry entry = entryOf(value);
+        return entry != null && inRange(entry, from(args), to(args));
+    }
+
+    @Override
+    public int size() {
+        return entriesById.size();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("name", getName()) //
+                .add("field", field) //
+                .add("size", entriesById.size()) //
+                .toString();
+    }
+
+    @Override
+    protected void put(final T value) {
+        final Entry entry = entryOf(value);
+        entriesById.compute(value.getId(), (id, previous) -> {
+            if (previous != null) {
+                entries.remove(previous);
+            }
+            if (entry != null) {
+                entries.add(entry);
+            }
+            return entry;
+        });
+    }
+
+    @Override
+    protected void remove(final String id) {
+        entriesById.computeIfPresent(id, (ignored, previous) -> {
+            entries.remove(previous);
+            return null;
+        });
+    }
+
+    private ZonedDateTime from(final Object... args) {
+        Preconditions.checkArgument(
+                args != null && args.length >= 1 && args.length <= 2,
+                "args must be a lower bound and an optional upper bound");
+        return toTimestamp(args[0]);
+    }
+
+    private boolean inRange(final Entry entry, final ZonedDateTime from, final ZonedDateTime to) {
+        return (from == null || !entry.instant.isBefore(from.toInstant()))
+                && (to == null || entry.instant.isBefore(to.toInstant()));
+    }
+
+    private NavigableSet<Entry> range(final ZonedDateTime from, final ZonedDateTime to, final Entry after) {
+        // empty id sorts before every other id with same timestamp
+        Entry lower = from != null ? new Entry(from, "") : null;
+        boolean inclusive = true;
+        if (after != null && (lower == null || after.compareTo(lower) >= 0)) {
+            lower = after;
+            inclusive = false;
+        }
+        final Entry upper = to != null ? new Entry(to, "") : null;
+        if (lower != null && upper != null) {
+            return lower.compareTo(upper) < 0 ? entries.subSet(lower, inclusive, upper, false) : null;
+        } else if (lower != null) {
+            return entries.tailSet(lower, inclusive);
+        } else if (upper != null) {
+            return entries.headSet(upper, false);
+        }
+        return entries;
+    }
+
+    private ZonedDateTime to(final Object... args) {
+        return args.length == 2 ? toTimestamp(args[1]) : null;
+    }
+
+    private ZonedDateTime toTimestamp(final Object arg) {
+        Preconditions.checkArgument(
+                arg == null || arg instanceof ZonedDateTime,
+                "args must be ZonedDateTime or null");
+        return (ZonedDateTime) arg;
+    }
+}
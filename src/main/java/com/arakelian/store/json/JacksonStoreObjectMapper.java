@@ -18,36 +18,165 @@
 package com.arakelian.store.json;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.arakelian.store.feature.HasId;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.google.common.base.Preconditions;
 
+/**
+ * {@link StoreObjectMapper} that uses Jackson. The reader for the value class and the writer are
+ * built once, and the byte-oriented methods use Jackson's byte-based parsers and generators
+ * directly, without creating intermediate Strings.
+ *
+ * <p>
+ * {@link #readValues(List)} joins the payloads of a batch into a single buffer and reads them
+ * with one parser, which avoids creating and initializing a parser for every value.
+ * </p>
+ *
+ * @param <T>
+ *            type of value
+ */
 public class JacksonStoreObjectMapper<T extends HasId> implements StoreObjectMapper<T> {
-    private final Class<T> clazz;
+    /** Pre-built reader for clazz; streams are left open for the caller to close **/
+    private final ObjectReader reader;
 
-    private final ObjectMapper objectMapper;
+    /**
+     * Placed between payloads that are joined together; text formats need whitespace so that
+     * adjacent values cannot run into each other, while binary formats such as Smile start each
+     * value with a header.
+     **/
+    private final byte[] separator;
+
+    /**
+     * Pre-built writer; values are written using their runtime type, so subclasses of clazz keep
+     * their properties. Streams are left open for the caller to close.
+     **/
+    private final ObjectWriter writer;
 
     public JacksonStoreObjectMapper(final Class<T> clazz, final ObjectMapper objectMapper) {
         Preconditions.checkArgument(clazz != null, "clazz must be non-null");
         Preconditions.checkArgument(objectMapper != null, "objectMapper must be non-null");
-        this.clazz = clazz;
-        this.objectMapper = objectMapper;
+        this.reader = objectMapper.readerFor(clazz).without(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        this.writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.separator = objectMapper.getFactory().canHandleBinaryNatively() ? new byte[0]
+                : new byte[] { '\n' };
     }
 
     @Override
-    public T readValue(final String value) throws IOException {
-        if (StringUtils.isEmpty(value)) {
+    public T readValue(final byte[] bytes, final int offset, final int length) throws IOException {
+        return length == 0 ? null : reader.readValue(bytes, offset, length);
+    }
+
+    @Override
+    public T readValue(final ByteBuffer buffer) throws IOException {
+        if (!buffer.hasRemaining()) {
             return null;
         }
-        return StringUtils.isEmpty(value) ? null : objectMapper.readValue(value, clazz);
+        if (buffer.hasArray()) {
+            return readValue(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+
+        // direct buffers are parsed in place
+        return reader.readValue(new ByteBufferBackedInputStream(buffer.duplicate()));
+    }
+
+    @Override
+    public T readValue(final InputStream in) throws IOException {
+        try (JsonParser parser = reader.createParser(in)) {
+            return parser.nextToken() == null ? null : reader.readValue(parser);
+        }
+    }
+
+    @Override
+    public T readValue(final String value) throws IOException {
+        return StringUtils.isEmpty(value) ? null : reader.readValue(value);
+    }
+
+    @Override
+    public List<T> readValues(final InputStream in) throws IOException {
+        // one parser is reused for every value in the stream
+        final List<T> values = new ArrayList<>();
+        try (MappingIterator<T> iterator = reader.readValues(in)) {
+            while (iterator.hasNextValue()) {
+                values.add(iterator.nextValue());
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public List<T> readValues(final List<byte[]> payloads) throws IOException {
+        int count = 0;
+        int length = 0;
+        for (final byte[] bytes : payloads) {
+            if (bytes != null && bytes.length != 0) {
+                count++;
+                length += bytes.length + separator.length;
+            }
+        }
+        if (count <= 1) {
+            return StoreObjectMapper.super.readValues(payloads);
+        }
+
+        final byte[] joined = new byte[length];
+        int offset = 0;
+        for (final byte[] bytes : payloads) {
+            if (bytes != null && bytes.length != 0) {
+                System.arraycopy(bytes, 0, joined, offset, bytes.length);
+                offset += bytes.length;
+                System.arraycopy(separator, 0, joined, offset, separator.length);
+                offset += separator.length;
+            }
+        }
+
+        // one parser is reused for every value in the batch
+        final List<T> values = new ArrayList<>(count);
+        int read = 0;
+        try (MappingIterator<T> iterator = reader.readValues(joined)) {
+            while (iterator.hasNextValue()) {
+                final T value = iterator.nextValue();
+                read++;
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+        }
+
+        // a payload that is incomplete could otherwise run into the next one
+        if (read != count) {
+            throw new IOException("Expected " + count + " values but read " + read);
+        }
+        return values;
+    }
+
+    @Override
+    public void writeValue(final OutputStream out, final T value) throws IOException {
+        Preconditions.checkArgument(value != null, "value must be non-null");
+        writer.writeValue(out, value);
+    }
+
+    @Override
+    public byte[] writeValueAsBytes(final T value) throws IOException {
+        Preconditions.checkArgument(value != null, "value must be non-null");
+        return writer.writeValueAsBytes(value);
     }
 
     @Override
     public String writeValueAsString(final T value) throws IOException {
         Preconditions.checkArgument(value != null, "value must be non-null");
-        return objectMapper.writeValueAsString(value);
+        return writer.writeValueAsString(value);
     }
 }
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store.json;
+
+import java.io.IOException;
+import java.util.Base64;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.arakelian.store.feature.HasId;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.google.common.base.Preconditions;
+
+/**
+ * {@link StoreObjectMapper} that uses Jackson's Smile format, a compact binary encoding of JSON.
+ * Disk and off-heap engines should use the byte-oriented methods, which never create Strings;
+ * the String methods exist for compatibility and return the Smile bytes encoded as Base64.
+ *
+ * @param <T>
+ *            type of value
+ */
+public class SmileStoreObjectMapper<T extends HasId> extends JacksonStoreObjectMapper<T> {
+    public SmileStoreObjectMapper(final Class<T> clazz) {
+        this(clazz, new SmileMapper());
+    }
+
+    public SmileStoreObjectMapper(final Class<T> clazz, final SmileMapper smileMapper) {
+        super(clazz, smileMapper);
+    }
+
+    @Override
+    public T readValue(final String value) throws IOException {
+        if (StringUtils.isEmpty(value)) {
+            return null;
+        }
+        final byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(value);
+        } catch (final IllegalArgumentException e) {
+            throw new IOException("Invalid Base64 encoding of Smile value", e);
+        }
+        return readValue(bytes);
+    }
+
+    @Override
+    public String writeValueAsString(final T value) throws IOException {
+        Preconditions.checkArgument(value != null, "value must be non-null");
+        return Base64.getEncoder().encodeToString(writeValueAsBytes(value));
+    }
+}
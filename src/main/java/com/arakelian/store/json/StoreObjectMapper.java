@@ -17,12 +17,217 @@
 
 package com.arakelian.store.json;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.lang3.StringUtils;
 
 import com.arakelian.store.feature.HasId;
+import com.google.common.collect.Lists;
 
+/**
+ * Converts values to and from their serialized form.
+ *
+ * <p>
+ * Only the String methods must be implemented; the byte-oriented methods default to encoding the
+ * String form as UTF-8. Engines that store bytes should call the byte-oriented methods, and mappers
+ * should override them to avoid creating intermediate Strings.
+ * </p>
+ *
+ * @param <T>
+ *            type of value
+ */
 public interface StoreObjectMapper<T extends HasId> {
+    /** Number of payloads decoded by each task of a parallel batch **/
+    public static final int PARALLEL_CHUNK_SIZE = 64;
+
+    /**
+     * Reads a value from the given bytes.
+     *
+     * @param bytes
+     *            serialized value
+     * @return value, or null if bytes are empty
+     * @throws IOException
+     *             if the value cannot be read
+     */
+    public default T readValue(final byte[] bytes) throws IOException {
+        return bytes == null ? null : readValue(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads a value from a range of the given bytes.
+     *
+     * @param bytes
+     *            buffer containing serialized value
+     * @param offset
+     *            offset of serialized value within buffer
+     * @param length
+     *            length of serialized value
+     * @return value, or null if length is zero
+     * @throws IOException
+     *             if the value cannot be read
+     */
+    public default T readValue(final byte[] bytes, final int offset, final int length) throws IOException {
+        return readValue(new String(bytes, offset, length, UTF_8));
+    }
+
+    /**
+     * Reads a value from the remaining bytes of the given buffer. The position of the buffer is not
+     * changed.
+     *
+     * @param buffer
+     *            buffer containing serialized value
+     * @return value, or null if buffer has no remaining bytes
+     * @throws IOException
+     *             if the value cannot be read
+     */
+    public default T readValue(final ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            return readValue(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return readValue(bytes);
+    }
+
+    /**
+     * Reads a value from the given stream, which is read to its end but not closed.
+     *
+     * @param in
+     *            stream containing serialized value
+     * @return value, or null if stream is empty
+     * @throws IOException
+     *             if the value cannot be read
+     */
+    public default T readValue(final InputStream in) throws IOException {
+        return readValue(in.readAllBytes());
+    }
+
     public T readValue(final String value) throws IOException;
 
+    /**
+     * Reads a sequence of values from the given stream, which is read to its end but not closed.
+     * Values may be separated by whitespace, as in newline-delimited JSON. The default
+     * implementation reads one value from each non-blank line of UTF-8 text.
+     *
+     * @param in
+     *            stream containing serialized values
+     * @return list of values, in stream order
+     * @throws IOException
+     *             if the values cannot be read
+     */
+    public default List<T> readValues(final InputStream in) throws IOException {
+        final List<T> values = new ArrayList<>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (!StringUtils.isBlank(line)) {
+                values.add(readValue(line));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Reads a value from each of the given payloads. Payloads that are null or empty are skipped.
+     *
+     * @param payloads
+     *            serialized values
+     * @return list of values, in payload order
+     * @throws IOException
+     *             if any value cannot be read
+     */
+    public default List<T> readValues(final List<byte[]> payloads) throws IOException {
+        final List<T> values = new ArrayList<>(payloads.size());
+        for (final byte[] bytes : payloads) {
+            final T value = bytes != null ? readValue(bytes) : null;
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Reads a value from each of the given payloads, decoding chunks of a large batch concurrently
+     * on the given executor. Payloads that are null or empty are skipped.
+     *
+     * @param payloads
+     *            serialized values
+     * @param executor
+     *            executor that chunks are decoded on, or null to decode on calling thread
+     * @return list of values, in payload order
+     * @throws IOException
+     *             if any value cannot be read
+     */
+    public default List<T> readValues(final List<byte[]> payloads, final Executor executor)
+            throws IOException {
+        if (executor == null || payloads.size() <= PARALLEL_CHUNK_SIZE) {
+            return readValues(payloads);
+        }
+
+        final List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+        for (final List<byte[]> chunk : Lists.partition(payloads, PARALLEL_CHUNK_SIZE)) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return readValues(chunk);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+
+        final List<T> values = new ArrayList<>(payloads.size());
+        for (final CompletableFuture<List<T>> future : futures) {
+            try {
+                values.addAll(future.join());
+            } catch (final CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                throw e;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Writes the given value to a stream, which is not closed.
+     *
+     * @param out
+     *            stream that serialized value is written to
+     * @param value
+     *            value to write
+     * @throws IOException
+     *             if the value cannot be written
+     */
+    public default void writeValue(final OutputStream out, final T value) throws IOException {
+        out.write(writeValueAsBytes(value));
+    }
+
+    /**
+     * Returns the serialized form of the given value.
+     *
+     * @param value
+     *            value to write
+     * @return serialized value
+     * @throws IOException
+     *             if the value cannot be written
+     */
+    public default byte[] writeValueAsBytes(final T value) throws IOException {
+        return writeValueAsString(value).getBytes(UTF_8);
+    }
+
     public String writeValueAsString(final T value) throws IOException;
 }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.log;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * Hint file written next to a merged {@link LogSegment}. A hint file contains the key and location
+ * of every record in the segment, but not the values, so that the keydir can be rebuilt at startup
+ * without reading the segment itself.
+ *
+ * <p>
+ * Each entry is laid out as <code>sequence (long) | offset (int) | length (int) | key length (int)
+ * | key</code>, and the file ends with a CRC32 of all entries (long). Tombstones that a merge had to
+ * keep are written with a negative length.
+ * </p>
+ */
+class HintFile {
+    /** Accumulates hint entries for a segment being written **/
+    static class Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        void add(
+                final long sequence,
+                final String key,
+                final int offset,
+                final int length,
+                final boolean tombstone) throws IOException {
+            final byte[] k = key.getBytes(UTF_8);
+            out.writeLong(sequence);
+            out.writeInt(offset);
+            out.writeInt(tombstone ? -length : length);
+            out.writeInt(k.length);
+            out.write(k);
+        }
+
+        void write(final Path path) throws IOException {
+            out.flush();
+            final CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeLong(crc.getValue());
+            out.flush();
+            Files.write(path, bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Reads the hint file at the given path.
+     *
+     * @param path
+     *            hint file path
+     * @param visitor
+     *            receives every entry
+     * @return false if the hint file is corrupt, in which case the segment must be scanned instead
+     * @throws IOException
+     *             if the hint file cannot be read
+     */
+    static boolean read(final Path path, final LogSegment.RecordVisitor visitor) throws IOException {
+        final byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length < Long.BYTES) {
+            return false;
+        }
+        final ByteBuffer buf = ByteBuffer.wrap(bytes);
+        final int end = bytes.length - Long.BYTES;
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, end);
+        if (crc.getValue() != buf.getLong(end)) {
+            return false;
+        }
+
+        while (buf.position() < end) {
+            final long sequence = buf.getLong();
+            final int offset = buf.getInt();
+            final int length = buf.getInt();
+            final byte[] key = new byte[buf.getInt()];
+            buf.get(key);
+            visitor.visit(sequence, new String(key, UTF_8), offset, Math.abs(length), length < 0);
+        }
+        return true;
+    }
+
+    private HintFile() {
+        // utility class
+    }
+}
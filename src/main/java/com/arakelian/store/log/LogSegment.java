@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.log;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Memory-mapped segment file of a {@link LogStore}.
+ *
+ * <p>
+ * A segment is a sequence of records, each laid out as:
+ * </p>
+ *
+ * <pre>
+ * crc32 (int) | sequence (long) | key length (int) | value length (int, -1 for tombstone) | key | value
+ * </pre>
+ *
+ * <p>
+ * The checksum covers everything after itself. Writable segments are pre-sized to their capacity,
+ * so a scan stops at the first record whose checksum does not match; this also discards a record
+ * that was partially written when the process died.
+ * </p>
+ */
+class LogSegment implements Closeable {
+    /** Receives records found while scanning a segment **/
+    @FunctionalInterface
+    interface RecordVisitor {
+        public void visit(long sequence, String key, int offset, int length, boolean tombstone)
+                throws IOException;
+    }
+
+    static final int HEADER_SIZE = 20;
+
+    static byte[] encode(final long sequence, final byte[] key, final byte[] value) {
+        final int valueLength = value != null ? value.length : -1;
+        final ByteBuffer buf = ByteBuffer
+                .allocate(HEADER_SIZE + key.length + (value != null ? value.length : 0));
+        buf.putInt(0);
+        buf.putLong(sequence);
+        buf.putInt(key.length);
+        buf.putInt(valueLength);
+        buf.put(key);
+        if (value != null) {
+            buf.put(value);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(buf.array(), Integer.BYTES, buf.capacity() - Integer.BYTES);
+        buf.putInt(0, (int) crc.getValue());
+        return buf.array();
+    }
+
+    static LogSegment create(final Path path, final long id, final int capacity) throws IOException {
+        final FileChannel channel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new LogSegment(id, channel, channel.map(MapMode.READ_WRITE, 0, capacity), 0);
+    }
+
+    static LogSegment open(final Path path, final long id) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        return new LogSegment(id, channel, buffer, buffer.capacity());
+    }
+
+    /** Segment id **/
+    private final long id;
+
+    /** File channel **/
+    private final FileChannel channel;
+
+    /** Memory-mapped contents **/
+    private final MappedByteBuffer buffer;
+
+    /** Offset of the end of the last record; only modified by the single writer **/
+    private volatile int limit;
+
+    /** Bytes of records that have been overwritten or deleted, and of tombstones not yet merged **/
+    private final AtomicLong deadBytes = new AtomicLong();
+
+    /** Lowest sequence number of any record; only modified by the single writer **/
+    private volatile long minSequence = Long.MAX_VALUE;
+
+    private LogSegment(
+            final long id,
+            final FileChannel channel,
+            final MappedByteBuffer buffer,
+            final int limit) {
+        this.id = id;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.limit = limit;
+    }
+
+    /**
+     * Appends an encoded record to the segment.
+     *
+     * @param record
+     *            encoded record
+     * @return offset of record, or -1 if the segment is full
+     */
+    int append(final byte[] record) {
+        final int offset = limit;
+        if (buffer.capacity() - offset < record.length) {
+            return -1;
+        }
+        final ByteBuffer buf = buffer.duplicate();
+        buf.position(offset);
+        buf.put(record);
+        limit = offset + record.length;
+        addSequence(ByteBuffer.wrap(record).getLong(Integer.BYTES));
+        return offset;
+    }
+
+    void addDeadBytes(final long bytes) {
+        deadBytes.addAndGet(bytes);
+    }
+
+    void addSequence(final long sequence) {
+        if (sequence < minSequence) {
+            minSequence = sequence;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    long getDeadBytes() {
+        return deadBytes.get();
+    }
+
+    /**
+     * Returns the fraction of the segment occupied by records that a merge would not need to keep.
+     *
+     * @return fraction between 0 and 1
+     */
+    double getGarbageRatio() {
+        final int end = limit;
+        return end != 0 ? Math.min(1d, (double) deadBytes.get() / end) : 0;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    long getMinSequence() {
+        return minSequence;
+    }
+
+    /**
+     * Returns the value bytes of the record at the given offset.
+     *
+     * @param offset
+     *            record offset
+     * @param length
+     *            record length
+     * @return value bytes
+     */
+    byte[] readValue(final int offset, final int length) {
+        final ByteBuffer buf = buffer.duplicate();
+        final int keyLength = buf.getInt(offset + 12);
+        final byte[] value = new byte[length - HEADER_SIZE - keyLength];
+        buf.position(offset + HEADER_SIZE + keyLength);
+        buf.get(value);
+        return value;
+    }
+
+    /**
+     * Returns the raw bytes of the record at the given offset.
+     *
+     * @param offset
+     *            record offset
+     * @param length
+     *            record length
+     * @return encoded record
+     */
+    byte[] readRecord(final int offset, final int length) {
+        final ByteBuffer buf = buffer.duplicate();
+        final byte[] record = new byte[length];
+        buf.position(offset);
+        buf.get(record);
+        return record;
+    }
+
+    /**
+     * Visits every valid record in the segment, and sets the segment limit to the end of the last
+     * valid record.
+     *
+     * @param visitor
+     *            receives each record
+     * @throws IOException
+     *             if visitor throws an exception
+     */
+    void scan(final RecordVisitor visitor) throws IOException {
+        final ByteBuffer buf = buffer.duplicate();
+        final int end = limit;
+        final CRC32 crc = new CRC32();
+
+        int offset = 0;
+        while (end - offset >= HEADER_SIZE) {
+            final int checksum = buf.getInt(offset);
+            final long sequence = buf.getLong(offset + 4);
+            final int keyLength = buf.getInt(offset + 12);
+            final int valueLength = buf.getInt(offset + 16);
+            if (keyLength <= 0 || valueLength < -1) {
+                break;
+            }
+            final long length = (long) HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+            if (length > end - offset) {
+                break;
+            }
+
+            crc.reset();
+            final ByteBuffer slice = buf.duplicate();
+            slice.position(offset + Integer.BYTES).limit(offset + (int) length);
+            crc.update(slice);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            final byte[] key = new byte[keyLength];
+            buf.position(offset + HEADER_SIZE);
+            buf.get(key);
+            visitor.visit(sequence, new String(key, UTF_8), offset, (int) length, valueLength == -1);
+            offset += (int) length;
+        }
+        limit = offset;
+    }
+
+    /**
+     * Flushes the segment and truncates the file to the end of the last record so that it no longer
+     * accepts appends.
+     *
+     * @throws IOException
+     *             if the segment cannot be truncated
+     */
+    void seal() throws IOException {
+        buffer.force();
+        channel.truncate(limit);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("id", id) //
+                .add("limit", limit) //
+                .add("deadBytes", deadBytes.get()) //
+                .toString();
+    }
+}
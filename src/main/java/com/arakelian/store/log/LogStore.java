@@ -0,0 +1,710 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.log;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.arakelian.core.utils.ExecutorUtils;
+import com.arakelian.store.AbstractMutableStore;
+import com.arakelian.store.ScannableStore;
+import com.arakelian.store.StoreConfig;
+import com.arakelian.store.StoreException;
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.json.StoreObjectMapper;
+import com.arakelian.store.wal.WriteAheadLog;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Persistent mutable store in the style of Bitcask: every put and delete is appended to a
+ * memory-mapped segment file, and an in-memory keydir maps each id to the location of its latest
+ * record.
+ *
+ * <p>
+ * When the active segment fills up it is sealed and a new one is started. Each segment keeps count
+ * of its dead bytes, i.e. records that have been overwritten or deleted, and tombstones. Whenever a
+ * segment is sealed, the sealed segments in which dead bytes make up at least the garbage ratio are
+ * merged in the background: live records are copied to new segments, overwritten records are
+ * dropped, and a hint file is written next to each merged segment. Segments with little garbage,
+ * including the outputs of earlier merges, are left alone, so the cost of merging is proportional to
+ * the garbage reclaimed rather than to the size of the store. At startup the keydir is rebuilt from
+ * hint files where they exist, so only segments written since the last merge need to be scanned.
+ * </p>
+ *
+ * <p>
+ * A tombstone is dropped by a merge only if no segment outside the merge holds an older record,
+ * which the tombstone might still need to hide; otherwise it is copied forward. {@link #merge()}
+ * merges every sealed segment and so drops every tombstone.
+ * </p>
+ *
+ * <p>
+ * Every record carries a sequence number, and the keydir always keeps the record with the highest
+ * sequence, so the order in which segments are loaded does not matter. Deletes are always
+ * permanent; soft deletes are not supported by this store.
+ * </p>
+ *
+ * <p>
+ * Records reach the operating system page cache as soon as a put returns, which makes them
+ * durable if the process dies. Call {@link #sync()} to force them to disk, which also truncates the
+ * {@link StoreConfig#getWriteAheadLog() write-ahead log}, if one is configured.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class LogStore<T extends HasId> extends AbstractMutableStore<T>
+        implements ScannableStore<T>, Closeable {
+    /** Location of the latest record for an id **/
+    private static final class Location {
+        private final long segment;
+        private final int offset;
+        private final int length;
+        private final long sequence;
+
+        private Location(final long segment, final int offset, final int length, final long sequence) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStore.class);
+
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final double DEFAULT_GARBAGE_RATIO = 0.5;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String HINT_SUFFIX = ".hint";
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final String MERGE_COMMIT = "merge.commit";
+
+    /** Serializes values to and from bytes **/
+    private final StoreObjectMapper<T> mapper;
+
+    /** Directory containing segment files **/
+    private final Path directory;
+
+    /** Capacity of each segment **/
+    private final int segmentSize;
+
+    /** Fraction of dead bytes at which a sealed segment is merged in the background, or zero to disable **/
+    private final double garbageRatio;
+
+    /** Maps ids to location of their latest record **/
+    private final ConcurrentHashMap<String, Location> keydir = new ConcurrentHashMap<>();
+
+    /** Maps segment ids to segments, including the active segment **/
+    private final ConcurrentHashMap<Long, LogSegment> segments = new ConcurrentHashMap<>();
+
+    /** Serializes appends **/
+    private final Object writeLock = new Object();
+
+    /** Serializes merges **/
+    private final Object mergeLock = new Object();
+
+    /** Runs background merges **/
+    private final ExecutorService merger;
+
+    /** True while a background merge is queued or running **/
+    private final AtomicBoolean merging = new AtomicBoolean();
+
+    /** Segment we append to; guarded by writeLock **/
+    private LogSegment active;
+
+    /** Sequence number of last record; guarded by writeLock **/
+    private long sequence;
+
+    /** Id of next segment; guarded by writeLock **/
+    private long nextSegmentId;
+
+    /** True once closed **/
+    private volatile boolean closed;
+
+    public LogStore(final StoreConfig<T> config, final StoreObjectMapper<T> mapper, final Path directory) {
+        this(config, mapper, directory, DEFAULT_SEGMENT_SIZE, DEFAULT_GARBAGE_RATIO);
+    }
+
+    public LogStore(
+            final StoreConfig<T> config,
+            final StoreObjectMapper<T> mapper,
+            final Path directory,
+            final int segmentSize,
+            final double garbageRatio) {
+        super(config);
+        Preconditions.checkArgument(mapper != null, "mapper must be non-null");
+        Preconditions.checkArgument(directory != null, "directory must be non-null");
+        Preconditions.checkArgument(segmentSize > LogSegment.HEADER_SIZE, "segmentSize is too small");
+        Preconditions.checkArgument(
+                garbageRatio >= 0 && garbageRatio <= 1,
+                "garbageRatio must be between 0 and 1");
+        this.mapper = mapper;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.garbageRatio = garbageRatio;
+        this.merger = Executors
+                .newSingleThreadExecutor(ExecutorUtils.newThreadFactory(LogStore.class, true));
+
+        try {
+            Files.createDirectories(directory);
+            completeMerge();
+            load();
+            synchronized (writeLock) {
+                active = newSegment();
+            }
+        } catch (final IOException e) {
+            merger.shutdown();
+            throw new StoreException("Unable to open log store in " + directory, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        merger.shutdown();
+        try {
+            merger.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (mergeLock) {
+            synchronized (writeLock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    active.seal();
+                    for (final LogSegment segment : segments.values()) {
+                        segment.close();
+                    }
+                } catch (final IOException e) {
+                    throw new StoreException("Unable to close log store in " + directory, e);
+                } finally {
+                    segments.clear();
+                    keydir.clear();
+                }
+            }
+        }
+    }
+
+    @Override
+    public T get(final String id) {
+        if (StringUtils.isEmpty(id)) {
+            return null;
+        }
+        final byte[] bytes = read(id);
+        return bytes != null ? deserialize(bytes) : null;
+    }
+
+    /**
+     * Returns the number of segment files, including the active segment.
+     *
+     * @return number of segment files
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public Stream<String> ids() {
+        return keydir.keySet().stream();
+    }
+
+    /**
+     * Copies live records from all sealed segments into new segments with hint files, and then
+     * deletes the sealed segments. Puts and deletes may continue while a merge is running.
+     */
+    public void merge() {
+        synchronized (mergeLock) {
+            final List<LogSegment> inputs;
+            synchronized (writeLock) {
+                checkOpen();
+                roll();
+                inputs = sealed(0);
+            }
+            merge(inputs);
+        }
+    }
+
+    /**
+     * Copies live records from the sealed segments in which dead bytes make up at least the given
+     * fraction into new segments with hint files, and then deletes those segments. This is what
+     * the background merge does whenever a segment is sealed. Puts and deletes may continue while a
+     * merge is running.
+     *
+     * @param ratio
+     *            fraction of dead bytes, greater than zero, at which a segment is merged
+     */
+    public void mergeGarbage(final double ratio) {
+        Preconditions.checkArgument(ratio > 0 && ratio <= 1, "ratio must be greater than 0 and at most 1");
+        synchronized (mergeLock) {
+            final List<LogSegment> inputs;
+            synchronized (writeLock) {
+                checkOpen();
+                inputs = sealed(ratio);
+            }
+            merge(inputs);
+        }
+    }
+
+    public int size() {
+        return keydir.size();
+    }
+
+    /**
+     * Forces records in the active segment to disk. If a write-ahead log is configured, its
+     * segments holding only changes that are now on disk are deleted.
+     */
+    public void sync() {
+        final WriteAheadLog<T> wal = config.getWriteAheadLog();
+        final long checkpoint;
+        synchronized (writeLock) {
+            checkOpen();
+            // every change applied before the checkpoint was written under this lock
+            checkpoint = wal != null ? wal.roll() : -1;
+            active.force();
+        }
+        if (wal != null) {
+            wal.truncate(checkpoint);
+        }
+    }
+
+    @Override
+    public Stream<T> stream() {
+        // values deleted after their id was seen are skipped
+        return keydir.keySet().stream().map(this::get).filter(Objects::nonNull);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("config", config) //
+                .add("directory", directory) //
+                .add("size", keydir.size()) //
+                .add("segments", segments.size()) //
+                .toString();
+    }
+
+    @Override
+    protected void doDelete(final String id) {
+        final byte[] key = id.getBytes(UTF_8);
+        synchronized (writeLock) {
+            checkOpen();
+            if (keydir.containsKey(id)) {
+                final Location tombstone = append(key, null);
+                addDeadBytes(tombstone);
+                addDeadBytes(keydir.remove(id));
+            }
+        }
+    }
+
+    @Override
+    protected void doDeleteAllIds(final List<String> ids) {
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id)) {
+                doDelete(id);
+            }
+        }
+    }
+
+    @Override
+    protected void doDeleteAllValues(final List<T> values) {
+        for (final T value : values) {
+            if (value != null && !StringUtils.isEmpty(value.getId())) {
+                doDelete(value.getId());
+            }
+        }
+    }
+
+    @Override
+    protected List<T> doGetAll(List<T> result, final List<String> ids) {
+        // read payloads first, then decode the whole partition in one call
+        final List<byte[]> payloads = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            final byte[] bytes = read(id);
+            if (bytes != null) {
+                payloads.add(bytes);
+            }
+        }
+        if (payloads.size() != 0) {
+            if (result == null) {
+                result = new ArrayList<>(payloads.size());
+            }
+            result.addAll(deserializeAll(payloads));
+        }
+        return result;
+    }
+
+    @Override
+    protected void doPut(final T value) {
+        final String id = value.getId();
+        final byte[] key = id.getBytes(UTF_8);
+        final byte[] bytes = serialize(value);
+        synchronized (writeLock) {
+            checkOpen();
+            addDeadBytes(keydir.put(id, append(key, bytes)));
+        }
+    }
+
+    @Override
+    protected void doPutAll(final List<T> values) {
+        // serialize outside of lock, then append the whole batch at once
+        final byte[][] keys = new byte[values.size()][];
+        final byte[][] bytes = new byte[values.size()][];
+        for (int i = 0; i < values.size(); i++) {
+            keys[i] = values.get(i).getId().getBytes(UTF_8);
+            bytes[i] = serialize(values.get(i));
+        }
+        synchronized (writeLock) {
+            checkOpen();
+            for (int i = 0; i < keys.length; i++) {
+                addDeadBytes(keydir.put(values.get(i).getId(), append(keys[i], bytes[i])));
+            }
+        }
+    }
+
+    /**
+     * Counts the record at the given location as dead, since it has been overwritten or deleted.
+     *
+     * @param location
+     *            location of record, or null
+     */
+    private void addDeadBytes(final Location location) {
+        if (location != null) {
+            final LogSegment segment = segments.get(location.segment);
+            if (segment != null) {
+                segment.addDeadBytes(location.length);
+            }
+        }
+    }
+
+    private Location append(final byte[] key, final byte[] value) {
+        final int length = LogSegment.HEADER_SIZE + key.length + (value != null ? value.length : 0);
+        if (length > segmentSize) {
+            throw new StoreException(
+                    "Record of " + length + " bytes does not fit in segment of " + segmentSize + " bytes");
+        }
+
+        final long seq = ++sequence;
+        final byte[] record = LogSegment.encode(seq, key, value);
+        int offset = active.append(record);
+        if (offset == -1) {
+            roll();
+            offset = active.append(record);
+            maybeMerge();
+        }
+        return new Location(active.getId(), offset, record.length, seq);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new StoreException("Log store in " + directory + " is closed");
+        }
+    }
+
+    private T deserialize(final byte[] bytes) {
+        try {
+            return mapper.readValue(bytes);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to deserialize value", e);
+        }
+    }
+
+    private List<T> deserializeAll(final List<byte[]> payloads) {
+        try {
+            return mapper.readValues(payloads);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to deserialize values", e);
+        }
+    }
+
+    private Path hintPath(final long id) {
+        return directory.resolve(String.format("%016x%s", id, HINT_SUFFIX));
+    }
+
+    private void load() throws IOException {
+        final List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (final Path path : stream) {
+                final String name = path.getFileName().toString();
+                ids.add(Long.parseLong(StringUtils.removeEnd(name, SEGMENT_SUFFIX), 16));
+            }
+        }
+        Collections.sort(ids);
+
+        // tombstones are only needed while loading, to suppress older records in other segments
+        final Map<String, Long> tombstones = new HashMap<>();
+        for (final Long id : ids) {
+            final LogSegment segment = LogSegment.open(segmentPath(id), id);
+            segments.put(id, segment);
+            nextSegmentId = Math.max(nextSegmentId, id + 1);
+
+            // tombstones in merged segments were kept on purpose, so they are not counted as dead
+            final Path hint = hintPath(id);
+            final boolean merged = Files.exists(hint);
+            final LogSegment.RecordVisitor visitor = (seq, key, offset, length, tombstone) -> {
+                sequence = Math.max(sequence, seq);
+                segment.addSequence(seq);
+                final Location current = keydir.get(key);
+                if (tombstone) {
+                    if (!merged) {
+                        segment.addDeadBytes(length);
+                    }
+                    if (current != null && current.sequence < seq) {
+                        addDeadBytes(keydir.remove(key));
+                    }
+                    tombstones.merge(key, seq, Math::max);
+                } else if ((current == null || current.sequence < seq)
+                        && tombstones.getOrDefault(key, 0L) < seq) {
+                    addDeadBytes(keydir.put(key, new Location(id, offset, length, seq)));
+                } else {
+                    segment.addDeadBytes(length);
+                }
+            };
+
+            if (!merged || !HintFile.read(hint, visitor)) {
+                segment.scan(visitor);
+            }
+        }
+    }
+
+    private void maybeMerge() {
+        if (garbageRatio != 0 && !sealed(garbageRatio).isEmpty() && merging.compareAndSet(false, true)) {
+            merger.execute(() -> {
+                try {
+                    mergeGarbage(garbageRatio);
+                } catch (final RuntimeException e) {
+                    LOGGER.warn("Unable to merge log store in {}", directory, e);
+                } finally {
+                    merging.set(false);
+                }
+            });
+        }
+    }
+
+    private void merge(final List<LogSegment> inputs) {
+        if (inputs.isEmpty()) {
+            return;
+        }
+
+        // a tombstone must be kept if a segment outside the merge could hold an older record
+        long floor = Long.MAX_VALUE;
+        for (final LogSegment segment : segments.values()) {
+            if (!inputs.contains(segment)) {
+                floor = Math.min(floor, segment.getMinSequence());
+            }
+        }
+
+        try {
+            merge(inputs, floor);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to merge log store in " + directory, e);
+        }
+    }
+
+    private void merge(final List<LogSegment> inputs, final long floor) throws IOException {
+        final List<LogSegment> outputs = new ArrayList<>();
+        final List<HintFile.Writer> hints = new ArrayList<>();
+        final List<Runnable> updates = new ArrayList<>();
+
+        // copy live records, and tombstones that are still needed, to output segments
+        for (final LogSegment input : inputs) {
+            input.scan((seq, key, offset, length, tombstone) -> {
+                final Location current = keydir.get(key);
+                if (tombstone ? seq < floor
+                        : current == null || current.segment != input.getId() || current.offset != offset) {
+                    return;
+                }
+
+                final byte[] record = input.readRecord(offset, length);
+                int outputOffset = outputs.isEmpty() ? -1 : outputs.get(outputs.size() - 1).append(record);
+                if (outputOffset == -1) {
+                    final long id;
+                    synchronized (writeLock) {
+                        id = nextSegmentId++;
+                    }
+                    outputs.add(LogSegment.create(tmpPath(segmentPath(id)), id, segmentSize));
+                    hints.add(new HintFile.Writer());
+                    outputOffset = outputs.get(outputs.size() - 1).append(record);
+                }
+                hints.get(hints.size() - 1).add(seq, key, outputOffset, length, tombstone);
+                if (tombstone) {
+                    return;
+                }
+
+                // if the record was overwritten while we copied it, the copy is dead
+                final LogSegment output = outputs.get(outputs.size() - 1);
+                final Location replacement = new Location(output.getId(), outputOffset, length, seq);
+                updates.add(() -> {
+                    if (!keydir.replace(key, current, replacement)) {
+                        output.addDeadBytes(length);
+                    }
+                });
+            });
+        }
+
+        // publish output segments; until inputs are deleted, records are duplicated but identical
+        for (int i = 0; i < outputs.size(); i++) {
+            final LogSegment output = outputs.get(i);
+            final long id = output.getId();
+            output.seal();
+            hints.get(i).write(tmpPath(hintPath(id)));
+            Files.move(tmpPath(segmentPath(id)), segmentPath(id), StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tmpPath(hintPath(id)), hintPath(id), StandardCopyOption.ATOMIC_MOVE);
+            segments.put(id, output);
+        }
+        for (final Runnable update : updates) {
+            update.run();
+        }
+
+        // record that inputs must be deleted, since deleting only some of them could resurrect
+        // values whose tombstones were dropped
+        final Path commit = directory.resolve(MERGE_COMMIT);
+        final List<String> lines = inputs.stream() //
+                .map(input -> Long.toHexString(input.getId())) //
+                .collect(Collectors.toList());
+        Files.write(tmpPath(commit), lines, UTF_8);
+        Files.move(tmpPath(commit), commit, StandardCopyOption.ATOMIC_MOVE);
+
+        for (final LogSegment input : inputs) {
+            segments.remove(input.getId());
+            input.close();
+            Files.deleteIfExists(segmentPath(input.getId()));
+            Files.deleteIfExists(hintPath(input.getId()));
+        }
+        Files.delete(commit);
+    }
+
+    private LogSegment newSegment() throws IOException {
+        final long id = nextSegmentId++;
+        final LogSegment segment = LogSegment.create(segmentPath(id), id, segmentSize);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private byte[] read(final String id) {
+        for (;;) {
+            final Location location = keydir.get(id);
+            if (location == null) {
+                return null;
+            }
+            final LogSegment segment = segments.get(location.segment);
+            if (segment != null) {
+                return segment.readValue(location.offset, location.length);
+            }
+
+            // segment was merged away after we read keydir; keydir has been updated
+            checkOpen();
+        }
+    }
+
+    /**
+     * Completes an interrupted merge and removes temporary files.
+     *
+     * @throws IOException
+     *             if files cannot be deleted
+     */
+    private void completeMerge() throws IOException {
+        final Path commit = directory.resolve(MERGE_COMMIT);
+        if (Files.exists(commit)) {
+            for (final String line : Files.readAllLines(commit, UTF_8)) {
+                if (!StringUtils.isBlank(line)) {
+                    final long id = Long.parseLong(line.trim(), 16);
+                    Files.deleteIfExists(segmentPath(id));
+                    Files.deleteIfExists(hintPath(id));
+                }
+            }
+            Files.delete(commit);
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + TMP_SUFFIX)) {
+            for (final Path path : stream) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private void roll() {
+        try {
+            active.seal();
+            active = newSegment();
+        } catch (final IOException e) {
+            throw new StoreException("Unable to create segment in " + directory, e);
+        }
+    }
+
+    /**
+     * Returns the sealed segments in which dead bytes make up at least the given fraction, oldest
+     * first.
+     *
+     * @param ratio
+     *            fraction of dead bytes, or zero for all sealed segments
+     * @return sealed segments
+     */
+    private List<LogSegment> sealed(final double ratio) {
+        return segments.values().stream() //
+                .filter(segment -> segment != active && segment.getGarbageRatio() >= ratio) //
+                .sorted((a, b) -> Long.compare(a.getId(), b.getId())) //
+                .collect(Collectors.toList());
+    }
+
+    private Path segmentPath(final long id) {
+        return directory.resolve(String.format("%016x%s", id, SEGMENT_SUFFIX));
+    }
+
+    private byte[] serialize(final T value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to serialize " + value, e);
+        }
+    }
+
+    private Path tmpPath(final Path path) {
+        return path.resolveSibling(path.getFileName() + TMP_SUFFIX);
+    }
+}
@@ -0,0 +1,844 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.lsm;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.arakelian.core.utils.ExecutorUtils;
+import com.arakelian.store.AbstractMutableStore;
+import com.arakelian.store.BatchSpliterator;
+import com.arakelian.store.ScannableStore;
+import com.arakelian.store.StoreConfig;
+import com.arakelian.store.StoreException;
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.json.StoreObjectMapper;
+import com.arakelian.store.wal.WriteAheadLog;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+
+/**
+ * Persistent mutable store based on a log-structured merge tree.
+ *
+ * <p>
+ * Writes go to a concurrent in-memory memtable. When the memtable fills up it becomes immutable and
+ * is flushed in the background to a sorted table file in level 0. Once level 0 has accumulated
+ * enough tables they are compacted into level 1, and each level above that is compacted into the
+ * next one whenever it grows past ten times the size of the previous level. Tables within a level
+ * other than 0 never overlap.
+ * </p>
+ *
+ * <p>
+ * Every table has a bloom filter, so lookups of absent ids are usually answered without touching
+ * table data. Memtables that have not been flushed are lost if the process dies, unless a
+ * {@link StoreConfig#getWriteAheadLog() write-ahead log} is configured and replayed with
+ * {@link #recover()} at startup; they are flushed when the store is closed. Log segments are
+ * deleted as soon as the memtables holding their changes have been flushed.
+ * </p>
+ *
+ * <p>
+ * If a memtable cannot be flushed, for example because the disk is full, the flush is retried in
+ * the background and writes are refused with a {@link StoreException} until it succeeds. Reads
+ * continue to see the unflushed values.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class LsmStore<T extends HasId> extends AbstractMutableStore<T>
+        implements ScannableStore<T>, Closeable {
+    /** Immutable view of the memtables and tables that make up the store **/
+    private static final class Version {
+        private final Memtable memtable;
+
+        /** Memtables waiting to be flushed, newest first **/
+        private final ImmutableList<Memtable> immutables;
+
+        /** Level 0 is ordered newest first, other levels are ordered by first key **/
+        private final ImmutableList<ImmutableList<SSTable>> levels;
+
+        private Version(
+                final Memtable memtable,
+                final ImmutableList<Memtable> immutables,
+                final ImmutableList<ImmutableList<SSTable>> levels) {
+            this.memtable = memtable;
+            this.immutables = immutables;
+            this.levels = levels;
+        }
+
+        private ImmutableList<SSTable> level(final int level) {
+            return level < levels.size() ? levels.get(level) : ImmutableList.of();
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LsmStore.class);
+
+    private static final int DEFAULT_MEMTABLE_SIZE = 4 * 1024 * 1024;
+
+    private static final int DEFAULT_TABLE_SIZE = 2 * 1024 * 1024;
+
+    /** Number of level 0 tables that triggers a compaction **/
+    private static final int LEVEL0_TRIGGER = 4;
+
+    /** Number of tables that level 1 can hold, and size ratio between adjacent levels **/
+    private static final int FANOUT = 10;
+
+    /** Maximum number of memtables waiting to be flushed before writers block **/
+    private static final int MAX_IMMUTABLES = 4;
+
+    /** Delay before a failed flush is retried **/
+    private static final long FLUSH_RETRY_MILLIS = 1000;
+
+    /** Number of entries handed to another thread by each split of a parallel scan **/
+    private static final int SCAN_BATCH_SIZE = 256;
+
+    private static final String TABLE_SUFFIX = ".sst";
+
+    private static final String MANIFEST = "MANIFEST";
+
+    private static final Comparator<SSTable> BY_FIRST_KEY = Comparator.comparing(SSTable::getFirstKey);
+
+    /** Serializes values to and from bytes **/
+    private final StoreObjectMapper<T> mapper;
+
+    /** Directory containing table files **/
+    private final Path directory;
+
+    /** Size at which memtable is flushed **/
+    private final long memtableSize;
+
+    /** Target size of table files **/
+    private final long tableSize;
+
+    /** Writers share read lock; rotating the memtable takes the write lock **/
+    private final ReentrantReadWriteLock rotateLock = new ReentrantReadWriteLock();
+
+    /** Serializes changes to the current version and the manifest **/
+    private final Object versionLock = new Object();
+
+    /** Limits number of memtables waiting to be flushed **/
+    private final Semaphore flushPermits = new Semaphore(MAX_IMMUTABLES);
+
+    /** Runs flushes and compactions **/
+    private final ScheduledExecutorService background;
+
+    /** Number of table lookups avoided by bloom filters **/
+    private final LongAdder bloomNegatives = new LongAdder();
+
+    /** Number of table lookups that read table data **/
+    private final LongAdder tableReads = new LongAdder();
+
+    /** Current version **/
+    private volatile Version current;
+
+    /** Id of next table; guarded by versionLock **/
+    private long nextTableId;
+
+    /** Key after which the next compaction of each level starts; guarded by background thread **/
+    private final List<String> compactPointers = new ArrayList<>();
+
+    /** True once closed **/
+    private volatile boolean closed;
+
+    /** Cause of the last failed flush, or null once a flush succeeds **/
+    private volatile Exception flushFailure;
+
+    public LsmStore(final StoreConfig<T> config, final StoreObjectMapper<T> mapper, final Path directory) {
+        this(config, mapper, directory, DEFAULT_MEMTABLE_SIZE, DEFAULT_TABLE_SIZE);
+    }
+
+    public LsmStore(
+            final StoreConfig<T> config,
+            final StoreObjectMapper<T> mapper,
+            final Path directory,
+            final long memtableSize,
+            final long tableSize) {
+        super(config);
+        Preconditions.checkArgument(mapper != null, "mapper must be non-null");
+        Preconditions.checkArgument(directory != null, "directory must be non-null");
+        Preconditions.checkArgument(memtableSize > 0, "memtableSize must be positive");
+        Preconditions.checkArgument(tableSize > 0, "tableSize must be positive");
+        this.mapper = mapper;
+        this.directory = directory;
+        this.memtableSize = memtableSize;
+        this.tableSize = tableSize;
+        this.background = Executors
+                .newSingleThreadScheduledExecutor(ExecutorUtils.newThreadFactory(LsmStore.class, true));
+        try {
+            Files.createDirectories(directory);
+            this.current = new Version(new Memtable(), ImmutableList.of(), load());
+        } catch (final IOException e) {
+            background.shutdown();
+            throw new StoreException("Unable to open LSM store in " + directory, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        final Lock lock = rotateLock.writeLock();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!current.memtable.isEmpty()) {
+                flushPermits.acquireUninterruptibly();
+                freeze();
+                background.execute(this::flush);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        final Exception failure = flushFailure;
+        if (failure != null) {
+            throw new StoreException("Unable to flush memtables of " + directory, failure);
+        }
+    }
+
+    /**
+     * Waits for all pending memtable flushes and compactions to complete.
+     */
+    public void compact() {
+        try {
+            background.submit(this::compactLevels).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StoreException("Interrupted while compacting " + directory, e);
+        } catch (final ExecutionException e) {
+            throw new StoreException("Unable to compact " + directory, e.getCause());
+        }
+    }
+
+    @Override
+    public T get(final String id) {
+        if (StringUtils.isEmpty(id)) {
+            return null;
+        }
+        final byte[] bytes = read(id);
+        return bytes != null ? deserialize(bytes) : null;
+    }
+
+    public long getBloomFilterNegatives() {
+        return bloomNegatives.sum();
+    }
+
+    /**
+     * Returns the number of tables in each level.
+     *
+     * @return number of tables in each level
+     */
+    public List<Integer> getLevelSizes() {
+        final List<Integer> sizes = new ArrayList<>();
+        for (final List<SSTable> level : current.levels) {
+            sizes.add(level.size());
+        }
+        return sizes;
+    }
+
+    public long getTableReads() {
+        return tableReads.sum();
+    }
+
+    /**
+     * Returns a stream of the ids of all values in the store, in id order.
+     *
+     * @return stream of ids, in id order
+     */
+    @Override
+    public Stream<String> ids() {
+        return scan().map(Map.Entry::getKey);
+    }
+
+    /**
+     * Returns a stream of all values in the store, in id order. Values are merged from a snapshot
+     * of the memtables and tables taken when the stream is created, and parallel streams decode
+     * batches of values on other threads.
+     *
+     * @return stream of values, in id order
+     */
+    @Override
+    public Stream<T> stream() {
+        return scan().map(entry -> deserialize(entry.getValue()));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("config", config) //
+                .add("directory", directory) //
+                .add("levels", getLevelSizes()) //
+                .toString();
+    }
+
+    @Override
+    protected void doDelete(final String id) {
+        write(id, Memtable.TOMBSTONE);
+    }
+
+    @Override
+    protected void doDeleteAllIds(final List<String> ids) {
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id)) {
+                doDelete(id);
+            }
+        }
+    }
+
+    @Override
+    protected void doDeleteAllValues(final List<T> values) {
+        for (final T value : values) {
+            if (value != null && !StringUtils.isEmpty(value.getId())) {
+                doDelete(value.getId());
+            }
+        }
+    }
+
+    @Override
+    protected List<T> doGetAll(List<T> result, final List<String> ids) {
+        // read payloads first, then decode the whole partition in one call
+        final List<byte[]> payloads = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            final byte[] bytes = read(id);
+            if (bytes != null) {
+                payloads.add(bytes);
+            }
+        }
+        if (payloads.size() != 0) {
+            if (result == null) {
+                result = new ArrayList<>(payloads.size());
+            }
+            result.addAll(deserializeAll(payloads));
+        }
+        return result;
+    }
+
+    @Override
+    protected void doPut(final T value) {
+        write(value.getId(), serialize(value));
+    }
+
+    @Override
+    protected void doPutAll(final List<T> values) {
+        // serialize outside of lock, then add the whole batch to the memtable at once
+        final List<byte[]> bytes = new ArrayList<>(values.size());
+        for (final T value : values) {
+            bytes.add(serialize(value));
+        }
+
+        long size = 0;
+        final Lock lock = rotateLock.readLock();
+        lock.lock();
+        try {
+            checkWritable();
+            final Memtable memtable = current.memtable;
+            for (int i = 0; i < values.size(); i++) {
+                size = memtable.put(values.get(i).getId(), bytes.get(i));
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (size >= memtableSize) {
+            rotate();
+        }
+    }
+
+    private long levelLimit(final int level) {
+        long limit = tableSize * FANOUT;
+        for (int i = 1; i < level; i++) {
+            limit *= FANOUT;
+        }
+        return limit;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new StoreException("LSM store in " + directory + " is closed");
+        }
+    }
+
+    private void checkWritable() {
+        checkOpen();
+        final Exception failure = flushFailure;
+        if (failure != null) {
+            throw new StoreException(
+                    "Unable to flush memtable of " + directory + ", refusing writes",
+                    failure);
+        }
+    }
+
+    private void compactLevels() {
+        for (;;) {
+            final Version v = current;
+
+            // level 0 tables overlap each other, so they are compacted together
+            if (v.level(0).size() >= LEVEL0_TRIGGER) {
+                compact(0, v.level(0));
+                continue;
+            }
+
+            boolean compacted = false;
+            for (int level = 1; level < v.levels.size() && !compacted; level++) {
+                final List<SSTable> tables = v.level(level);
+                if (tables.stream().mapToLong(SSTable::getSize).sum() > levelLimit(level)) {
+                    compact(level, ImmutableList.of(pick(level, tables)));
+                    compacted = true;
+                }
+            }
+            if (!compacted) {
+                return;
+            }
+        }
+    }
+
+    private void compact(final int level, final List<SSTable> inputs) {
+        final Version v = current;
+        final String first = inputs.stream().map(SSTable::getFirstKey).min(String::compareTo).get();
+        final String last = inputs.stream().map(SSTable::getLastKey).max(String::compareTo).get();
+        final List<SSTable> overlapping = new ArrayList<>();
+        for (final SSTable table : v.level(level + 1)) {
+            if (table.overlaps(first, last)) {
+                overlapping.add(table);
+            }
+        }
+
+        // inputs are newer than the overlapping tables of the next level
+        final List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>();
+        for (final SSTable table : inputs) {
+            sources.add(table.iterator());
+        }
+        final List<Iterator<Map.Entry<String, byte[]>>> next = new ArrayList<>();
+        for (final SSTable table : overlapping) {
+            next.add(table.iterator());
+        }
+        sources.add(Iterators.concat(next.iterator()));
+
+        // tombstones can be dropped once nothing older could be hiding beneath them
+        boolean bottom = true;
+        for (int i = level + 2; i < v.levels.size(); i++) {
+            bottom &= v.level(i).isEmpty();
+        }
+
+        try {
+            final MergingIterator merged = new MergingIterator(sources, bottom);
+            final List<SSTable> outputs = new ArrayList<>();
+            while (merged.hasNext()) {
+                final SSTable table = newTable(merged, tableSize);
+                if (table != null) {
+                    outputs.add(table);
+                }
+            }
+
+            final Set<SSTable> obsolete = new HashSet<>(inputs);
+            obsolete.addAll(overlapping);
+            synchronized (versionLock) {
+                final Version latest = current;
+                final List<List<SSTable>> levels = new ArrayList<>(latest.levels);
+                while (levels.size() <= level + 1) {
+                    levels.add(ImmutableList.of());
+                }
+                levels.set(level, without(latest.level(level), obsolete));
+                final List<SSTable> target = new ArrayList<>(without(latest.level(level + 1), obsolete));
+                target.addAll(outputs);
+                target.sort(BY_FIRST_KEY);
+                levels.set(level + 1, target);
+                install(latest.memtable, latest.immutables, levels);
+            }
+
+            while (compactPointers.size() <= level) {
+                compactPointers.add("");
+            }
+            compactPointers.set(level, last);
+            for (final SSTable table : obsolete) {
+                Files.deleteIfExists(tablePath(table.getId()));
+            }
+        } catch (final IOException e) {
+            throw new StoreException("Unable to compact level " + level + " of " + directory, e);
+        }
+    }
+
+    private T deserialize(final byte[] bytes) {
+        try {
+            return mapper.readValue(bytes);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to deserialize value", e);
+        }
+    }
+
+    private List<T> deserializeAll(final List<byte[]> payloads) {
+        try {
+            return mapper.readValues(payloads);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to deserialize values", e);
+        }
+    }
+
+    private void flush() {
+        // permit is returned even if the flush fails, so that writers and close() cannot hang
+        try {
+            tryFlush();
+        } finally {
+            flushPermits.release();
+        }
+    }
+
+    /**
+     * Makes the current memtable immutable and starts a new one. Caller must hold the write lock, so
+     * that the write-ahead log checkpoint taken here covers every entry of the frozen memtable.
+     */
+    private void freeze() {
+        final Memtable memtable = current.memtable;
+        final WriteAheadLog<T> wal = config.getWriteAheadLog();
+        if (wal != null) {
+            try {
+                memtable.setCheckpoint(wal.roll());
+            } catch (final StoreException e) {
+                LOGGER.warn("Unable to roll write-ahead log of {}", directory, e);
+            }
+        }
+
+        // background thread may install new levels concurrently, so read version under lock
+        synchronized (versionLock) {
+            final Version v = current;
+            current = new Version(new Memtable(), prepend(memtable, v.immutables), v.levels);
+        }
+    }
+
+    private void install(
+            final Memtable memtable,
+            final List<Memtable> immutables,
+            final List<? extends List<SSTable>> levels) throws IOException {
+        final ImmutableList.Builder<ImmutableList<SSTable>> builder = ImmutableList.builder();
+        final List<String> lines = new ArrayList<>();
+        for (int level = 0; level < levels.size(); level++) {
+            builder.add(ImmutableList.copyOf(levels.get(level)));
+            for (final SSTable table : levels.get(level)) {
+                lines.add(level + " " + Long.toHexString(table.getId()));
+            }
+        }
+
+        // manifest is the source of truth for which tables are live
+        final Path manifest = directory.resolve(MANIFEST);
+        final Path tmp = directory.resolve(MANIFEST + ".tmp");
+        Files.write(tmp, lines, UTF_8);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            // write-ahead log segments may be deleted once the manifest is installed
+            channel.force(true);
+        }
+        Files.move(tmp, manifest, StandardCopyOption.ATOMIC_MOVE);
+        current = new Version(memtable, ImmutableList.copyOf(immutables), builder.build());
+    }
+
+    private ImmutableList<ImmutableList<SSTable>> load() throws IOException {
+        final List<List<SSTable>> levels = new ArrayList<>();
+        final Set<Long> live = new HashSet<>();
+        final Path manifest = directory.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            for (final String line : Files.readAllLines(manifest, UTF_8)) {
+                if (StringUtils.isBlank(line)) {
+                    continue;
+                }
+                final int level = Integer.parseInt(StringUtils.substringBefore(line, " "));
+                final long id = Long.parseLong(StringUtils.substringAfter(line, " ").trim(), 16);
+                while (levels.size() <= level) {
+                    levels.add(new ArrayList<>());
+                }
+                levels.get(level).add(SSTable.open(tablePath(id), id));
+                live.add(id);
+                nextTableId = Math.max(nextTableId, id + 1);
+            }
+        }
+
+        // remove tables and temporary files left behind by an interrupted flush or compaction
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (final Path path : stream) {
+                final String name = path.getFileName().toString();
+                if (name.endsWith(".tmp") || name.endsWith(TABLE_SUFFIX)
+                        && !live.contains(Long.parseLong(StringUtils.removeEnd(name, TABLE_SUFFIX), 16))) {
+                    Files.delete(path);
+                }
+            }
+        }
+
+        final ImmutableList.Builder<ImmutableList<SSTable>> builder = ImmutableList.builder();
+        for (int level = 0; level < levels.size(); level++) {
+            final List<SSTable> tables = levels.get(level);
+            if (level == 0) {
+                tables.sort(Comparator.comparingLong(SSTable::getId).reversed());
+            } else {
+                tables.sort(BY_FIRST_KEY);
+            }
+            builder.add(ImmutableList.copyOf(tables));
+        }
+        return builder.build();
+    }
+
+    private SSTable newTable(final Iterator<Map.Entry<String, byte[]>> entries, final long maxBytes)
+            throws IOException {
+        final long id;
+        synchronized (versionLock) {
+            id = nextTableId++;
+        }
+        return SSTable.write(tablePath(id), id, entries, maxBytes);
+    }
+
+    private SSTable pick(final int level, final List<SSTable> tables) {
+        // round-robin through the key space so that every table is eventually compacted
+        final String pointer = level < compactPointers.size() ? compactPointers.get(level) : "";
+        for (final SSTable table : tables) {
+            if (table.getFirstKey().compareTo(pointer) > 0) {
+                return table;
+            }
+        }
+        return tables.get(0);
+    }
+
+    private <E> ImmutableList<E> prepend(final E first, final List<E> rest) {
+        return ImmutableList.<E> builder().add(first).addAll(rest).build();
+    }
+
+    private byte[] read(final String key) {
+        final Version v = current;
+        byte[] value = v.memtable.get(key);
+        for (int i = 0; value == null && i < v.immutables.size(); i++) {
+            value = v.immutables.get(i).get(key);
+        }
+
+        // level 0 tables may overlap, so we check all of them, newest first
+        final List<SSTable> level0 = v.level(0);
+        for (int i = 0; value == null && i < level0.size(); i++) {
+            value = read(level0.get(i), key);
+        }
+
+        // other levels have at most one table that can contain the key
+        for (int level = 1; value == null && level < v.levels.size(); level++) {
+            final List<SSTable> tables = v.levels.get(level);
+            int lo = 0;
+            int hi = tables.size() - 1;
+            while (lo <= hi) {
+                final int mid = lo + hi >>> 1;
+                final SSTable table = tables.get(mid);
+                if (table.getLastKey().compareTo(key) < 0) {
+                    lo = mid + 1;
+                } else if (table.getFirstKey().compareTo(key) > 0) {
+                    hi = mid - 1;
+                } else {
+                    value = read(table, key);
+                    break;
+                }
+            }
+        }
+        return value == null || Memtable.isTombstone(value) ? null : value;
+    }
+
+    private byte[] read(final SSTable table, final String key) {
+        if (!table.mightContain(key)) {
+            bloomNegatives.increment();
+            return null;
+        }
+        tableReads.increment();
+        return table.get(key);
+    }
+
+    private Stream<Map.Entry<String, byte[]>> scan() {
+        checkOpen();
+
+        // newest sources first, so that merge returns latest value of each key
+        final Version v = current;
+        final List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>();
+        sources.add(v.memtable.iterator());
+        for (final Memtable immutable : v.immutables) {
+            sources.add(immutable.iterator());
+        }
+        for (final SSTable table : v.level(0)) {
+            sources.add(table.iterator());
+        }
+        for (int level = 1; level < v.levels.size(); level++) {
+            sources.add(Iterators.concat(Iterators.transform(v.level(level).iterator(), SSTable::iterator)));
+        }
+
+        // merge is sequential, but decoding of merged entries can be spread across threads
+        final MergingIterator merged = new MergingIterator(sources, true);
+        return StreamSupport.stream(new BatchSpliterator<>(merged, SCAN_BATCH_SIZE, //
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    private void rotate() {
+        flushPermits.acquireUninterruptibly();
+        boolean rotated = false;
+        final Lock lock = rotateLock.writeLock();
+        lock.lock();
+        try {
+            if (!closed && current.memtable.getApproximateBytes() >= memtableSize) {
+                freeze();
+                background.execute(this::flush);
+                rotated = true;
+            }
+        } finally {
+            lock.unlock();
+            if (!rotated) {
+                flushPermits.release();
+            }
+        }
+    }
+
+    private byte[] serialize(final T value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to serialize " + value, e);
+        }
+    }
+
+    private Path tablePath(final long id) {
+        return directory.resolve(String.format("%016x%s", id, TABLE_SUFFIX));
+    }
+
+    /**
+     * Deletes write-ahead log segments whose changes are all in the given memtable or in older ones.
+     * Memtables are flushed oldest first, so once this memtable is in a table, so are those changes.
+     */
+    private void truncate(final Memtable memtable) {
+        final WriteAheadLog<T> wal = config.getWriteAheadLog();
+        final long checkpoint = memtable.getCheckpoint();
+        if (wal != null && checkpoint >= 0) {
+            try {
+                wal.truncate(checkpoint);
+            } catch (final RuntimeException e) {
+                LOGGER.error("Unable to truncate write-ahead log of {}", directory, e);
+            }
+        }
+    }
+
+    /**
+     * Flushes the oldest immutable memtable to a new level 0 table. If that fails, the memtable
+     * stays in the current version, writers are refused, and the flush is rescheduled until it
+     * succeeds or the store is closed.
+     */
+    private void tryFlush() {
+        try {
+            final Memtable memtable;
+            synchronized (versionLock) {
+                final List<Memtable> immutables = current.immutables;
+                if (immutables.isEmpty()) {
+                    return;
+                }
+                memtable = immutables.get(immutables.size() - 1);
+            }
+
+            final SSTable table = newTable(memtable.iterator(), Long.MAX_VALUE);
+            synchronized (versionLock) {
+                final Version v = current;
+                final List<List<SSTable>> levels = new ArrayList<>(v.levels);
+                if (levels.isEmpty()) {
+                    levels.add(ImmutableList.of());
+                }
+                if (table != null) {
+                    levels.set(0, prepend(table, v.level(0)));
+                }
+                final List<Memtable> immutables = new ArrayList<>(v.immutables);
+                immutables.remove(memtable);
+                install(v.memtable, immutables, levels);
+            }
+            flushFailure = null;
+            truncate(memtable);
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.error("Unable to flush memtable of {}, will retry", directory, e);
+            flushFailure = e;
+            try {
+                background.schedule(this::tryFlush, FLUSH_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException rejected) {
+                // closing, and close() reports the failure
+            }
+            return;
+        }
+
+        try {
+            compactLevels();
+        } catch (final RuntimeException e) {
+            LOGGER.error("Unable to compact {}", directory, e);
+        }
+    }
+
+    private ImmutableList<SSTable> without(final List<SSTable> tables, final Set<SSTable> obsolete) {
+        final ImmutableList.Builder<SSTable> builder = ImmutableList.builder();
+        for (final SSTable table : tables) {
+            if (!obsolete.contains(table)) {
+                builder.add(table);
+            }
+        }
+        return builder.build();
+    }
+
+    private void write(final String key, final byte[] value) {
+        final long size;
+        final Lock lock = rotateLock.readLock();
+        lock.lock();
+        try {
+            checkWritable();
+            size = current.memtable.put(key, value);
+        } finally {
+            lock.unlock();
+        }
+        if (size >= memtableSize) {
+            rotate();
+        }
+    }
+}
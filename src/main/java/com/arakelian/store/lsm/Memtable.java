@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.lsm;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sorted in-memory buffer of recent writes to an {@link LsmStore}. Deletes are recorded as
+ * {@link #TOMBSTONE}.
+ */
+class Memtable {
+    /** Marker for deleted keys; compared by identity **/
+    static final byte[] TOMBSTONE = new byte[0];
+
+    /** Approximate overhead of a skip list entry, in bytes **/
+    private static final int ENTRY_OVERHEAD = 64;
+
+    static boolean isTombstone(final byte[] value) {
+        return value == TOMBSTONE;
+    }
+
+    private final ConcurrentSkipListMap<String, byte[]> entries = new ConcurrentSkipListMap<>();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    /** Write-ahead log checkpoint covering every entry, or -1 if there is none **/
+    private volatile long checkpoint = -1;
+
+    /**
+     * Returns the value for the given key, {@link #TOMBSTONE} if it was deleted, or null if the
+     * memtable does not contain the key.
+     *
+     * @param key
+     *            key
+     * @return value, tombstone or null
+     */
+    byte[] get(final String key) {
+        return entries.get(key);
+    }
+
+    long getApproximateBytes() {
+        return bytes.get();
+    }
+
+    long getCheckpoint() {
+        return checkpoint;
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    Iterator<Map.Entry<String, byte[]>> iterator() {
+        return entries.entrySet().iterator();
+    }
+
+    /**
+     * Stores the given value, and returns the approximate size of the memtable afterwards.
+     *
+     * @param key
+     *            key
+     * @param value
+     *            value or {@link #TOMBSTONE}
+     * @return approximate size of memtable in bytes
+     */
+    long put(final String key, final byte[] value) {
+        entries.put(key, value);
+        return bytes.addAndGet(ENTRY_OVERHEAD + 2L * key.length() + value.length);
+    }
+
+    void setCheckpoint(final long checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
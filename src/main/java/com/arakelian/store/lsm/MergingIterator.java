@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.lsm;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
+/**
+ * Merges several sorted iterators into one sorted iterator. When more than one source contains the
+ * same key, only the entry from the source that appears first in the list is returned, so sources
+ * must be ordered from newest to oldest.
+ */
+class MergingIterator implements Iterator<Map.Entry<String, byte[]>> {
+    private static final class Source implements Comparable<Source> {
+        private final PeekingIterator<Map.Entry<String, byte[]>> iterator;
+        private final int rank;
+
+        private Source(final Iterator<Map.Entry<String, byte[]>> iterator, final int rank) {
+            this.iterator = Iterators.peekingIterator(iterator);
+            this.rank = rank;
+        }
+
+        @Override
+        public int compareTo(final Source other) {
+            final int cmp = iterator.peek().getKey().compareTo(other.iterator.peek().getKey());
+            return cmp != 0 ? cmp : Integer.compare(rank, other.rank);
+        }
+    }
+
+    private final PriorityQueue<Source> queue = new PriorityQueue<>();
+
+    /** True if tombstones should be dropped rather than returned **/
+    private final boolean dropTombstones;
+
+    private Map.Entry<String, byte[]> next;
+
+    MergingIterator(final List<Iterator<Map.Entry<String, byte[]>>> sources, final boolean dropTombstones) {
+        for (int i = 0; i < sources.size(); i++) {
+            final Source source = new Source(sources.get(i), i);
+            if (source.iterator.hasNext()) {
+                queue.add(source);
+            }
+        }
+        this.dropTombstones = dropTombstones;
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Map.Entry<String, byte[]> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        final Map.Entry<String, byte[]> result = next;
+        advance();
+        return result;
+    }
+
+    private void advance() {
+        next = null;
+        while (next == null && !queue.isEmpty()) {
+            // newest entry for smallest key
+            final Source source = queue.poll();
+            final Map.Entry<String, byte[]> entry = source.iterator.next();
+            requeue(source);
+
+            // skip older entries for same key
+            while (!queue.isEmpty() && queue.peek().iterator.peek().getKey().equals(entry.getKey())) {
+                final Source older = queue.poll();
+                older.iterator.next();
+                requeue(older);
+            }
+
+            if (!dropTombstones || !Memtable.isTombstone(entry.getValue())) {
+                next = entry;
+            }
+        }
+    }
+
+    private void requeue(final Source source) {
+        if (source.iterator.hasNext()) {
+            queue.add(source);
+        }
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.lsm;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.arakelian.store.StoreException;
+import com.google.common.base.MoreObjects;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * Immutable, sorted table file of an {@link LsmStore}.
+ *
+ * <p>
+ * A table consists of a data section of entries laid out as <code>key length (int) | key | value
+ * length (int, -1 for tombstone) | value</code>, followed by a sparse index of every
+ * {@value #INDEX_INTERVAL}th key, a serialized bloom filter of all keys, the last key, and a fixed
+ * size footer. The sparse index and bloom filter are loaded onto the heap when the table is opened;
+ * the data section is memory-mapped.
+ * </p>
+ */
+class SSTable {
+    /** Number of entries between sparse index keys **/
+    static final int INDEX_INTERVAL = 16;
+
+    /** Expected false positive probability of bloom filters **/
+    private static final double BLOOM_FPP = 0.01;
+
+    private static final int MAGIC = 0x4C534D31;
+
+    private static final int FOOTER_SIZE = 5 * Integer.BYTES + Long.BYTES;
+
+    static SSTable open(final Path path, final long id) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        final ByteBuffer buf = buffer.duplicate();
+        final int footer = buf.capacity() - FOOTER_SIZE;
+        if (footer < 0 || buf.getInt(buf.capacity() - Integer.BYTES) != MAGIC) {
+            throw new StoreException("Invalid table " + path);
+        }
+        buf.position(footer);
+        final int indexOffset = buf.getInt();
+        final int indexCount = buf.getInt();
+        final int bloomOffset = buf.getInt();
+        final int lastKeyOffset = buf.getInt();
+        final long entries = buf.getLong();
+
+        final String[] indexKeys = new String[indexCount];
+        final int[] indexOffsets = new int[indexCount];
+        buf.position(indexOffset);
+        for (int i = 0; i < indexCount; i++) {
+            indexKeys[i] = readKey(buf);
+            indexOffsets[i] = buf.getInt();
+        }
+
+        final byte[] bloom = new byte[lastKeyOffset - bloomOffset];
+        buf.position(bloomOffset);
+        buf.get(bloom);
+        final BloomFilter<CharSequence> filter = BloomFilter
+                .readFrom(new ByteArrayInputStream(bloom), Funnels.stringFunnel(UTF_8));
+
+        buf.position(lastKeyOffset);
+        final String lastKey = readKey(buf);
+        return new SSTable(id, buffer, indexOffset, indexKeys, indexOffsets, filter, lastKey, entries);
+    }
+
+    /**
+     * Writes a table containing the given sorted entries. The bloom filter is sized from the number
+     * of entries actually written, so that a table cut short by <code>maxBytes</code> does not carry
+     * a filter sized for all of the remaining entries.
+     *
+     * @param path
+     *            path of table file
+     * @param id
+     *            table id
+     * @param entries
+     *            sorted entries, values may be {@link Memtable#TOMBSTONE}
+     * @param maxBytes
+     *            stop after the data section reaches this size
+     * @return the new table, or null if there were no entries
+     * @throws IOException
+     *             if table cannot be written
+     */
+    static SSTable write(
+            final Path path,
+            final long id,
+            final Iterator<Map.Entry<String, byte[]>> entries,
+            final long maxBytes) throws IOException {
+        final List<String> keys = new ArrayList<>();
+        final List<byte[]> indexKeys = new ArrayList<>();
+        final List<Integer> indexOffsets = new ArrayList<>();
+
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long count = 0;
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            byte[] lastKey = null;
+            while (out.size() < maxBytes && entries.hasNext()) {
+                final Map.Entry<String, byte[]> entry = entries.next();
+                final byte[] key = entry.getKey().getBytes(UTF_8);
+                final byte[] value = entry.getValue();
+                if (count++ % INDEX_INTERVAL == 0) {
+                    indexKeys.add(key);
+                    indexOffsets.add(out.size());
+                }
+                out.writeInt(key.length);
+                out.write(key);
+                if (Memtable.isTombstone(value)) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(value.length);
+                    out.write(value);
+                }
+                keys.add(entry.getKey());
+                lastKey = key;
+            }
+            if (count != 0) {
+                final BloomFilter<CharSequence> filter = BloomFilter
+                        .create(Funnels.stringFunnel(UTF_8), keys.size(), BLOOM_FPP);
+                for (final String written : keys) {
+                    filter.put(written);
+                }
+                writeFooter(out, indexKeys, indexOffsets, filter, lastKey, count);
+                out.flush();
+                file.getChannel().force(true);
+            }
+        }
+        if (count == 0) {
+            Files.delete(tmp);
+            return null;
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        return open(path, id);
+    }
+
+    private static void writeFooter(
+            final DataOutputStream out,
+            final List<byte[]> indexKeys,
+            final List<Integer> indexOffsets,
+            final BloomFilter<CharSequence> filter,
+            final byte[] lastKey,
+            final long count) throws IOException {
+        final int indexOffset = out.size();
+        for (int i = 0; i < indexKeys.size(); i++) {
+            out.writeInt(indexKeys.get(i).length);
+            out.write(indexKeys.get(i));
+            out.writeInt(indexOffsets.get(i).intValue());
+        }
+        final int bloomOffset = out.size();
+        filter.writeTo(out);
+        final int lastKeyOffset = out.size();
+        out.writeInt(lastKey.length);
+        out.write(lastKey);
+
+        out.writeInt(indexOffset);
+        out.writeInt(indexKeys.size());
+        out.writeInt(bloomOffset);
+        out.writeInt(lastKeyOffset);
+        out.writeLong(count);
+        out.writeInt(MAGIC);
+    }
+
+    private static String readKey(final ByteBuffer buf) {
+        final byte[] key = new byte[buf.getInt()];
+        buf.get(key);
+        return new String(key, UTF_8);
+    }
+
+    /** Table id **/
+    private final long id;
+
+    /** Contents of table file **/
+    private final MappedByteBuffer buffer;
+
+    /** End of data section **/
+    private final int dataLimit;
+
+    /** Every {@value #INDEX_INTERVAL}th key **/
+    private final String[] indexKeys;
+
+    /** Offsets of keys in sparse index **/
+    private final int[] indexOffsets;
+
+    /** Bloom filter of all keys in table **/
+    private final BloomFilter<CharSequence> filter;
+
+    /** Last key in table **/
+    private final String lastKey;
+
+    /** Number of entries in table **/
+    private final long entries;
+
+    private SSTable(
+            final long id,
+            final MappedByteBuffer buffer,
+            final int dataLimit,
+            final String[] indexKeys,
+            final int[] indexOffsets,
+            final BloomFilter<CharSequence> filter,
+            final String lastKey,
+            final long entries) {
+        this.id = id;
+        this.buffer = buffer;
+        this.dataLimit = dataLimit;
+        this.indexKeys = indexKeys;
+        this.indexOffsets = indexOffsets;
+        this.filter = filter;
+        this.lastKey = lastKey;
+        this.entries = entries;
+    }
+
+    /**
+     * Returns true if the key range of this table overlaps the given range.
+     *
+     * @param first
+     *            first key of range
+     * @param last
+     *            last key of range
+     * @return true if the key range of this table overlaps the given range
+     */
+    boolean overlaps(final String first, final String last) {
+        return getFirstKey().compareTo(last) <= 0 && lastKey.compareTo(first) >= 0;
+    }
+
+    /**
+     * Returns the value for the given key, {@link Memtable#TOMBSTONE} if the table records a delete,
+     * or null if the table does not contain the key. Callers should check {@link #mightContain}
+     * first to avoid touching the data section.
+     *
+     * @param key
+     *            key
+     * @return value, tombstone or null
+     */
+    byte[] get(final String key) {
+        if (key.compareTo(getFirstKey()) < 0) {
+            return null;
+        }
+
+        // find last sparse index entry that is <= key
+        int block = Arrays.binarySearch(indexKeys, key);
+        if (block < 0) {
+            block = -block - 2;
+        }
+
+        final ByteBuffer buf = buffer.duplicate();
+        buf.position(indexOffsets[block]);
+        final int end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataLimit;
+        while (buf.position() < end) {
+            final int cmp = readKey(buf).compareTo(key);
+            final int length = buf.getInt();
+            if (cmp == 0) {
+                if (length == -1) {
+                    return Memtable.TOMBSTONE;
+                }
+                final byte[] value = new byte[length];
+                buf.get(value);
+                return value;
+            } else if (cmp > 0) {
+                break;
+            }
+            if (length > 0) {
+                buf.position(buf.position() + length);
+            }
+        }
+        return null;
+    }
+
+    long getEntries() {
+        return entries;
+    }
+
+    String getFirstKey() {
+        return indexKeys[0];
+    }
+
+    long getId() {
+        return id;
+    }
+
+    String getLastKey() {
+        return lastKey;
+    }
+
+    long getSize() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Returns an iterator over all entries of the table in key order.
+     *
+     * @return iterator over all entries of the table
+     */
+    Iterator<Map.Entry<String, byte[]>> iterator() {
+        final ByteBuffer buf = buffer.duplicate();
+        buf.position(0);
+        return new Iterator<Map.Entry<String, byte[]>>() {
+            @Override
+            public boolean hasNext() {
+                return buf.position() < dataLimit;
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final String key = readKey(buf);
+                final int length = buf.getInt();
+                final byte[] value;
+                if (length == -1) {
+                    value = Memtable.TOMBSTONE;
+                } else {
+                    value = new byte[length];
+                    buf.get(value);
+                }
+                return new AbstractMap.SimpleImmutableEntry<>(key, value);
+            }
+        };
+    }
+
+    /**
+     * Returns false if the table definitely does not contain the given key, without touching the
+     * data section.
+     *
+     * @param key
+     *            key
+     * @return false if the table definitely does not contain the given key
+     */
+    boolean mightContain(final String key) {
+        return key.compareTo(getFirstKey()) >= 0 && key.compareTo(lastKey) <= 0
+                && filter.mightContain(key);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("id", id) //
+                .add("entries", entries) //
+                .add("firstKey", getFirstKey()) //
+                .add("lastKey", lastKey) //
+                .toString();
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.memory;
+
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.arakelian.store.AbstractMutableStore;
+import com.arakelian.store.PurgeableStore;
+import com.arakelian.store.ScannableStore;
+import com.arakelian.store.StoreConfig;
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.feature.HasSoftDeletes;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Mutable store that keeps all values on the heap in a {@link ConcurrentHashMap}.
+ *
+ * <p>
+ * Reads are lock-free and never block behind writes; writes only contend with other writes that
+ * hash to the same bin of the map, so throughput scales with the number of cores.
+ * </p>
+ *
+ * <p>
+ * When {@link StoreConfig#isSoftDeletes()} is enabled, deleting a value leaves a tombstone behind
+ * so that the value is no longer returned by {@link #get(String)} or {@link #getAll}, but is still
+ * retained in memory. Deleting a value that is already soft-deleted (either because it has a
+ * tombstone, or because {@link HasSoftDeletes#getDeleted()} is set) removes it permanently, as
+ * does {@link #purgeAll(List)}, which can be called periodically by a
+ * {@link com.arakelian.store.purge.TombstonePurger} to stop the store from growing without bound.
+ * </p>
+ *
+ * <p>
+ * Tombstones record the time of deletion assigned by {@link AbstractMutableStore}, so that
+ * replaying a write-ahead log reproduces them exactly.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class InMemoryStore<T extends HasId> extends AbstractMutableStore<T>
+        implements ScannableStore<T>, PurgeableStore<T> {
+    /**
+     * Placeholder for a value that has been soft-deleted.
+     */
+    private static final class Tombstone {
+        private final Object value;
+        private final ZonedDateTime deleted;
+
+        private Tombstone(final Object value, final ZonedDateTime deleted) {
+            this.value = value;
+            this.deleted = deleted;
+        }
+
+        public ZonedDateTime getDeleted() {
+            return deleted;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+    }
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+    /**
+     * Maps id to either a value of type T, or a {@link Tombstone}. We avoid wrapping live values so
+     * that a put does not allocate anything beyond the map node.
+     **/
+    private final ConcurrentHashMap<String, Object> mappings;
+
+    public InMemoryStore(final StoreConfig<T> config) {
+        this(config, DEFAULT_INITIAL_CAPACITY, Clock.systemUTC());
+    }
+
+    public InMemoryStore(final StoreConfig<T> config, final int initialCapacity, final Clock clock) {
+        super(config, clock);
+        Preconditions.checkArgument(initialCapacity >= 0, "initialCapacity must be non-negative");
+        this.mappings = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    /**
+     * Removes all values and tombstones from the store. Listeners are not notified.
+     */
+    public void clear() {
+        mappings.clear();
+    }
+
+    @Override
+    public Stream<String> deletedIds(final ZonedDateTime before) {
+        Preconditions.checkArgument(before != null, "before must be non-null");
+        return mappings.entrySet().stream() //
+                .filter(entry -> isDeletedBefore(entry.getValue(), before)) //
+                .map(Map.Entry::getKey);
+    }
+
+    @Override
+    public T get(final String id) {
+        if (StringUtils.isEmpty(id)) {
+            return null;
+        }
+        return live(mappings.get(id));
+    }
+
+    @Override
+    public Stream<String> ids() {
+        return mappings.entrySet().stream() //
+                .filter(entry -> !(entry.getValue() instanceof Tombstone)) //
+                .map(Map.Entry::getKey);
+    }
+
+    /**
+     * Returns the number of mappings in the store, including tombstones of soft-deleted values.
+     *
+     * @return number of mappings in the store
+     */
+    public long mappingCount() {
+        return mappings.mappingCount();
+    }
+
+    @Override
+    public int purgeAll(final List<String> ids) {
+        final List<String> purged = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id) && purge(id)) {
+                purged.add(id);
+            }
+        }
+        notifyDeletedIds(purged);
+        return purged.size();
+    }
+
+    /**
+     * Returns the number of live values in the store. This method traverses the store and should
+     * not be used on hot paths.
+     *
+     * @return number of live values in the store
+     */
+    public int size() {
+        int size = 0;
+        for (final Object o : mappings.values()) {
+            if (!(o instanceof Tombstone)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Stream<T> stream() {
+        // map spliterators split evenly and traverse the live table without copying it
+        return mappings.values().stream() //
+                .filter(value -> !(value instanceof Tombstone)) //
+                .map(this::live);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("config", config) //
+                .add("mappings", mappings.mappingCount()) //
+                .toString();
+    }
+
+    @Override
+    protected void doDelete(final String id) {
+        doDelete(id, now());
+    }
+
+    @Override
+    protected void doDelete(final String id, final ZonedDateTime deleted) {
+        if (!config.isSoftDeletes()) {
+            mappings.remove(id);
+            return;
+        }
+
+        // soft-deleted values are replaced by tombstone; deleting a tombstone purges it
+        mappings.computeIfPresent(id, (key, existing) -> {
+            if (existing instanceof Tombstone || isSoftDeleted(existing)) {
+                return null;
+            }
+            return new Tombstone(existing, deleted);
+        });
+    }
+
+    @Override
+    protected void doDeleteAllIds(final List<String> ids) {
+        doDeleteAllIds(ids, now());
+    }
+
+    @Override
+    protected void doDeleteAllIds(final List<String> ids, final ZonedDateTime deleted) {
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id)) {
+                doDelete(id, deleted);
+            }
+        }
+    }
+
+    @Override
+    protected void doDeleteAllValues(final List<T> values) {
+        doDeleteAllValues(values, now());
+    }
+
+    @Override
+    protected void doDeleteAllValues(final List<T> values, final ZonedDateTime deleted) {
+        for (final T value : values) {
+            if (value != null && !StringUtils.isEmpty(value.getId())) {
+                doDelete(value.getId(), deleted);
+            }
+        }
+    }
+
+    @Override
+    protected List<T> doGetAll(List<T> result, final List<String> ids) {
+        for (final String id : ids) {
+            final T value = live(mappings.get(id));
+            if (value != null) {
+                if (result == null) {
+                    result = new ArrayList<>(ids.size());
+                }
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected void doPut(final T value) {
+        mappings.put(value.getId(), value);
+    }
+
+    @Override
+    protected void doUnloadAll(final List<String> ids, final ZonedDateTime deleted) {
+        if (!config.isSoftDeletes()) {
+            doDeleteAllIds(ids, deleted);
+            return;
+        }
+
+        // unlike doDelete, an existing tombstone is kept rather than purged
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id)) {
+                mappings.computeIfPresent(id, (key, existing) -> {
+                    if (existing instanceof Tombstone || isSoftDeleted(existing)) {
+                        return existing;
+                    }
+                    return new Tombstone(existing, deleted);
+                });
+            }
+        }
+    }
+
+    private boolean isDeletedBefore(final Object value, final ZonedDateTime before) {
+        final ZonedDateTime deleted;
+        if (value instanceof Tombstone) {
+            deleted = ((Tombstone) value).getDeleted();
+        } else if (isSoftDeleted(value)) {
+            deleted = ((HasSoftDeletes) value).getDeleted();
+        } else {
+            return false;
+        }
+        return deleted.isBefore(before);
+    }
+
+    private boolean isSoftDeleted(final Object value) {
+        return value instanceof HasSoftDeletes && ((HasSoftDeletes) value).getDeleted() != null;
+    }
+
+    /**
+     * Removes the value with the given id if it is still soft-deleted, atomically with respect to
+     * puts of the same id.
+     *
+     * @param id
+     *            id of value to remove
+     * @return true if the value was removed
+     */
+    private boolean purge(final String id) {
+        final boolean[] purged = new boolean[1];
+        mappings.computeIfPresent(id, (key, existing) -> {
+            if (existing instanceof Tombstone || isSoftDeleted(existing)) {
+                purged[0] = true;
+                return null;
+            }
+            return existing;
+        });
+        return purged[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    private T live(final Object value) {
+        return value instanceof Tombstone ? null : (T) value;
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Lock-free histogram of non-negative long values, such as latencies in nanoseconds or batch
+ * sizes, that never allocates while recording.
+ *
+ * <p>
+ * Values are counted in log-linear buckets: each power of two is divided into
+ * {@value #SUB_BUCKETS} linear sub-buckets, so percentiles are accurate to within about 6% of the
+ * value across the whole range of a long, using a fixed array of counters.
+ * </p>
+ *
+ * <p>
+ * Bucket counters are striped by thread, like a {@link LongAdder}, so that threads recording
+ * concurrently do not contend on the same counters. A stripe is allocated the first time a thread
+ * that maps to it records a value.
+ * </p>
+ *
+ * <p>
+ * Statistics are cumulative since the histogram was created or last {@link #reset()}. Use
+ * {@link #snapshot()} and {@link Snapshot#since(Snapshot)} to report the values recorded during
+ * an interval without resetting the histogram.
+ * </p>
+ */
+public final class Histogram {
+    /**
+     * Immutable copy of the bucket counts of a {@link Histogram}, taken by {@link #snapshot()}.
+     */
+    public static final class Snapshot {
+        /** Number of values counted in each bucket **/
+        private final long[] counts;
+
+        /** Number of values counted **/
+        private final long count;
+
+        /** Sum of values recorded **/
+        private final long sum;
+
+        /** Largest value recorded **/
+        private final long max;
+
+        private Snapshot(final long[] counts, final long sum, final long max) {
+            long total = 0;
+            for (final long c : counts) {
+                total += c;
+            }
+            this.counts = counts;
+            this.count = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the mean of the recorded values.
+         *
+         * @return mean of recorded values, or zero if none have been recorded
+         */
+        public double getMean() {
+            return count != 0 ? (double) sum / count : 0;
+        }
+
+        /**
+         * Returns an upper bound of the value below which the given percentage of recorded values
+         * fall.
+         *
+         * @param percentile
+         *            percentage between 0 and 100
+         * @return value at the given percentile, or zero if no values have been recorded
+         */
+        public long getPercentile(final double percentile) {
+            Preconditions.checkArgument(
+                    percentile >= 0 && percentile <= 100,
+                    "percentile must be between 0 and 100");
+            if (count == 0) {
+                return 0;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Returns the values recorded between the given earlier snapshot and this one. The maximum
+         * of the interval is bounded by the highest bucket that was counted during it.
+         *
+         * @param earlier
+         *            snapshot of the same histogram, taken before this one
+         * @return snapshot of values recorded during the interval
+         */
+        public Snapshot since(final Snapshot earlier) {
+            Preconditions.checkArgument(earlier != null, "earlier must be non-null");
+            final long[] interval = new long[BUCKETS];
+            long highest = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                // counts go backwards if the histogram was reset in between
+                interval[i] = Math.max(0, counts[i] - earlier.counts[i]);
+                if (interval[i] != 0) {
+                    highest = Math.min(highestValueOf(i), max);
+                }
+            }
+            return new Snapshot(interval, Math.max(0, sum - earlier.sum), highest);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this) //
+                    .add("count", getCount()) //
+                    .add("mean", getMean()) //
+                    .add("p50", getPercentile(50)) //
+                    .add("p99", getPercentile(99)) //
+                    .add("max", getMax()) //
+                    .toString();
+        }
+    }
+
+    /** Number of bits used to select a sub-bucket within a power of two **/
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** Number of linear sub-buckets in each power of two **/
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /** Maximum number of stripes of bucket counters, a power of 2 **/
+    private static final int STRIPES = Math.min(
+            16,
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+
+    /**
+     * Returns the bucket that the given value is counted in.
+     *
+     * @param value
+     *            non-negative value
+     * @return bucket index
+     */
+    static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final int sub = (int) (value >>> shift) & SUB_BUCKETS - 1;
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the largest value that is counted in the given bucket.
+     *
+     * @param bucket
+     *            bucket index
+     * @return largest value counted in bucket
+     */
+    static long highestValueOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) - 1);
+    }
+
+    /** Number of values counted in each bucket, striped by thread; stripes are created lazily **/
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    /** Number of values recorded **/
+    private final LongAdder count = new LongAdder();
+
+    /** Sum of values recorded **/
+    private final LongAdder sum = new LongAdder();
+
+    /** Largest value recorded **/
+    private final AtomicLong max = new AtomicLong();
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return mean of recorded values, or zero if none have been recorded
+     */
+    public double getMean() {
+        final long n = count.sum();
+        return n != 0 ? (double) sum.sum() / n : 0;
+    }
+
+    /**
+     * Returns an upper bound of the value below which the given percentage of recorded values fall.
+     *
+     * @param percentile
+     *            percentage between 0 and 100
+     * @return value at the given percentile, or zero if no values have been recorded
+     */
+    public long getPercentile(final double percentile) {
+        return snapshot().getPercentile(percentile);
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Records the given value.
+     *
+     * @param value
+     *            value to record; negative values are recorded as zero
+     */
+    public void record(final long value) {
+        final long v = Math.max(0, value);
+        stripe().incrementAndGet(bucketOf(v));
+        count.increment();
+        sum.add(v);
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    /**
+     * Discards all recorded values. Values recorded concurrently with a reset may be partially
+     * counted, e.g. in the bucket counts but not in the sum.
+     */
+    public void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            final AtomicLongArray counts = stripes.get(i);
+            if (counts != null) {
+                for (int j = 0; j < BUCKETS; j++) {
+                    counts.set(j, 0);
+                }
+            }
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Returns a copy of the bucket counts, from which percentiles can be computed consistently, or
+     * which can be compared with a later snapshot to report an interval.
+     *
+     * @return copy of the bucket counts
+     */
+    public Snapshot snapshot() {
+        // counts are read without a lock, so the snapshot totals them rather than use count
+        final long[] totals = new long[BUCKETS];
+        for (int i = 0; i < STRIPES; i++) {
+            final AtomicLongArray counts = stripes.get(i);
+            if (counts != null) {
+                for (int j = 0; j < BUCKETS; j++) {
+                    totals[j] += counts.get(j);
+                }
+            }
+        }
+        return new Snapshot(totals, sum.sum(), max.get());
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * Returns the bucket counters of the calling thread, creating them on first use.
+     *
+     * @return bucket counters of calling thread
+     */
+    private AtomicLongArray stripe() {
+        final int index = (int) Thread.currentThread().getId() & STRIPES - 1;
+        final AtomicLongArray counts = stripes.get(index);
+        if (counts != null) {
+            return counts;
+        }
+        stripes.compareAndSet(index, null, new AtomicLongArray(BUCKETS));
+        return stripes.get(index);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.metrics;
+
+import java.util.Collection;
+
+import com.arakelian.store.MutableStore;
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.metrics.StoreMetrics.Operation;
+
+/**
+ * Decorator that records the latency of every read and write of another {@link MutableStore}, and
+ * counts the records read, missed, written and deleted, in {@link StoreMetrics}. Recording does
+ * not allocate.
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class InstrumentedMutableStore<T extends HasId> extends InstrumentedStore<T>
+        implements MutableStore<T> {
+    /** Underlying store **/
+    private final MutableStore<T> mutableDelegate;
+
+    public InstrumentedMutableStore(final MutableStore<T> delegate, final StoreMetrics metrics) {
+        super(delegate, metrics);
+        this.mutableDelegate = delegate;
+    }
+
+    @Override
+    public void delete(final String id) {
+        final long start = System.nanoTime();
+        try {
+            mutableDelegate.delete(id);
+        } finally {
+            metrics.record(Operation.DELETE, start);
+        }
+        metrics.recordDeleted(1);
+    }
+
+    @Override
+    public void delete(final T value) {
+        final long start = System.nanoTime();
+        try {
+            mutableDelegate.delete(value);
+        } finally {
+            metrics.record(Operation.DELETE, start);
+        }
+        metrics.recordDeleted(1);
+    }
+
+    @Override
+    public void deleteAll(final Collection<T> values) {
+        final long start = System.nanoTime();
+        try {
+            mutableDelegate.deleteAll(values);
+        } finally {
+            metrics.record(Operation.DELETE_ALL, start);
+        }
+        final int count = values != null ? values.size() : 0;
+        metrics.recordBatch(count);
+        metrics.recordDeleted(count);
+    }
+
+    @Override
+    public void deleteAll(final String... ids) {
+        final long start = System.nanoTime();
+        try {
+            mutableDelegate.deleteAll(ids);
+        } finally {
+            metrics.record(Operation.DELETE_ALL, start);
+        }
+        final int count = ids != null ? ids.length : 0;
+        metrics.recordBatch(count);
+        metrics.recordDeleted(count);
+    }
+
+    @Override
+    public MutableStore<T> getDelegate() {
+        return mutableDelegate;
+    }
+
+    @Override
+    public void put(final T value) {
+        final long start = System.nanoTime();
+        try {
+            mutableDelegate.put(value);
+        } finally {
+            metrics.record(Operation.PUT, start);
+        }
+        metrics.recordWritten(1);
+    }
+
+    @Override
+    public void putAll(final Collection<T> values) {
+        final long start = System.nanoTime();
+        try {
+            mutableDelegate.putAll(values);
+        } finally {
+            metrics.record(Operation.PUT_ALL, start);
+        }
+        final int count = values != null ? values.size() : 0;
+        metrics.recordBatch(count);
+        metrics.recordWritten(count);
+    }
+
+    @Override
+    public void putAll(final T[] values) {
+        final long start = System.nanoTime();
+        try {
+            mutableDelegate.putAll(values);
+        } finally {
+            metrics.record(Operation.PUT_ALL, start);
+        }
+        final int count = values != null ? values.length : 0;
+        metrics.recordBatch(count);
+        metrics.recordWritten(count);
+    }
+}
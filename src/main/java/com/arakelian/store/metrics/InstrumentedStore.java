@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.metrics;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.arakelian.store.Store;
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.metrics.StoreMetrics.Operation;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Decorator that records the latency of every read of another {@link Store}, and counts the
+ * records read and missed, in {@link StoreMetrics}. Recording does not allocate.
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class InstrumentedStore<T extends HasId> implements Store<T> {
+    /** Underlying store **/
+    protected final Store<T> delegate;
+
+    /** Where we record metrics **/
+    protected final StoreMetrics metrics;
+
+    public InstrumentedStore(final Store<T> delegate, final StoreMetrics metrics) {
+        Preconditions.checkArgument(delegate != null, "delegate must be non-null");
+        Preconditions.checkArgument(metrics != null, "metrics must be non-null");
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public T get(final String id) {
+        final long start = System.nanoTime();
+        final T value;
+        try {
+            value = delegate.get(id);
+        } finally {
+            metrics.record(Operation.GET, start);
+        }
+        metrics.recordRead(1, value != null ? 1 : 0);
+        return value;
+    }
+
+    @Override
+    public List<T> getAll(final Collection<String> ids) {
+        final long start = System.nanoTime();
+        final List<T> values;
+        try {
+            values = delegate.getAll(ids);
+        } finally {
+            metrics.record(Operation.GET_ALL, start);
+        }
+        final int requested = ids != null ? ids.size() : 0;
+        metrics.recordBatch(requested);
+        metrics.recordRead(requested, values.size());
+        return values;
+    }
+
+    @Override
+    public List<T> getAll(final String... ids) {
+        final long start = System.nanoTime();
+        final List<T> values;
+        try {
+            values = delegate.getAll(ids);
+        } finally {
+            metrics.record(Operation.GET_ALL, start);
+        }
+        final int requested = ids != null ? ids.length : 0;
+        metrics.recordBatch(requested);
+        metrics.recordRead(requested, values.size());
+        return values;
+    }
+
+    public Store<T> getDelegate() {
+        return delegate;
+    }
+
+    public StoreMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("delegate", delegate) //
+                .add("metrics", metrics) //
+                .toString();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.metrics;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Latency histogram of one kind of store operation, in nanoseconds.
+ */
+public final class OperationMetrics implements OperationMetricsMBean {
+    private static final double NANOS_PER_MICRO = 1000d;
+
+    /** Latency in nanoseconds **/
+    private final Histogram latency = new Histogram();
+
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.getMax() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.getMean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.getPercentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.getPercentile(99.9) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.getPercentile(99) / NANOS_PER_MICRO;
+    }
+
+    /**
+     * Records an operation that started at the given time.
+     *
+     * @param startNanos
+     *            value of {@link System#nanoTime()} when operation started
+     */
+    public void record(final long startNanos) {
+        latency.record(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("latency", latency) //
+                .toString();
+    }
+}
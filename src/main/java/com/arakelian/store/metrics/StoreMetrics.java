@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.arakelian.store.StoreException;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Operation latencies, record counters and batch statistics of a store.
+ *
+ * <p>
+ * Latencies and counters are recorded by an {@link InstrumentedStore} or
+ * {@link InstrumentedMutableStore}; partition counts are recorded by
+ * {@link com.arakelian.store.AbstractStore#getAll(java.util.Collection)} when these metrics are
+ * returned by {@link com.arakelian.store.StoreConfig#getMetrics()}. Recording never allocates or
+ * locks. {@link #register()} exposes the metrics as MBeans named
+ * <code>com.arakelian.store:type=StoreMetrics,name=&lt;name&gt;</code>, with one additional MBean per
+ * operation.
+ * </p>
+ */
+public class StoreMetrics implements StoreMetricsMBean {
+    /**
+     * Store operations whose latency is recorded.
+     */
+    public enum Operation {
+        GET, GET_ALL, PUT, PUT_ALL, DELETE, DELETE_ALL;
+    }
+
+    private static final String DOMAIN = "com.arakelian.store";
+
+    /** Name of metrics, used to name MBeans **/
+    private final String name;
+
+    /** Latency of each operation, indexed by ordinal **/
+    private final OperationMetrics[] operations;
+
+    /** Number of records in each bulk operation **/
+    private final Histogram batchSizes = new Histogram();
+
+    /** Number of partitions of each getAll **/
+    private final Histogram partitions = new Histogram();
+
+    private final LongAdder read = new LongAdder();
+
+    private final LongAdder missed = new LongAdder();
+
+    private final LongAdder written = new LongAdder();
+
+    private final LongAdder deleted = new LongAdder();
+
+    /** MBeans we have registered **/
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    public StoreMetrics(final String name) {
+        Preconditions.checkArgument(!StringUtils.isEmpty(name), "name must be non-empty");
+        this.name = name;
+        this.operations = new OperationMetrics[Operation.values().length];
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new OperationMetrics();
+        }
+    }
+
+    @Override
+    public double getBatchSizeMean() {
+        return batchSizes.getMean();
+    }
+
+    @Override
+    public long getBatchSizeP99() {
+        return batchSizes.getPercentile(99);
+    }
+
+    public Histogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    @Override
+    public long getGetAllPartitionCount() {
+        return partitions.getSum();
+    }
+
+    @Override
+    public long getGetAllPartitionsP99() {
+        return partitions.getPercentile(99);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public OperationMetrics getOperation(final Operation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    public Histogram getPartitions() {
+        return partitions;
+    }
+
+    @Override
+    public long getRecordsDeleted() {
+        return deleted.sum();
+    }
+
+    @Override
+    public long getRecordsMissed() {
+        return missed.sum();
+    }
+
+    @Override
+    public long getRecordsRead() {
+        return read.sum();
+    }
+
+    @Override
+    public long getRecordsWritten() {
+        return written.sum();
+    }
+
+    /**
+     * Records an operation that started at the given time.
+     *
+     * @param operation
+     *            kind of operation
+     * @param startNanos
+     *            value of {@link System#nanoTime()} when operation started
+     */
+    public void record(final Operation operation, final long startNanos) {
+        operations[operation.ordinal()].record(startNanos);
+    }
+
+    public void recordBatch(final int size) {
+        batchSizes.record(size);
+    }
+
+    public void recordDeleted(final int count) {
+        deleted.add(count);
+    }
+
+    public void recordPartitions(final int count) {
+        partitions.record(count);
+    }
+
+    /**
+     * Records the outcome of a read.
+     *
+     * @param requested
+     *            number of records requested
+     * @param found
+     *            number of records found
+     */
+    public void recordRead(final int requested, final int found) {
+        read.add(found);
+        if (requested > found) {
+            missed.add(requested - found);
+        }
+    }
+
+    public void recordWritten(final int count) {
+        written.add(count);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server.
+     *
+     * @throws StoreException
+     *             if the MBeans cannot be registered
+     */
+    public synchronized void register() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, objectName(null), this);
+            for (final Operation operation : Operation.values()) {
+                register(server, objectName(operation), getOperation(operation));
+            }
+        } catch (final JMException e) {
+            unregister();
+            throw new StoreException("Unable to register metrics " + name, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("name", name) //
+                .add("read", read.sum()) //
+                .add("missed", missed.sum()) //
+                .add("written", written.sum()) //
+                .add("deleted", deleted.sum()) //
+                .toString();
+    }
+
+    /**
+     * Unregisters any MBeans registered by {@link #register()}.
+     */
+    public synchronized void unregister() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (final ObjectName objectName : registered) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (final InstanceNotFoundException e) {
+                // already unregistered
+            } catch (final JMException e) {
+                throw new StoreException("Unable to unregister " + objectName, e);
+            }
+        }
+        registered.clear();
+    }
+
+    private ObjectName objectName(final Operation operation) throws JMException {
+        final StringBuilder buf = new StringBuilder(DOMAIN) //
+                .append(":type=StoreMetrics,name=").append(ObjectName.quote(name));
+        if (operation != null) {
+            buf.append(",operation=").append(operation.name().toLowerCase(Locale.ROOT));
+        }
+        return new ObjectName(buf.toString());
+    }
+
+    private void register(final MBeanServer server, final ObjectName objectName, final Object mbean)
+            throws JMException {
+        server.registerMBean(mbean, objectName);
+        registered.add(objectName);
+    }
+}
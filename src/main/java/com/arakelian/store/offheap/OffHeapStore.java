@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.offheap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.arakelian.store.AbstractMutableStore;
+import com.arakelian.store.ScannableStore;
+import com.arakelian.store.StoreConfig;
+import com.arakelian.store.StoreException;
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.json.StoreObjectMapper;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Mutable store that serializes values with a {@link StoreObjectMapper} into off-heap memory, and
+ * keeps only an index of ids to off-heap addresses on the heap. Values are deserialized on every
+ * read.
+ *
+ * <p>
+ * Readers and writers of the same id are coordinated by a striped read-write lock, which guarantees
+ * that a block is never freed and reused while another thread is copying it. Readers only copy the
+ * serialized bytes while holding the lock, so serialization and deserialization happen outside of
+ * it.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class OffHeapStore<T extends HasId> extends AbstractMutableStore<T>
+        implements ScannableStore<T>, Closeable {
+    private static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+
+    private static final int DEFAULT_STRIPES = 256;
+
+    /** Serializes values to and from bytes **/
+    private final StoreObjectMapper<T> mapper;
+
+    /** Off-heap memory **/
+    private final SlabAllocator allocator;
+
+    /** Maps ids to off-heap address **/
+    private final ConcurrentHashMap<String, Long> index;
+
+    /** Coordinates readers and writers of the same id **/
+    private final Striped<ReadWriteLock> locks;
+
+    public OffHeapStore(final StoreConfig<T> config, final StoreObjectMapper<T> mapper) {
+        this(config, mapper, DEFAULT_SLAB_SIZE);
+    }
+
+    public OffHeapStore(final StoreConfig<T> config, final StoreObjectMapper<T> mapper, final int slabSize) {
+        super(config);
+        Preconditions.checkArgument(mapper != null, "mapper must be non-null");
+        this.mapper = mapper;
+        this.allocator = new SlabAllocator(slabSize);
+        this.index = new ConcurrentHashMap<>();
+        this.locks = Striped.readWriteLock(DEFAULT_STRIPES);
+    }
+
+    @Override
+    public void close() {
+        index.clear();
+        allocator.close();
+    }
+
+    @Override
+    public T get(final String id) {
+        if (StringUtils.isEmpty(id)) {
+            return null;
+        }
+        return read(id);
+    }
+
+    /**
+     * Returns the allocator that manages off-heap memory for this store, which can be used to report
+     * off-heap usage.
+     *
+     * @return the allocator that manages off-heap memory
+     */
+    public SlabAllocator getAllocator() {
+        return allocator;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory reserved by this store.
+     *
+     * @return number of bytes of off-heap memory reserved
+     */
+    public long getOffHeapAllocated() {
+        return allocator.getAllocatedBytes();
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory occupied by values.
+     *
+     * @return number of bytes of off-heap memory occupied by values
+     */
+    public long getOffHeapUsed() {
+        return allocator.getUsedBytes();
+    }
+
+    @Override
+    public Stream<String> ids() {
+        return index.keySet().stream();
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public Stream<T> stream() {
+        // values deleted after their id was seen are skipped
+        return index.keySet().stream().map(this::read).filter(Objects::nonNull);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("config", config) //
+                .add("size", index.size()) //
+                .add("allocator", allocator) //
+                .toString();
+    }
+
+    @Override
+    protected void doDelete(final String id) {
+        final Long address;
+        final Lock lock = locks.get(id).writeLock();
+        lock.lock();
+        try {
+            address = index.remove(id);
+        } finally {
+            lock.unlock();
+        }
+        if (address != null) {
+            allocator.free(address.longValue());
+        }
+    }
+
+    @Override
+    protected void doDeleteAllIds(final List<String> ids) {
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id)) {
+                doDelete(id);
+            }
+        }
+    }
+
+    @Override
+    protected void doDeleteAllValues(final List<T> values) {
+        for (final T value : values) {
+            if (value != null && !StringUtils.isEmpty(value.getId())) {
+                doDelete(value.getId());
+            }
+        }
+    }
+
+    @Override
+    protected List<T> doGetAll(List<T> result, final List<String> ids) {
+        final List<byte[]> payloads = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            final byte[] bytes = copy(id);
+            if (bytes != null) {
+                payloads.add(bytes);
+            }
+        }
+        if (payloads.size() == 0) {
+            return result;
+        }
+
+        // whole partition is decoded at once, after every lock has been released
+        final List<T> values;
+        try {
+            values = mapper.readValues(payloads);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to deserialize values of " + ids, e);
+        }
+        if (result == null) {
+            return values;
+        }
+        result.addAll(values);
+        return result;
+    }
+
+    @Override
+    protected void doPut(final T value) {
+        final byte[] bytes = serialize(value);
+
+        // block is private to us until we publish its address
+        final long address = allocator.allocate(bytes.length);
+        allocator.write(address, bytes);
+
+        final String id = value.getId();
+        final Long previous;
+        final Lock lock = locks.get(id).writeLock();
+        lock.lock();
+        try {
+            previous = index.put(id, Long.valueOf(address));
+        } finally {
+            lock.unlock();
+        }
+
+        // nobody can be reading previous block once we've released write lock
+        if (previous != null) {
+            allocator.free(previous.longValue());
+        }
+    }
+
+    /**
+     * Returns a copy of the serialized value with the given id.
+     *
+     * @param id
+     *            value id
+     * @return serialized value, or null if there is no value with the given id
+     */
+    private byte[] copy(final String id) {
+        final Lock lock = locks.get(id).readLock();
+        lock.lock();
+        try {
+            // block cannot be freed while we hold read lock
+            final Long address = index.get(id);
+            return address != null ? allocator.read(address.longValue()) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private T read(final String id) {
+        final byte[] bytes = copy(id);
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return mapper.readValue(bytes);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to deserialize value of " + id, e);
+        }
+    }
+
+    private byte[] serialize(final T value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to serialize " + value, e);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.arakelian.store.StoreException;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Allocates variable-length blocks of off-heap memory from a list of direct {@link ByteBuffer}
+ * slabs.
+ *
+ * <p>
+ * Blocks are rounded up to a power-of-two size class, and freed blocks are kept on a free list per
+ * size class so that they can be reused by later allocations of the same class. Each block starts
+ * with a 4-byte length header followed by the payload.
+ * </p>
+ *
+ * <p>
+ * A block address encodes the slab index in the high 32 bits and the offset within the slab in the
+ * low 32 bits. Allocation and freeing are synchronized; reading and writing a block that the caller
+ * owns is not.
+ * </p>
+ */
+public class SlabAllocator {
+    private static final int HEADER_SIZE = Integer.BYTES;
+
+    private static final int MIN_BLOCK_SHIFT = 4;
+
+    private static long address(final int slab, final int offset) {
+        return (long) slab << 32 | offset & 0xFFFFFFFFL;
+    }
+
+    private static int offsetOf(final long address) {
+        return (int) address;
+    }
+
+    private static int slabOf(final long address) {
+        return (int) (address >>> 32);
+    }
+
+    /** Size of each slab in bytes **/
+    private final int slabSize;
+
+    /** Slabs we have allocated; copied on write so that readers never need to synchronize **/
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+
+    /** Free block addresses, indexed by size class **/
+    private final long[][] free;
+
+    /** Number of free addresses for each size class **/
+    private final int[] freeCount;
+
+    /** Offset of next unallocated byte in the last slab **/
+    private int top;
+
+    /** Number of bytes in blocks that are currently handed out **/
+    private long used;
+
+    /** True once closed **/
+    private boolean closed;
+
+    public SlabAllocator(final int slabSize) {
+        Preconditions.checkArgument(
+                slabSize >= 1 << MIN_BLOCK_SHIFT && Integer.bitCount(slabSize) == 1,
+                "slabSize must be a power of two of at least %s bytes",
+                1 << MIN_BLOCK_SHIFT);
+        this.slabSize = slabSize;
+        final int classes = sizeClassOf(slabSize) + 1;
+        this.free = new long[classes][];
+        this.freeCount = new int[classes];
+        for (int i = 0; i < classes; i++) {
+            free[i] = new long[16];
+        }
+        this.top = slabSize;
+    }
+
+    /**
+     * Allocates a block large enough to hold the given number of payload bytes.
+     *
+     * @param length
+     *            number of payload bytes
+     * @return address of block
+     */
+    public synchronized long allocate(final int length) {
+        Preconditions.checkState(!closed, "Allocator is closed");
+        final int blockSize = blockSizeOf(length);
+        final int sizeClass = sizeClassOf(blockSize);
+
+        // reuse free block if possible
+        final int count = freeCount[sizeClass];
+        if (count != 0) {
+            freeCount[sizeClass] = count - 1;
+            used += blockSize;
+            return free[sizeClass][count - 1];
+        }
+
+        // allocate a new slab if we've run out of space in current one
+        if (top + blockSize > slabSize) {
+            final ByteBuffer[] tmp = Arrays.copyOf(slabs, slabs.length + 1);
+            tmp[slabs.length] = ByteBuffer.allocateDirect(slabSize);
+            slabs = tmp;
+            top = 0;
+        }
+
+        final long address = address(slabs.length - 1, top);
+        top += blockSize;
+        used += blockSize;
+        return address;
+    }
+
+    /**
+     * Returns the given block to the free list.
+     *
+     * @param address
+     *            block address returned by {@link #allocate(int)}
+     */
+    public synchronized void free(final long address) {
+        if (closed) {
+            return;
+        }
+        final int blockSize = blockSizeOf(slabs[slabOf(address)].getInt(offsetOf(address)));
+        final int sizeClass = sizeClassOf(blockSize);
+        final int count = freeCount[sizeClass];
+        if (count == free[sizeClass].length) {
+            free[sizeClass] = Arrays.copyOf(free[sizeClass], count * 2);
+        }
+        free[sizeClass][count] = address;
+        freeCount[sizeClass] = count + 1;
+        used -= blockSize;
+    }
+
+    /**
+     * Releases all slabs. Direct memory is returned to the operating system once the slabs are
+     * garbage collected.
+     */
+    public synchronized void close() {
+        closed = true;
+        slabs = new ByteBuffer[0];
+        Arrays.fill(freeCount, 0);
+        used = 0;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory reserved by this allocator.
+     *
+     * @return number of bytes of off-heap memory reserved
+     */
+    public long getAllocatedBytes() {
+        return (long) slabs.length * slabSize;
+    }
+
+    public int getSlabCount() {
+        return slabs.length;
+    }
+
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory in blocks that are in use, including block
+     * headers and size-class padding.
+     *
+     * @return number of bytes of off-heap memory in use
+     */
+    public synchronized long getUsedBytes() {
+        return used;
+    }
+
+    /**
+     * Returns the payload of the given block.
+     *
+     * @param address
+     *            block address
+     * @return payload bytes
+     */
+    public byte[] read(final long address) {
+        final ByteBuffer buf = slab(address).duplicate();
+        final int offset = offsetOf(address);
+        final byte[] bytes = new byte[buf.getInt(offset)];
+        buf.position(offset + HEADER_SIZE);
+        buf.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("slabSize", slabSize) //
+                .add("allocatedBytes", getAllocatedBytes()) //
+                .add("usedBytes", getUsedBytes()) //
+                .toString();
+    }
+
+    /**
+     * Writes the given payload to a block previously allocated with a length of at least
+     * <code>bytes.length</code>.
+     *
+     * @param address
+     *            block address
+     * @param bytes
+     *            payload bytes
+     */
+    public void write(final long address, final byte[] bytes) {
+        final ByteBuffer buf = slab(address).duplicate();
+        final int offset = offsetOf(address);
+        buf.putInt(offset, bytes.length);
+        buf.position(offset + HEADER_SIZE);
+        buf.put(bytes);
+    }
+
+    private int blockSizeOf(final int length) {
+        final int size = Math.max(length + HEADER_SIZE, 1 << MIN_BLOCK_SHIFT);
+        final int blockSize = Integer.highestOneBit(size - 1) << 1;
+        if (blockSize > slabSize || blockSize <= 0) {
+            throw new StoreException(
+                    "Value of " + length + " bytes does not fit in slab of " + slabSize + " bytes");
+        }
+        return blockSize;
+    }
+
+    private ByteBuffer slab(final long address) {
+        final ByteBuffer[] slabs = this.slabs;
+        final int slab = slabOf(address);
+        Preconditions.checkState(slab < slabs.length, "Allocator is closed");
+        return slabs[slab];
+    }
+
+    private int sizeClassOf(final int blockSize) {
+        return Integer.numberOfTrailingZeros(blockSize) - MIN_BLOCK_SHIFT;
+    }
+}
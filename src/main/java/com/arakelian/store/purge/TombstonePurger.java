@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.purge;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.arakelian.core.utils.ExecutorUtils;
+import com.arakelian.store.PurgeableStore;
+import com.arakelian.store.feature.HasId;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+
+/**
+ * Background service that permanently removes values which were soft-deleted longer ago than a
+ * retention window.
+ *
+ * <p>
+ * Each pass scans the store for ids deleted before the start of the retention window and purges
+ * them in batches, pausing between batches so that the purge does not compete with application
+ * traffic for long. Passes run on a daemon thread at a fixed delay once {@link #start(Duration)} is
+ * called, or can be run on the calling thread with {@link #purge()}. Progress is exposed through
+ * counters that can be polled while a pass is running.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class TombstonePurger<T extends HasId> implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TombstonePurger.class);
+
+    /** Store that is purged **/
+    private final PurgeableStore<T> store;
+
+    /** How long soft-deleted values are retained **/
+    private final Duration retention;
+
+    /** Maximum number of ids purged at once **/
+    private final int batchSize;
+
+    /** Pause between batches **/
+    private final Duration pause;
+
+    /** Used to compute start of retention window **/
+    private final Clock clock;
+
+    /** Runs passes in background **/
+    private final ScheduledExecutorService scheduler;
+
+    /** Only one pass may run at a time **/
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /** Total number of values purged **/
+    private final AtomicLong purged = new AtomicLong();
+
+    /** Number of values purged by current or last pass **/
+    private final AtomicLong passPurged = new AtomicLong();
+
+    /** Number of batches purged **/
+    private final AtomicLong batches = new AtomicLong();
+
+    /** Number of completed passes **/
+    private final AtomicLong passes = new AtomicLong();
+
+    /** Time that last pass completed, or null if none has completed **/
+    private volatile Instant lastCompleted;
+
+    public TombstonePurger(final PurgeableStore<T> store, final Duration retention) {
+        this(store, retention, 1000, Duration.ofMillis(10), Clock.systemUTC());
+    }
+
+    public TombstonePurger(
+            final PurgeableStore<T> store,
+            final Duration retention,
+            final int batchSize,
+            final Duration pause,
+            final Clock clock) {
+        Preconditions.checkArgument(store != null, "store must be non-null");
+        Preconditions.checkArgument(
+                retention != null && !retention.isNegative(),
+                "retention must be non-negative");
+        Preconditions.checkArgument(batchSize > 0, "batchSize must be positive");
+        Preconditions.checkArgument(pause != null && !pause.isNegative(), "pause must be non-negative");
+        Preconditions.checkArgument(clock != null, "clock must be non-null");
+        this.store = store;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.pause = pause;
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                ExecutorUtils.newThreadFactory(TombstonePurger.class, true));
+    }
+
+    /**
+     * Stops running passes, and waits for a running pass to finish its current batch.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of batches purged since this service was created.
+     *
+     * @return number of batches purged
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Returns the time that the last pass completed.
+     *
+     * @return time that the last pass completed, or null if no pass has completed
+     */
+    public Instant getLastCompleted() {
+        return lastCompleted;
+    }
+
+    /**
+     * Returns the number of completed passes.
+     *
+     * @return number of completed passes
+     */
+    public long getPassCount() {
+        return passes.get();
+    }
+
+    /**
+     * Returns the number of values purged by the running pass, or by the last pass if none is
+     * running.
+     *
+     * @return number of values purged by current or last pass
+     */
+    public long getPassPurgedCount() {
+        return passPurged.get();
+    }
+
+    /**
+     * Returns the number of values purged since this service was created.
+     *
+     * @return number of values purged
+     */
+    public long getPurgedCount() {
+        return purged.get();
+    }
+
+    /**
+     * Returns true if a pass is running.
+     *
+     * @return true if a pass is running
+     */
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Runs a pass on the calling thread, unless a pass is already running. The pass stops early if
+     * the calling thread is interrupted.
+     *
+     * @return number of values purged, or -1 if a pass was already running
+     */
+    public long purge() {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        try {
+            passPurged.set(0);
+            final ZonedDateTime before = ZonedDateTime.now(clock).minus(retention);
+            try (Stream<String> ids = store.deletedIds(before)) {
+                final Iterator<List<String>> partitions = Iterators.partition(ids.iterator(), batchSize);
+                while (partitions.hasNext()) {
+                    final int count = store.purgeAll(partitions.next());
+                    purged.addAndGet(count);
+                    passPurged.addAndGet(count);
+                    batches.incrementAndGet();
+                    if (partitions.hasNext() && !pause()) {
+                        return passPurged.get();
+                    }
+                }
+            }
+            passes.incrementAndGet();
+            lastCompleted = clock.instant();
+            return passPurged.get();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Runs a pass in the background at the given interval, starting now.
+     *
+     * @param interval
+     *            delay between the end of one pass and the start of the next
+     */
+    public void start(final Duration interval) {
+        Preconditions.checkArgument(
+                interval != null && !interval.isNegative() && !interval.isZero(),
+                "interval must be positive");
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                purge();
+            } catch (final RuntimeException e) {
+                LOGGER.error("Unable to purge soft-deleted values of {}", store, e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("retention", retention) //
+                .add("batchSize", batchSize) //
+                .add("purged", purged.get()) //
+                .add("passes", passes.get()) //
+                .toString();
+    }
+
+    private boolean pause() {
+        if (pause.isZero()) {
+            return !Thread.currentThread().isInterrupted();
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.replication;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.arakelian.store.StoreException;
+import com.arakelian.store.event.StoreEvent.Action;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Durable, sequenced log of changes made to a store, which followers in the same or other processes
+ * can tail with a {@link ChangeLogFollower}.
+ *
+ * <p>
+ * The log is a directory of memory-mapped segment files. Each change is assigned the next sequence
+ * number and appended to the current segment; a new segment is started when the current one is
+ * full. Appended changes are immediately visible to followers on the same host, and survive a crash
+ * of the writing process; call {@link #force()} to also make them survive a crash of the host.
+ * </p>
+ *
+ * <p>
+ * There is a single writer per directory. When a log is reopened, the last segment is scanned and
+ * appending continues after its last valid record.
+ * </p>
+ */
+public class ChangeLog implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /** Directory containing segments **/
+    private final Path directory;
+
+    /** Capacity of new segments **/
+    private final int segmentSize;
+
+    /** Segment we are appending to; guarded by this **/
+    private ChangeLogSegment segment;
+
+    /** Sequence of last appended change; guarded by this, but may be read at any time **/
+    private volatile long lastSequence;
+
+    /** True once closed; guarded by this **/
+    private boolean closed;
+
+    public ChangeLog(final Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public ChangeLog(final Path directory, final int segmentSize) {
+        Preconditions.checkArgument(directory != null, "directory must be non-null");
+        Preconditions.checkArgument(segmentSize > ChangeLogSegment.HEADER_SIZE, "segmentSize is too small");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        try {
+            Files.createDirectories(directory);
+            final List<Long> sequences = ChangeLogSegment.list(directory);
+            if (sequences.isEmpty()) {
+                segment = ChangeLogSegment.create(directory, 1, segmentSize);
+                lastSequence = 0;
+            } else {
+                final long first = sequences.get(sequences.size() - 1);
+                segment = ChangeLogSegment.open(directory, first, true);
+                final long[] last = { first - 1 };
+                segment.setLimit(segment.scan(0, (sequence, action, id, value) -> last[0] = sequence));
+                lastSequence = last[0];
+            }
+        } catch (final IOException e) {
+            throw new StoreException("Unable to open change log in " + directory, e);
+        }
+    }
+
+    /**
+     * Appends a change to the log.
+     *
+     * @param action
+     *            type of change
+     * @param id
+     *            id of value that was changed
+     * @param value
+     *            serialized value, or null if the change has no value
+     * @return sequence assigned to change
+     * @throws StoreException
+     *             if the change cannot be appended
+     */
+    public synchronized long append(final Action action, final String id, final byte[] value) {
+        Preconditions.checkArgument(action != null, "action must be non-null");
+        Preconditions.checkArgument(!StringUtils.isEmpty(id), "id must be non-empty");
+        Preconditions.checkState(!closed, "change log is closed");
+
+        final long sequence = lastSequence + 1;
+        final byte[] key = id.getBytes(UTF_8);
+        if (!segment.append(sequence, action, key, value)) {
+            roll(ChangeLogSegment.HEADER_SIZE + key.length + (value != null ? value.length : 0), sequence);
+            segment.append(sequence, action, key, value);
+        }
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            segment.force();
+            segment.close();
+        } catch (final IOException e) {
+            throw new StoreException("Unable to close change log in " + directory, e);
+        }
+    }
+
+    /**
+     * Forces every appended change to disk.
+     */
+    public synchronized void force() {
+        Preconditions.checkState(!closed, "change log is closed");
+        segment.force();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the sequence of the last change appended to the log.
+     *
+     * @return sequence of last change, or zero if none has been appended
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("directory", directory) //
+                .add("lastSequence", lastSequence) //
+                .toString();
+    }
+
+    /**
+     * Deletes segments that contain only changes with a sequence up to and including the given one,
+     * such as the lowest sequence applied by every follower. The current segment is never deleted.
+     *
+     * @param sequence
+     *            sequence of last change that is no longer needed
+     * @return number of segments deleted
+     * @throws StoreException
+     *             if segments cannot be deleted
+     */
+    public synchronized int truncate(final long sequence) {
+        Preconditions.checkState(!closed, "change log is closed");
+        try {
+            final List<Long> sequences = ChangeLogSegment.list(directory);
+            int deleted = 0;
+            for (int i = 0; i < sequences.size() - 1; i++) {
+                // segment ends just before first sequence of next segment
+                if (sequences.get(i + 1) - 1 <= sequence) {
+                    Files.deleteIfExists(ChangeLogSegment.path(directory, sequences.get(i)));
+                    deleted++;
+                }
+            }
+            return deleted;
+        } catch (final IOException e) {
+            throw new StoreException("Unable to truncate change log in " + directory, e);
+        }
+    }
+
+    private void roll(final int length, final long sequence) {
+        try {
+            segment.force();
+            segment.close();
+            segment = ChangeLogSegment.create(directory, sequence, Math.max(segmentSize, length));
+        } catch (final IOException e) {
+            throw new StoreException("Unable to start new segment of change log in " + directory, e);
+        }
+    }
+}
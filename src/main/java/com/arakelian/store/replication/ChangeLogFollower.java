@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.replication;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.arakelian.core.utils.ExecutorUtils;
+import com.arakelian.store.LoadableStore;
+import com.arakelian.store.StoreException;
+import com.arakelian.store.event.StoreEvent.Action;
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.json.StoreObjectMapper;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Tails a {@link ChangeLog} and applies its changes to another store, such as a read replica in
+ * another process.
+ *
+ * <p>
+ * Consecutive puts are applied with a single {@link LoadableStore#loadAll(java.util.Collection,
+ * boolean)}, and consecutive deletes made at the same time with a single
+ * {@link LoadableStore#unloadAll(List, ZonedDateTime, boolean)}, so changes are applied in log
+ * order but in batches of up to {@link #getBatchSize()}. Values keep the timestamps they were given
+ * by the source store, and the changes are not written to the replica's write-ahead log, since
+ * the change log already holds them; listeners of the replica are notified.
+ * </p>
+ *
+ * <p>
+ * After each poll, the sequence of the last applied change is written to a checkpoint file, and a
+ * new follower created with the same checkpoint file resumes after it. Changes applied after the
+ * last checkpoint was written are applied again after a restart, which is harmless: a put stores
+ * the same value again, and unloading an id that is already deleted leaves its tombstone alone.
+ * </p>
+ *
+ * <p>
+ * Polls run on a daemon thread at a fixed delay once {@link #start(Duration)} is called, or can be
+ * run on the calling thread with {@link #poll()}.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class ChangeLogFollower<T extends HasId> implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeLogFollower.class);
+
+    /** Directory containing change log segments **/
+    private final Path directory;
+
+    /** Deserializes values **/
+    private final StoreObjectMapper<T> mapper;
+
+    /** Store that changes are applied to **/
+    private final LoadableStore<T> store;
+
+    /** File containing sequence of last applied change **/
+    private final Path checkpoint;
+
+    /** Maximum number of changes applied at once **/
+    private final int batchSize;
+
+    /** Runs polls in background **/
+    private final ScheduledExecutorService scheduler;
+
+    /** Puts waiting to be applied; guarded by this **/
+    private final List<T> puts = new ArrayList<>();
+
+    /** Deletes waiting to be applied; guarded by this **/
+    private final List<String> deletes = new ArrayList<>();
+
+    /** Time of deletion of deletes waiting to be applied; guarded by this **/
+    private ZonedDateTime deleted;
+
+    /** Number of changes applied **/
+    private final AtomicLong applied = new AtomicLong();
+
+    /** Segment we are reading; guarded by this **/
+    private ChangeLogSegment segment;
+
+    /** Offset of next record in segment; guarded by this **/
+    private int offset;
+
+    /** Sequence of last change read; guarded by this **/
+    private long lastRead;
+
+    /** Sequence of last change applied **/
+    private volatile long lastApplied;
+
+    /** Sequence recorded in checkpoint file; guarded by this **/
+    private long checkpointed;
+
+    public ChangeLogFollower(
+            final Path directory,
+            final StoreObjectMapper<T> mapper,
+            final LoadableStore<T> store,
+            final Path checkpoint) {
+        this(directory, mapper, store, checkpoint, 1000);
+    }
+
+    public ChangeLogFollower(
+            final Path directory,
+            final StoreObjectMapper<T> mapper,
+            final LoadableStore<T> store,
+            final Path checkpoint,
+            final int batchSize) {
+        Preconditions.checkArgument(directory != null, "directory must be non-null");
+        Preconditions.checkArgument(mapper != null, "mapper must be non-null");
+        Preconditions.checkArgument(store != null, "store must be non-null");
+        Preconditions.checkArgument(checkpoint != null, "checkpoint must be non-null");
+        Preconditions.checkArgument(batchSize > 0, "batchSize must be positive");
+        this.directory = directory;
+        this.mapper = mapper;
+        this.store = store;
+        this.checkpoint = checkpoint;
+        this.batchSize = batchSize;
+
+        try {
+            if (Files.exists(checkpoint)) {
+                lastApplied = ByteBuffer.wrap(Files.readAllBytes(checkpoint)).getLong();
+            }
+        } catch (final IOException | RuntimeException e) {
+            throw new StoreException("Unable to read checkpoint " + checkpoint, e);
+        }
+        lastRead = lastApplied;
+        checkpointed = lastApplied;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                ExecutorUtils.newThreadFactory(ChangeLogFollower.class, true));
+    }
+
+    /**
+     * Stops polling, waits for a running poll to finish, and releases the segment being read.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closeSegment();
+        }
+    }
+
+    /**
+     * Returns the number of changes applied since this follower was created.
+     *
+     * @return number of changes applied
+     */
+    public long getAppliedCount() {
+        return applied.get();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Path getCheckpoint() {
+        return checkpoint;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the sequence of the last change applied to the store, which is also the sequence
+     * recorded in the checkpoint file once the current poll completes.
+     *
+     * @return sequence of last applied change, or zero if none has been applied
+     */
+    public long getLastAppliedSequence() {
+        return lastApplied;
+    }
+
+    /**
+     * Applies every change that has been appended to the log since the last poll, and records the
+     * sequence of the last applied change in the checkpoint file.
+     *
+     * @return number of changes applied
+     * @throws StoreException
+     *             if the log cannot be read, a change cannot be applied, or the log no longer
+     *             contains the next change to be applied
+     */
+    public synchronized int poll() {
+        final long start = applied.get();
+        try {
+            if (segment == null && !openSegment()) {
+                return 0;
+            }
+            while (true) {
+                // list before scanning, since writer only starts a segment once previous one is full
+                final Long next = nextSegment();
+                offset = segment.scan(offset, this::visit);
+                if (next == null) {
+                    break;
+                }
+                closeSegment();
+                segment = ChangeLogSegment.open(directory, next, false);
+                offset = 0;
+            }
+            flush();
+        } catch (final IOException e) {
+            discard();
+            throw new StoreException("Unable to read change log in " + directory, e);
+        } catch (final RuntimeException e) {
+            discard();
+            throw e;
+        } finally {
+            writeCheckpoint();
+        }
+        return (int) (applied.get() - start);
+    }
+
+    /**
+     * Starts polling the change log in the background.
+     *
+     * @param interval
+     *            delay between the end of one poll and the start of the next
+     */
+    public void start(final Duration interval) {
+        Preconditions.checkArgument(
+                interval != null && !interval.isNegative() && !interval.isZero(),
+                "interval must be positive");
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (final RuntimeException e) {
+                LOGGER.error("Unable to apply change log {} to {}", directory, store, e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("directory", directory) //
+                .add("checkpoint", checkpoint) //
+                .add("lastApplied", lastApplied) //
+                .toString();
+    }
+
+    private void closeSegment() {
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (final IOException e) {
+                LOGGER.warn("Unable to close {}", segment, e);
+            }
+            segment = null;
+        }
+    }
+
+    /**
+     * Discards changes that were read but not applied, so that the next poll reads them again.
+     */
+    private void discard() {
+        puts.clear();
+        deletes.clear();
+        lastRead = lastApplied;
+        closeSegment();
+    }
+
+    private void flush() {
+        if (!puts.isEmpty()) {
+            store.loadAll(puts, true);
+            applied.addAndGet(puts.size());
+            puts.clear();
+        }
+        if (!deletes.isEmpty()) {
+            store.unloadAll(deletes, deleted, true);
+            applied.addAndGet(deletes.size());
+            deletes.clear();
+        }
+        lastApplied = lastRead;
+    }
+
+    private Long nextSegment() throws IOException {
+        for (final Long first : ChangeLogSegment.list(directory)) {
+            if (first > segment.getFirstSequence()) {
+                return first;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens the segment containing the change after the last one applied.
+     *
+     * @return false if the log has no segments yet
+     */
+    private boolean openSegment() throws IOException {
+        final List<Long> sequences = ChangeLogSegment.list(directory);
+        if (sequences.isEmpty()) {
+            return false;
+        }
+        final long next = lastApplied + 1;
+        if (sequences.get(0) > next) {
+            throw new StoreException("Change log in " + directory + " no longer contains sequence " + next);
+        }
+        long first = sequences.get(0);
+        for (final Long sequence : sequences) {
+            if (sequence <= next) {
+                first = sequence;
+            }
+        }
+        segment = ChangeLogSegment.open(directory, first, false);
+        offset = 0;
+        return true;
+    }
+
+    private void visit(final long sequence, final Action action, final String id, final byte[] value)
+            throws IOException {
+        if (sequence <= lastRead) {
+            // already applied before we resumed
+            return;
+        }
+        if (action == Action.PUT) {
+            if (!deletes.isEmpty()) {
+                flush();
+            }
+            puts.add(mapper.readValue(value));
+        } else {
+            final ZonedDateTime time = ChangeLogSegment.decodeTime(value);
+            if (!puts.isEmpty() || (!deletes.isEmpty() && !time.equals(deleted))) {
+                flush();
+            }
+            deletes.add(id);
+            deleted = time;
+        }
+        lastRead = sequence;
+        if (puts.size() + deletes.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    private void writeCheckpoint() {
+        if (checkpointed == lastApplied) {
+            return;
+        }
+        final Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try {
+            Files.write(temp, ByteBuffer.allocate(Long.BYTES).putLong(lastApplied).array());
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointed = lastApplied;
+        } catch (final IOException e) {
+            throw new StoreException("Unable to write checkpoint " + checkpoint, e);
+        }
+    }
+}
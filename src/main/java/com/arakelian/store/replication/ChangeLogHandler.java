@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.replication;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import com.arakelian.store.event.AbstractStoreEventHandler;
+import com.arakelian.store.event.StoreEvent;
+import com.arakelian.store.event.StoreEvent.Action;
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.json.StoreObjectMapper;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Handler that appends every {@link StoreEvent} to a {@link ChangeLog}, so that followers can
+ * replicate the store. Puts are logged with their serialized value, and deletes with the time at
+ * which the batch of events containing them was handled, which followers record as the time of
+ * deletion.
+ *
+ * <p>
+ * The handler runs on the thread of its {@link com.arakelian.store.event.StoreEventPublisher}, off
+ * the write path of the store. When <code>force</code> is true, the log is forced to disk at the end
+ * of each batch of events, so that the cost of forcing is shared by every event in the batch.
+ * </p>
+ *
+ * <p>
+ * Changes are logged in the order in which they are published, not the order in which the store
+ * applied them: a store notifies its listeners after a change is applied, outside of any lock, so
+ * two threads writing the same id at once may be logged in the opposite order to the one that won
+ * in the store. Applications that replicate a store must therefore have at most one writer for
+ * each id at a time. Likewise, a put is serialized when it is handled, not when it was made, so
+ * values must not be modified after they have been put.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class ChangeLogHandler<T extends HasId> extends AbstractStoreEventHandler<T> {
+    /** Log that events are appended to **/
+    private final ChangeLog changeLog;
+
+    /** Serializes values **/
+    private final StoreObjectMapper<T> mapper;
+
+    /** True if log is forced at end of each batch **/
+    private final boolean force;
+
+    /** Time of deletion of current batch, or null if not yet assigned **/
+    private byte[] batchTime;
+
+    public ChangeLogHandler(final ChangeLog changeLog, final StoreObjectMapper<T> mapper) {
+        this(changeLog, mapper, false);
+    }
+
+    public ChangeLogHandler(
+            final ChangeLog changeLog,
+            final StoreObjectMapper<T> mapper,
+            final boolean force) {
+        Preconditions.checkArgument(changeLog != null, "changeLog must be non-null");
+        Preconditions.checkArgument(mapper != null, "mapper must be non-null");
+        this.changeLog = changeLog;
+        this.mapper = mapper;
+        this.force = force;
+    }
+
+    public ChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    public boolean isForce() {
+        return force;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("changeLog", changeLog) //
+                .add("force", force) //
+                .toString();
+    }
+
+    @Override
+    protected void handle(final StoreEvent<T> event, final long sequence, final boolean endOfBatch)
+            throws Exception {
+        final Action action = event.getAction();
+        if (action == Action.PUT) {
+            final T value = event.getValue();
+            changeLog.append(action, value.getId(), mapper.writeValueAsBytes(value));
+        } else if (action == Action.DELETE) {
+            // reading the clock once per batch lets followers apply consecutive deletes together
+            if (batchTime == null) {
+                batchTime = ChangeLogSegment.encodeTime(ZonedDateTime.now(ZoneOffset.UTC));
+            }
+            changeLog.append(action, event.getId(), batchTime);
+        }
+        if (endOfBatch) {
+            batchTime = null;
+            if (force) {
+                changeLog.force();
+            }
+        }
+    }
+}
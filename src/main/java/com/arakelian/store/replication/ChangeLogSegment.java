@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.replication;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.arakelian.store.event.StoreEvent.Action;
+import com.google.common.base.MoreObjects;
+
+/**
+ * Memory-mapped segment file of a {@link ChangeLog}. Segments are named after the sequence of their
+ * first record, and are pre-sized to their capacity so that followers in other processes can map
+ * them once and see records as soon as they are appended.
+ *
+ * <p>
+ * Each record is laid out as:
+ * </p>
+ *
+ * <pre>
+ * crc32 (int) | sequence (long) | action (byte) | id length (int) | value length (int, -1 if none)
+ *     | id | value
+ * </pre>
+ *
+ * <p>
+ * The value of a put is the serialized value, and the value of a delete is the time of deletion,
+ * encoded as epoch seconds (long) and nanoseconds (int).
+ * </p>
+ *
+ * <p>
+ * The checksum covers everything after itself. A scan stops at the first record whose checksum
+ * does not match, which is either unused space at the end of the segment, a record that is still
+ * being written, or a record that was partially written when the writer died.
+ * </p>
+ */
+class ChangeLogSegment implements Closeable {
+    /** Receives records found while scanning a segment **/
+    @FunctionalInterface
+    interface RecordVisitor {
+        public void visit(long sequence, Action action, String id, byte[] value) throws IOException;
+    }
+
+    static final int HEADER_SIZE = 21;
+
+    static final String SUFFIX = ".changelog";
+
+    static ChangeLogSegment create(final Path directory, final long firstSequence, final int capacity)
+            throws IOException {
+        // map before file is visible, so that followers never see a file shorter than its capacity
+        final Path path = path(directory, firstSequence);
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        final FileChannel channel = FileChannel.open(
+                temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            final MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, capacity);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+            return new ChangeLogSegment(firstSequence, channel, buffer);
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the first sequence of every segment in the given directory, in ascending order.
+     *
+     * @param directory
+     *            change log directory
+     * @return first sequence of every segment
+     * @throws IOException
+     *             if the directory cannot be listed
+     */
+    static List<Long> list(final Path directory) throws IOException {
+        final List<Long> sequences = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (final Path path : stream) {
+                final String name = path.getFileName().toString();
+                sequences.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+
+    static ChangeLogSegment open(final Path directory, final long firstSequence, final boolean writable)
+            throws IOException {
+        final Path path = path(directory, firstSequence);
+        final FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final MapMode mode = writable ? MapMode.READ_WRITE : MapMode.READ_ONLY;
+            return new ChangeLogSegment(firstSequence, channel, channel.map(mode, 0, channel.size()));
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static ZonedDateTime decodeTime(final byte[] value) {
+        final ByteBuffer buf = ByteBuffer.wrap(value);
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(buf.getLong(), buf.getInt()), ZoneOffset.UTC);
+    }
+
+    static byte[] encodeTime(final ZonedDateTime time) {
+        final Instant instant = time.toInstant();
+        return ByteBuffer.allocate(Long.BYTES + Integer.BYTES) //
+                .putLong(instant.getEpochSecond()) //
+                .putInt(instant.getNano()) //
+                .array();
+    }
+
+    static Path path(final Path directory, final long firstSequence) {
+        return directory.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+    }
+
+    /** Sequence of first record **/
+    private final long firstSequence;
+
+    /** File channel **/
+    private final FileChannel channel;
+
+    /** Memory-mapped contents **/
+    private final MappedByteBuffer buffer;
+
+    /** Offset at which next record is appended; only used by the single writer **/
+    private int limit;
+
+    private ChangeLogSegment(
+            final long firstSequence,
+            final FileChannel channel,
+            final MappedByteBuffer buffer) {
+        this.firstSequence = firstSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Appends a record to the segment.
+     *
+     * @return false if the segment does not have room for the record
+     */
+    boolean append(final long sequence, final Action action, final byte[] id, final byte[] value) {
+        final int length = HEADER_SIZE + id.length + (value != null ? value.length : 0);
+        if (buffer.capacity() - limit < length) {
+            return false;
+        }
+
+        // checksum is written last, so that a follower never sees a valid partial record
+        final ByteBuffer buf = buffer.duplicate();
+        buf.position(limit + Integer.BYTES);
+        buf.putLong(sequence);
+        buf.put((byte) action.ordinal());
+        buf.putInt(id.length);
+        buf.putInt(value != null ? value.length : -1);
+        buf.put(id);
+        if (value != null) {
+            buf.put(value);
+        }
+        final CRC32 crc = new CRC32();
+        buf.position(limit + Integer.BYTES).limit(limit + length);
+        crc.update(buf);
+        buffer.putInt(limit, (int) crc.getValue());
+        limit += length;
+        return true;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Visits every valid record starting at the given offset.
+     *
+     * @param offset
+     *            offset of first record to visit
+     * @param visitor
+     *            receives each record
+     * @return offset after the last valid record
+     * @throws IOException
+     *             if visitor throws an exception
+     */
+    int scan(final int offset, final RecordVisitor visitor) throws IOException {
+        final ByteBuffer buf = buffer.duplicate();
+        final int end = buf.capacity();
+        final CRC32 crc = new CRC32();
+        final Action[] actions = Action.values();
+
+        int position = offset;
+        while (end - position >= HEADER_SIZE) {
+            final int checksum = buf.getInt(position);
+            final long sequence = buf.getLong(position + 4);
+            final int action = buf.get(position + 12);
+            final int idLength = buf.getInt(position + 13);
+            final int valueLength = buf.getInt(position + 17);
+            if (idLength <= 0 || valueLength < -1 || action < 0 || action >= actions.length) {
+                break;
+            }
+            final long length = (long) HEADER_SIZE + idLength + Math.max(valueLength, 0);
+            if (length > end - position) {
+                break;
+            }
+
+            crc.reset();
+            final ByteBuffer slice = buf.duplicate();
+            slice.position(position + Integer.BYTES).limit(position + (int) length);
+            crc.update(slice);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            final byte[] id = new byte[idLength];
+            buf.position(position + HEADER_SIZE);
+            buf.get(id);
+            byte[] value = null;
+            if (valueLength != -1) {
+                value = new byte[valueLength];
+                buf.get(value);
+            }
+            visitor.visit(sequence, actions[action], new String(id, UTF_8), value);
+            position += (int) length;
+        }
+        return position;
+    }
+
+    void setLimit(final int limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("firstSequence", firstSequence) //
+                .add("limit", limit) //
+                .toString();
+    }
+}
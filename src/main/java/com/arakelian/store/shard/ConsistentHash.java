@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.shard;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Immutable consistent hash ring that maps ids to named nodes.
+ *
+ * <p>
+ * Each node is placed on the ring at a number of pseudo-random points, and an id belongs to the
+ * node at the first point at or after the hash of the id. Adding a node therefore only moves the
+ * ids that now belong to the new node, roughly <code>1 / size()</code> of them, and the virtual
+ * points keep the share of each node close to even.
+ * </p>
+ *
+ * @param <N>
+ *            type of node
+ */
+public final class ConsistentHash<N> {
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private static long hash(final String value) {
+        return HASH.hashString(value, UTF_8).asLong();
+    }
+
+    /**
+     * Returns an empty ring.
+     *
+     * @param virtualNodes
+     *            number of points at which each node is placed on the ring
+     * @param <N>
+     *            type of node
+     * @return empty ring
+     */
+    public static <N> ConsistentHash<N> of(final int virtualNodes) {
+        Preconditions.checkArgument(virtualNodes > 0, "virtualNodes must be positive");
+        return new ConsistentHash<>(virtualNodes, Collections.emptyMap(), new long[0], new Object[0]);
+    }
+
+    /** Number of points per node **/
+    private final int virtualNodes;
+
+    /** Nodes by name, in the order they were added **/
+    private final Map<String, N> nodes;
+
+    /** Sorted points on the ring **/
+    private final long[] points;
+
+    /** Node at each point **/
+    private final Object[] owners;
+
+    private ConsistentHash(
+            final int virtualNodes,
+            final Map<String, N> nodes,
+            final long[] points,
+            final Object[] owners) {
+        this.virtualNodes = virtualNodes;
+        this.nodes = nodes;
+        this.points = points;
+        this.owners = owners;
+    }
+
+    /**
+     * Returns the node that the given id belongs to.
+     *
+     * @param id
+     *            an id
+     * @return node that id belongs to
+     * @throws IllegalStateException
+     *             if the ring is empty
+     */
+    @SuppressWarnings("unchecked")
+    public N get(final String id) {
+        Preconditions.checkState(points.length != 0, "ring has no nodes");
+        int index = Arrays.binarySearch(points, hash(id));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return (N) owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * Returns the nodes of this ring by name, in the order that they were added.
+     *
+     * @return nodes by name
+     */
+    public Map<String, N> getNodes() {
+        return nodes;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("nodes", nodes.keySet()) //
+                .add("virtualNodes", virtualNodes) //
+                .toString();
+    }
+
+    /**
+     * Returns a new ring that contains the nodes of this ring and the given node.
+     *
+     * @param name
+     *            unique name of node, which determines where it is placed on the ring
+     * @param node
+     *            node to add
+     * @return new ring
+     */
+    public ConsistentHash<N> with(final String name, final N node) {
+        Preconditions.checkArgument(!StringUtils.isEmpty(name), "name must be non-empty");
+        Preconditions.checkArgument(node != null, "node must be non-null");
+        Preconditions.checkArgument(!nodes.containsKey(name), "ring already contains %s", name);
+
+        final Map<String, N> added = new LinkedHashMap<>(nodes);
+        added.put(name, node);
+
+        // collect points of every node, and sort them along with their owners
+        final int size = added.size() * virtualNodes;
+        final long[] hashes = new long[size];
+        final Object[] nodeAt = new Object[size];
+        final Integer[] order = new Integer[size];
+        int i = 0;
+        for (final Map.Entry<String, N> entry : added.entrySet()) {
+            for (int v = 0; v < virtualNodes; v++, i++) {
+                hashes[i] = hash(entry.getKey() + "#" + v);
+                nodeAt[i] = entry.getValue();
+                order[i] = i;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+
+        final long[] sortedPoints = new long[size];
+        final Object[] sortedOwners = new Object[size];
+        for (i = 0; i < size; i++) {
+            sortedPoints[i] = hashes[order[i]];
+            sortedOwners[i] = nodeAt[order[i]];
+        }
+        return new ConsistentHash<>(virtualNodes, Collections.unmodifiableMap(added), sortedPoints,
+                sortedOwners);
+    }
+}
@@ -0,0 +1,677 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.arakelian.store.MutableStore;
+import com.arakelian.store.ScannableStore;
+import com.arakelian.store.StoreConfig;
+import com.arakelian.store.StoreException;
+import com.arakelian.store.event.StoreListener;
+import com.arakelian.store.feature.HasId;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * {@link MutableStore} that partitions ids across several underlying stores, called shards, using
+ * a {@link ConsistentHash}.
+ *
+ * <p>
+ * Bulk operations group their ids by shard and call each shard once, concurrently on
+ * {@link StoreConfig#getExecutor()} if one is configured, with the calling thread serving one of the
+ * shards itself. Results of {@link #getAll(Collection)} are returned in the order of the requested
+ * ids. Listeners of {@link StoreConfig#getListeners()} are notified once per operation on this
+ * store, regardless of how many shards it touched, so shards should not have listeners of their
+ * own.
+ * </p>
+ *
+ * <p>
+ * Shards can be added with {@link #addShard(String, MutableStore)} while the store is in use. The
+ * ids that now belong to the new shard are moved to it in batches; until an id has been moved,
+ * reads fall back to its previous shard, and writes go to the new shard under a striped lock so
+ * that the move never overwrites a newer value. Moving ids requires that every existing shard is a
+ * {@link ScannableStore}. Moved values are deleted from their previous shard, which leaves a
+ * tombstone behind in shards that use soft deletes.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class ShardedStore<T extends HasId> implements MutableStore<T> {
+    /** Ring that routes ids, and the ring that ids are being moved away from, if any **/
+    private static final class Routing<T extends HasId> {
+        private final ConsistentHash<MutableStore<T>> current;
+        private final ConsistentHash<MutableStore<T>> previous;
+
+        private Routing(
+                final ConsistentHash<MutableStore<T>> current,
+                final ConsistentHash<MutableStore<T>> previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+
+        /**
+         * Returns the shard that the given id is being moved away from, if any.
+         */
+        private MutableStore<T> previousOwner(final String id, final MutableStore<T> owner) {
+            if (previous == null) {
+                return null;
+            }
+            final MutableStore<T> shard = previous.get(id);
+            return shard != owner ? shard : null;
+        }
+    }
+
+    public static final int DEFAULT_REBALANCE_BATCH_SIZE = 1000;
+
+    private static final int STRIPES = 1024;
+
+    private static <K, S> Map<S, List<K>> group(final List<K> items, final Function<K, S> shardOf) {
+        final Map<S, List<K>> groups = new LinkedHashMap<>();
+        for (final K item : items) {
+            groups.computeIfAbsent(shardOf.apply(item), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    /** Store configuration, which provides listeners and executor **/
+    protected final StoreConfig<T> config;
+
+    /** Number of ids moved at once while rebalancing **/
+    private final int rebalanceBatchSize;
+
+    /** Writers hold a read lock; changing the routing takes the write lock **/
+    private final StampedLock lock = new StampedLock();
+
+    /** Orders writes and moves of ids that are being moved between shards **/
+    private final Striped<Lock> stripes = Striped.lock(STRIPES);
+
+    /** Number of values moved between shards **/
+    private final AtomicLong moved = new AtomicLong();
+
+    /** Current routing; only replaced while holding write lock **/
+    private volatile Routing<T> routing;
+
+    public ShardedStore(final StoreConfig<T> config, final Map<String, ? extends MutableStore<T>> shards) {
+        this(config, shards, ConsistentHash.DEFAULT_VIRTUAL_NODES, DEFAULT_REBALANCE_BATCH_SIZE);
+    }
+
+    public ShardedStore(
+            final StoreConfig<T> config,
+            final Map<String, ? extends MutableStore<T>> shards,
+            final int virtualNodes,
+            final int rebalanceBatchSize) {
+        Preconditions.checkArgument(config != null, "config must be non-null");
+        Preconditions.checkArgument(shards != null && shards.size() != 0, "shards must be non-empty");
+        Preconditions.checkArgument(rebalanceBatchSize > 0, "rebalanceBatchSize must be positive");
+        this.config = config;
+        this.rebalanceBatchSize = rebalanceBatchSize;
+
+        ConsistentHash<MutableStore<T>> ring = ConsistentHash.of(virtualNodes);
+        for (final Map.Entry<String, ? extends MutableStore<T>> shard : shards.entrySet()) {
+            ring = ring.with(shard.getKey(), shard.getValue());
+        }
+        this.routing = new Routing<>(ring, null);
+    }
+
+    /**
+     * Adds a shard, and moves the ids that now belong to it from the existing shards. The store
+     * remains available to other threads while ids are moved; this method returns once they have
+     * been. If moving fails, reads keep falling back to the previous shards, and
+     * {@link #rebalance()} can be called to finish moving.
+     *
+     * @param name
+     *            unique name of shard, which determines the ids that belong to it
+     * @param shard
+     *            shard to add, which should be empty
+     * @return number of values moved to the new shard
+     * @throws StoreException
+     *             if an existing shard cannot be scanned, or values cannot be moved
+     */
+    public synchronized long addShard(final String name, final MutableStore<T> shard) {
+        Preconditions.checkArgument(shard != null, "shard must be non-null");
+        Preconditions.checkState(routing.previous == null, "a previous rebalance has not finished");
+        final ConsistentHash<MutableStore<T>> current = routing.current;
+        for (final Map.Entry<String, MutableStore<T>> existing : current.getNodes().entrySet()) {
+            if (!(existing.getValue() instanceof ScannableStore)) {
+                throw new StoreException("Shard " + existing.getKey() + " cannot be scanned for rebalancing");
+            }
+        }
+
+        setRouting(new Routing<>(current.with(name, shard), current));
+        return rebalance();
+    }
+
+    @Override
+    public void delete(final String id) {
+        if (StringUtils.isEmpty(id)) {
+            return;
+        }
+        write(id, (owner, previous) -> {
+            owner.delete(id);
+            if (previous != null) {
+                previous.delete(id);
+            }
+        });
+        for (final StoreListener<T> listener : config.getListeners()) {
+            listener.delete(id);
+        }
+    }
+
+    @Override
+    public void delete(final T value) {
+        if (value == null || StringUtils.isEmpty(value.getId())) {
+            return;
+        }
+        write(value.getId(), (owner, previous) -> {
+            owner.delete(value);
+            if (previous != null) {
+                previous.delete(value);
+            }
+        });
+        for (final StoreListener<T> listener : config.getListeners()) {
+            listener.delete(value);
+        }
+    }
+
+    @Override
+    public void deleteAll(final Collection<T> values) {
+        if (values == null || values.size() == 0) {
+            return;
+        }
+        final List<T> list = new ArrayList<>(values.size());
+        for (final T value : values) {
+            if (value != null && !StringUtils.isEmpty(value.getId())) {
+                list.add(value);
+            }
+        }
+        if (list.size() == 0) {
+            return;
+        }
+
+        writeAll(list, HasId::getId, (shard, group) -> shard.deleteAll(group));
+        for (final StoreListener<T> listener : config.getListeners()) {
+            listener.deleteAllValues(list);
+        }
+    }
+
+    @Override
+    public void deleteAll(final String... ids) {
+        if (ids == null || ids.length == 0) {
+            return;
+        }
+        final List<String> list = new ArrayList<>(ids.length);
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id)) {
+                list.add(id);
+            }
+        }
+        if (list.size() == 0) {
+            return;
+        }
+
+        writeAll(list, id -> id, (shard, group) -> shard.deleteAll(group.toArray(new String[group.size()])));
+        for (final StoreListener<T> listener : config.getListeners()) {
+            listener.deleteAllIds(list);
+        }
+    }
+
+    @Override
+    public T get(final String id) {
+        if (StringUtils.isEmpty(id)) {
+            return null;
+        }
+        return read(routing -> get(routing, id));
+    }
+
+    @Override
+    public List<T> getAll(final Collection<String> ids) {
+        if (ids == null || ids.size() == 0) {
+            return Collections.<T> emptyList();
+        }
+        final List<String> list = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id)) {
+                list.add(id);
+            }
+        }
+        if (list.size() == 0) {
+            return Collections.<T> emptyList();
+        }
+        return read(routing -> getAll(routing, list));
+    }
+
+    @Override
+    public List<T> getAll(final String... ids) {
+        if (ids == null || ids.length == 0) {
+            return Collections.<T> emptyList();
+        }
+        return getAll(Arrays.asList(ids));
+    }
+
+    /**
+     * Returns the number of values moved between shards since this store was created.
+     *
+     * @return number of values moved between shards
+     */
+    public long getMovedCount() {
+        return moved.get();
+    }
+
+    /**
+     * Returns the shards of this store by name, in the order that they were added.
+     *
+     * @return shards by name
+     */
+    public Map<String, MutableStore<T>> getShards() {
+        return routing.current.getNodes();
+    }
+
+    /**
+     * Returns true if ids are being moved to a new shard, or if moving them did not finish.
+     *
+     * @return true if ids are being moved to a new shard
+     */
+    public boolean isRebalancing() {
+        return routing.previous != null;
+    }
+
+    @Override
+    public void put(final T value) {
+        if (value == null) {
+            return;
+        }
+        final String id = value.getId();
+        if (StringUtils.isEmpty(id)) {
+            throw new StoreException("Id not specified for " + value);
+        }
+        write(id, (owner, previous) -> owner.put(value));
+        for (final StoreListener<T> listener : config.getListeners()) {
+            listener.put(value);
+        }
+    }
+
+    @Override
+    public void putAll(final Collection<T> values) {
+        if (values == null || values.size() == 0) {
+            return;
+        }
+
+        // make sure every bean has an id before we store any of them
+        final List<T> list = new ArrayList<>(values.size());
+        for (final T value : values) {
+            if (value != null) {
+                if (StringUtils.isEmpty(value.getId())) {
+                    throw new StoreException("Id not specified for " + value);
+                }
+                list.add(value);
+            }
+        }
+        if (list.size() == 0) {
+            return;
+        }
+
+        final long stamp = lock.readLock();
+        try {
+            final Routing<T> r = routing;
+            final Map<MutableStore<T>, List<T>> groups = group(list, value -> r.current.get(value.getId()));
+            withStripes(moving(r, list, HasId::getId), () -> fanOut(groups, (shard, group) -> {
+                shard.putAll(group);
+                return null;
+            }));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        for (final StoreListener<T> listener : config.getListeners()) {
+            listener.putAll(list);
+        }
+    }
+
+    @Override
+    public void putAll(final T[] values) {
+        if (values == null || values.length == 0) {
+            return;
+        }
+        putAll(Arrays.asList(values));
+    }
+
+    /**
+     * Moves ids that belong to a different shard than they did before the last shard was added,
+     * and stops reads from falling back to the previous shards once every id has been moved. This
+     * only needs to be called if {@link #addShard(String, MutableStore)} failed.
+     *
+     * @return number of values moved
+     * @throws StoreException
+     *             if values cannot be moved
+     */
+    public synchronized long rebalance() {
+        final Routing<T> r = routing;
+        if (r.previous == null) {
+            return 0;
+        }
+
+        long count = 0;
+        for (final MutableStore<T> source : r.previous.getNodes().values()) {
+            try (Stream<String> ids = ((ScannableStore<T>) source).ids()) {
+                final Iterator<List<String>> batches = Iterators
+                        .partition(ids.iterator(), rebalanceBatchSize);
+                while (batches.hasNext()) {
+                    count += move(r, source, batches.next());
+                }
+            }
+        }
+
+        setRouting(new Routing<>(r.current, null));
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("shards", routing.current.getNodes().keySet()) //
+                .add("rebalancing", isRebalancing()) //
+                .toString();
+    }
+
+    /**
+     * Applies a function to each group on the shard it belongs to, concurrently if an executor is
+     * configured. The first failure is rethrown once every shard has finished.
+     */
+    private <K, R> List<R> fanOut(
+            final Map<MutableStore<T>, List<K>> groups,
+            final BiFunction<MutableStore<T>, List<K>, R> function) {
+        final List<R> results = new ArrayList<>(groups.size());
+        final Executor executor = config.getExecutor();
+        if (executor == null || groups.size() <= 1) {
+            for (final Map.Entry<MutableStore<T>, List<K>> group : groups.entrySet()) {
+                results.add(function.apply(group.getKey(), group.getValue()));
+            }
+            return results;
+        }
+
+        final Iterator<Map.Entry<MutableStore<T>, List<K>>> it = groups.entrySet().iterator();
+        final Map.Entry<MutableStore<T>, List<K>> first = it.next();
+        final List<CompletableFuture<R>> futures = new ArrayList<>(groups.size() - 1);
+        while (it.hasNext()) {
+            final Map.Entry<MutableStore<T>, List<K>> group = it.next();
+            futures.add(CompletableFuture
+                    .supplyAsync(() -> function.apply(group.getKey(), group.getValue()), executor));
+        }
+
+        // calling thread serves first shard rather than waiting idle
+        RuntimeException failure = null;
+        try {
+            results.add(function.apply(first.getKey(), first.getValue()));
+        } catch (final RuntimeException e) {
+            failure = e;
+        }
+        for (final CompletableFuture<R> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (final CompletionException e) {
+                final RuntimeException cause = e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause()
+                        : new StoreException(e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    private T get(final Routing<T> r, final String id) {
+        final MutableStore<T> owner = r.current.get(id);
+        T value = owner.get(id);
+        if (value == null) {
+            final MutableStore<T> previous = r.previousOwner(id, owner);
+            if (previous != null) {
+                // value may not have been moved yet, or may be moved while we look for it
+                value = previous.get(id);
+                if (value == null) {
+                    value = owner.get(id);
+                }
+            }
+        }
+        return value;
+    }
+
+    private List<T> getAll(final Routing<T> r, final List<String> ids) {
+        final Map<String, T> found = new HashMap<>();
+        getAll(group(ids, r.current::get), found);
+
+        if (r.previous != null) {
+            // values may not have been moved yet, or may be moved while we look for them
+            final List<String> missing = missing(ids, found, id -> r.previousOwner(id, r.current.get(id)));
+            if (missing.size() != 0) {
+                getAll(group(missing, r.previous::get), found);
+                getAll(group(missing(missing, found, id -> id), r.current::get), found);
+            }
+        }
+
+        // reassemble in order of ids
+        final List<T> result = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            final T value = found.get(id);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    private void getAll(final Map<MutableStore<T>, List<String>> groups, final Map<String, T> found) {
+        for (final List<T> values : fanOut(groups, (shard, group) -> shard.getAll(group))) {
+            for (final T value : values) {
+                found.put(value.getId(), value);
+            }
+        }
+    }
+
+    private List<String> missing(
+            final List<String> ids,
+            final Map<String, T> found,
+            final Function<String, Object> filter) {
+        final List<String> missing = new ArrayList<>();
+        for (final String id : ids) {
+            if (!found.containsKey(id) && filter.apply(id) != null) {
+                missing.add(id);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Copies values that are not yet in their new shard from the given source shard, and then
+     * deletes them from the source.
+     */
+    private long move(final Routing<T> r, final MutableStore<T> source, final List<String> ids) {
+        final List<String> moving = new ArrayList<>();
+        for (final String id : ids) {
+            if (r.current.get(id) != source) {
+                moving.add(id);
+            }
+        }
+        if (moving.size() == 0) {
+            return 0;
+        }
+
+        final long count = withStripes(moving, () -> {
+            long copied = 0;
+            for (final Map.Entry<MutableStore<T>, List<String>> group : group(moving, r.current::get)
+                    .entrySet()) {
+                // a value that was written since the move started is newer than the one we have
+                final MutableStore<T> target = group.getKey();
+                final Map<String, T> present = new HashMap<>();
+                for (final T value : target.getAll(group.getValue())) {
+                    present.put(value.getId(), value);
+                }
+                final List<T> values = source.getAll(missing(group.getValue(), present, id -> id));
+                target.putAll(values);
+                copied += values.size();
+            }
+            return copied;
+        });
+        source.deleteAll(moving.toArray(new String[moving.size()]));
+        moved.addAndGet(count);
+        return count;
+    }
+
+    private <K> List<String> moving(final Routing<T> r, final List<K> items, final Function<K, String> idOf) {
+        if (r.previous == null) {
+            return Collections.emptyList();
+        }
+        final List<String> ids = new ArrayList<>();
+        for (final K item : items) {
+            final String id = idOf.apply(item);
+            if (r.previousOwner(id, r.current.get(id)) != null) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Reads with the current routing, and reads again if a shard was added while we were reading.
+     */
+    private <R> R read(final Function<Routing<T>, R> reader) {
+        final long optimistic = lock.tryOptimisticRead();
+        final R result = reader.apply(routing);
+        if (lock.validate(optimistic)) {
+            return result;
+        }
+        final long stamp = lock.readLock();
+        try {
+            return reader.apply(routing);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void setRouting(final Routing<T> routing) {
+        final long stamp = lock.writeLock();
+        try {
+            this.routing = routing;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private <R> R withStripes(final List<String> ids, final Supplier<R> action) {
+        if (ids.size() == 0) {
+            return action.get();
+        }
+
+        // stripes are returned in a consistent order, so that writers never deadlock
+        final List<Lock> locks = Lists.newArrayList(stripes.bulkGet(ids));
+        int locked = 0;
+        try {
+            for (final Lock stripe : locks) {
+                stripe.lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies a change to a single id on its shard, and to its previous shard if it is being moved.
+     */
+    private void write(final String id, final BiConsumer<MutableStore<T>, MutableStore<T>> change) {
+        final long stamp = lock.readLock();
+        try {
+            final Routing<T> r = routing;
+            final MutableStore<T> owner = r.current.get(id);
+            final MutableStore<T> previous = r.previousOwner(id, owner);
+            if (previous == null) {
+                change.accept(owner, null);
+            } else {
+                withStripes(Collections.singletonList(id), () -> {
+                    change.accept(owner, previous);
+                    return null;
+                });
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Applies a bulk change to the shard of each item, and to the previous shard of items that are
+     * being moved.
+     */
+    private <K> void writeAll(
+            final List<K> items,
+            final Function<K, String> idOf,
+            final BiConsumer<MutableStore<T>, List<K>> change) {
+        final long stamp = lock.readLock();
+        try {
+            final Routing<T> r = routing;
+            final Map<MutableStore<T>, List<K>> groups = new LinkedHashMap<>();
+            for (final K item : items) {
+                final String id = idOf.apply(item);
+                final MutableStore<T> owner = r.current.get(id);
+                groups.computeIfAbsent(owner, shard -> new ArrayList<>()).add(item);
+                final MutableStore<T> previous = r.previousOwner(id, owner);
+                if (previous != null) {
+                    groups.computeIfAbsent(previous, shard -> new ArrayList<>()).add(item);
+                }
+            }
+            withStripes(moving(r, items, idOf), () -> fanOut(groups, (shard, group) -> {
+                change.accept(shard, group);
+                return null;
+            }));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import com.arakelian.store.LoadableStore;
+import com.arakelian.store.StoreException;
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.json.StoreObjectMapper;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Restores a snapshot file written by {@link SnapshotWriter}.
+ *
+ * <p>
+ * The file is read sequentially on the calling thread, while blocks are verified and decoded
+ * concurrently on an executor, and each decoded block is applied with a single batched load. At most
+ * {@link #getMaxBlocksInFlight()} blocks are held in memory at once. Blocks may be applied in any
+ * order, which is safe because a snapshot contains each id at most once.
+ * </p>
+ *
+ * <p>
+ * The default executor is the common fork-join pool, which suits stores whose puts do not block;
+ * supply a dedicated executor when restoring into a store that writes to disk.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class SnapshotReader<T extends HasId> {
+    /** Deserializes values **/
+    private final StoreObjectMapper<T> mapper;
+
+    /** Executor that blocks are decoded and applied on **/
+    private final Executor executor;
+
+    /** Maximum number of blocks held in memory at once **/
+    private final int maxBlocksInFlight;
+
+    public SnapshotReader(final StoreObjectMapper<T> mapper) {
+        this(mapper, ForkJoinPool.commonPool(), 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public SnapshotReader(
+            final StoreObjectMapper<T> mapper,
+            final Executor executor,
+            final int maxBlocksInFlight) {
+        Preconditions.checkArgument(mapper != null, "mapper must be non-null");
+        Preconditions.checkArgument(executor != null, "executor must be non-null");
+        Preconditions.checkArgument(maxBlocksInFlight > 0, "maxBlocksInFlight must be positive");
+        this.mapper = mapper;
+        this.executor = executor;
+        this.maxBlocksInFlight = maxBlocksInFlight;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public StoreObjectMapper<T> getMapper() {
+        return mapper;
+    }
+
+    public int getMaxBlocksInFlight() {
+        return maxBlocksInFlight;
+    }
+
+    /**
+     * Reads the snapshot at the given path, passing the values of each block to the given consumer.
+     * The consumer is called concurrently from the executor, and must be thread-safe. It is no longer
+     * called once this method returns or throws.
+     *
+     * @param path
+     *            snapshot file
+     * @param consumer
+     *            receives the values of each block
+     * @return number of values read
+     * @throws StoreException
+     *             if the snapshot cannot be read, is truncated, or is corrupt
+     */
+    public long read(final Path path, final Consumer<List<T>> consumer) {
+        Preconditions.checkArgument(path != null, "path must be non-null");
+        Preconditions.checkArgument(consumer != null, "consumer must be non-null");
+
+        final Semaphore permits = new Semaphore(maxBlocksInFlight);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicLong read = new AtomicLong();
+        boolean drained = false;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (in.readInt() != SnapshotWriter.MAGIC) {
+                throw new StoreException(path + " is not a snapshot");
+            }
+            final byte version = in.readByte();
+            if (version != SnapshotWriter.VERSION) {
+                throw new StoreException("Unsupported version " + version + " of snapshot " + path);
+            }
+
+            // header fields are checked against size of file before anything is allocated, so
+            // that a corrupt header cannot cause a huge allocation
+            final long size = Files.size(path);
+            long offset = Integer.BYTES + 1;
+            for (int count = in.readInt(); count != 0; count = in.readInt()) {
+                final int length = in.readInt();
+                final int checksum = in.readInt();
+                final long remaining = size - offset - SnapshotWriter.BLOCK_HEADER_SIZE;
+                if (count < 0 || length < 0 || length > remaining || count > length / Integer.BYTES) {
+                    throw new StoreException(
+                            "Corrupt block at offset " + offset + " of snapshot " + path);
+                }
+                final byte[] block = new byte[length];
+                in.readFully(block);
+
+                permits.acquire();
+                if (failure.get() != null) {
+                    permits.release();
+                    break;
+                }
+                final long blockOffset = offset;
+                final int blockCount = count;
+                CompletableFuture.runAsync(() -> {
+                    final List<T> values = decode(block, blockCount, checksum);
+                    if (values == null) {
+                        throw new StoreException(
+                                "Corrupt block at offset " + blockOffset + " of snapshot " + path);
+                    }
+                    consumer.accept(values);
+                    read.addAndGet(values.size());
+                }, executor).whenComplete((ignored, t) -> {
+                    if (t != null) {
+                        failure.compareAndSet(null, t.getCause() != null ? t.getCause() : t);
+                    }
+                    permits.release();
+                });
+                offset += SnapshotWriter.BLOCK_HEADER_SIZE + length;
+            }
+
+            // wait for blocks that are still being decoded
+            permits.acquire(maxBlocksInFlight);
+            drained = true;
+            rethrow(failure.get(), path);
+            final long total = in.readLong();
+            if (total != read.get()) {
+                throw new StoreException("Snapshot " + path + " contains " + total + " values but "
+                        + read.get() + " were read");
+            }
+            return total;
+        } catch (final EOFException e) {
+            throw new StoreException("Snapshot " + path + " is truncated", e);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to read snapshot " + path, e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StoreException("Interrupted while reading snapshot " + path, e);
+        } finally {
+            if (!drained) {
+                // consumer must not be called once read has returned, even if it failed
+                permits.acquireUninterruptibly(maxBlocksInFlight);
+            }
+        }
+    }
+
+    /**
+     * Restores the snapshot at the given path into the given store, loading each block with
+     * {@link LoadableStore#loadAll(java.util.Collection, boolean)}. Restored values keep their
+     * timestamps, and are neither written to the store's write-ahead log nor sent to its listeners.
+     * Values already in the store that are not in the snapshot are left in place.
+     *
+     * @param path
+     *            snapshot file
+     * @param store
+     *            store to restore into
+     * @return number of values restored
+     * @throws StoreException
+     *             if the snapshot cannot be read, is truncated, or is corrupt
+     */
+    public long restore(final Path path, final LoadableStore<T> store) {
+        Preconditions.checkArgument(store != null, "store must be non-null");
+        return read(path, values -> store.loadAll(values, false));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("executor", executor) //
+                .add("maxBlocksInFlight", maxBlocksInFlight) //
+                .toString();
+    }
+
+    /**
+     * Decodes the records of a block.
+     *
+     * @return values of block, or null if its checksum does not match
+     */
+    private List<T> decode(final byte[] block, final int count, final int checksum) {
+        final CRC32 crc = new CRC32();
+        crc.update(block);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        final ByteBuffer buf = ByteBuffer.wrap(block);
+        final List<T> values = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                final int length = buf.getInt();
+                final T value = mapper.readValue(block, buf.position(), length);
+                if (value != null) {
+                    values.add(value);
+                }
+                buf.position(buf.position() + length);
+            }
+        } catch (final IOException e) {
+            throw new StoreException("Unable to decode value", e);
+        }
+        return values;
+    }
+
+    private void rethrow(final Throwable failure, final Path path) {
+        if (failure instanceof StoreException) {
+            throw (StoreException) failure;
+        } else if (failure != null) {
+            throw new StoreException("Unable to restore snapshot " + path, failure);
+        }
+    }
+}
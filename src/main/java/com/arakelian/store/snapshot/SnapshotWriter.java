@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import com.arakelian.store.ScannableStore;
+import com.arakelian.store.StoreException;
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.json.StoreObjectMapper;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Writes the contents of a store to a compact binary snapshot file, which can be restored with
+ * {@link SnapshotReader}.
+ *
+ * <p>
+ * Values are streamed from the store and serialized with a {@link StoreObjectMapper} into blocks of
+ * roughly {@link #getBlockSize()} bytes, so memory use does not depend on the size of the store. The
+ * snapshot is written to a temporary file which is forced to disk and then renamed, so a snapshot
+ * file is always complete.
+ * </p>
+ *
+ * <p>
+ * Writes may continue while a snapshot is taken. The snapshot then reflects some state of each
+ * value at or after the start of the snapshot, as described by {@link ScannableStore}. For a
+ * point-in-time recovery, checkpoint the {@link com.arakelian.store.wal.WriteAheadLog} before
+ * taking the snapshot, restore the snapshot, and then replay the log; replaying a change that the
+ * snapshot already contains is harmless.
+ * </p>
+ *
+ * <p>
+ * The file starts with <code>magic (int) | version (byte)</code>. Each block is laid out as
+ * <code>count (int) | length (int) | crc32 (int) | records</code>, where the checksum covers the
+ * records and each record is <code>length (int) | value</code>. The file ends with
+ * <code>0 (int) | total count (long)</code>.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class SnapshotWriter<T extends HasId> {
+    /** Records of a block, which can be checksummed without copying them **/
+    private static final class Block extends ByteArrayOutputStream {
+        private Block(final int size) {
+            super(size);
+        }
+
+        private int checksum() {
+            final CRC32 crc = new CRC32();
+            crc.update(buf, 0, count);
+            return (int) crc.getValue();
+        }
+    }
+
+    /** Identifies a snapshot file **/
+    static final int MAGIC = 0x534E4150;
+
+    /** Version of snapshot file format **/
+    static final byte VERSION = 1;
+
+    /** Size of block header **/
+    static final int BLOCK_HEADER_SIZE = 3 * Integer.BYTES;
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    /** Serializes values **/
+    private final StoreObjectMapper<T> mapper;
+
+    /** Size at which a block is written **/
+    private final int blockSize;
+
+    public SnapshotWriter(final StoreObjectMapper<T> mapper) {
+        this(mapper, DEFAULT_BLOCK_SIZE);
+    }
+
+    public SnapshotWriter(final StoreObjectMapper<T> mapper, final int blockSize) {
+        Preconditions.checkArgument(mapper != null, "mapper must be non-null");
+        Preconditions.checkArgument(blockSize > 0, "blockSize must be positive");
+        this.mapper = mapper;
+        this.blockSize = blockSize;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public StoreObjectMapper<T> getMapper() {
+        return mapper;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("blockSize", blockSize) //
+                .toString();
+    }
+
+    /**
+     * Writes a snapshot of every value in the given store, including values that have been
+     * soft-deleted, to the given path. An existing file at that path is replaced.
+     *
+     * @param store
+     *            store to snapshot
+     * @param path
+     *            snapshot file
+     * @return number of values written
+     * @throws StoreException
+     *             if the snapshot cannot be written
+     */
+    public long write(final ScannableStore<T> store, final Path path) {
+        Preconditions.checkArgument(store != null, "store must be non-null");
+        try (Stream<T> values = store.stream()) {
+            return write(values, path);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the given values to the given path. An existing file at that path is
+     * replaced.
+     *
+     * @param values
+     *            values to write; null values are skipped
+     * @param path
+     *            snapshot file
+     * @return number of values written
+     * @throws StoreException
+     *             if the snapshot cannot be written
+     */
+    public long write(final Stream<T> values, final Path path) {
+        Preconditions.checkArgument(values != null, "values must be non-null");
+        Preconditions.checkArgument(path != null, "path must be non-null");
+
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            final long total;
+            try (FileChannel channel = FileChannel.open(
+                    temp,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                final DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                total = writeBlocks(values.iterator(), out);
+                out.writeInt(0);
+                out.writeLong(total);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return total;
+        } catch (final IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (final IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new StoreException("Unable to write snapshot " + path, e);
+        }
+    }
+
+    private void writeBlock(final Block block, final int count, final DataOutputStream out)
+            throws IOException {
+        out.writeInt(count);
+        out.writeInt(block.size());
+        out.writeInt(block.checksum());
+        block.writeTo(out);
+        block.reset();
+    }
+
+    private long writeBlocks(final Iterator<T> values, final DataOutputStream out) throws IOException {
+        final Block block = new Block(blockSize + blockSize / 4);
+        final DataOutputStream records = new DataOutputStream(block);
+        long total = 0;
+        int count = 0;
+        while (values.hasNext()) {
+            final T value = values.next();
+            if (value == null) {
+                continue;
+            }
+            final byte[] bytes = mapper.writeValueAsBytes(value);
+            records.writeInt(bytes.length);
+            records.write(bytes);
+            total++;
+            count++;
+            if (block.size() >= blockSize) {
+                writeBlock(block, count, out);
+                count = 0;
+            }
+        }
+        if (count != 0) {
+            writeBlock(block, count, out);
+        }
+        return total;
+    }
+}
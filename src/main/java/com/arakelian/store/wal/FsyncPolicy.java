@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.wal;
+
+/**
+ * Determines when a {@link WriteAheadLog} forces records to disk.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every write waits until its record has been forced to disk. Concurrent writes are grouped so
+     * that they share a single fsync.
+     */
+    ALWAYS,
+
+    /**
+     * Every write waits until its record has been handed to the operating system, and the log is
+     * forced to disk at a fixed interval. A power failure can lose the writes of the last interval.
+     */
+    INTERVAL,
+
+    /**
+     * Every write waits until its record has been handed to the operating system, which decides when
+     * to write it to disk. The log is only forced when it is rolled or closed.
+     */
+    OS;
+}
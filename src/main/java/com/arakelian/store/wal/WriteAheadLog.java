@@ -0,0 +1,648 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.wal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.arakelian.core.utils.ExecutorUtils;
+import com.arakelian.store.StoreException;
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.json.StoreObjectMapper;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Write-ahead log for a {@link com.arakelian.store.MutableStore}.
+ *
+ * <p>
+ * Writers encode their records and add them to a queue; a single committer thread drains the
+ * queue, writes every queued record with one call, and forces the log to disk according to the
+ * {@link FsyncPolicy}. Concurrent puts and deletes are therefore grouped into a single commit.
+ * </p>
+ *
+ * <p>
+ * Each change is applied to the store and then logged, while holding a lock on its id, so changes to
+ * the same id are logged in the same order in which they are applied. A change may become visible
+ * to readers of the store shortly before it is durable, but the writer does not return until it is.
+ * </p>
+ *
+ * <p>
+ * Segments are deleted only when a checkpoint is reached. A store that makes its contents durable
+ * by other means calls {@link #roll()} before doing so, and passes the returned checkpoint to
+ * {@link #truncate(long)} once every change applied before that call is safely on disk.
+ * </p>
+ *
+ * <p>
+ * Each record is laid out as <code>length (int) | crc32 (int) | type (byte) | id length (int) | id |
+ * value</code>, where the checksum covers everything after itself. The value of a delete record is
+ * the time of deletion, so that replay restores tombstones exactly as they were. Replay stops at the
+ * first record that is incomplete or corrupt.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class WriteAheadLog<T extends HasId> implements Closeable {
+    /** Record waiting to be committed **/
+    private static final class Pending extends CompletableFuture<Void> {
+        private final ByteBuffer record;
+
+        private Pending(final ByteBuffer record) {
+            this.record = record;
+        }
+    }
+
+    private static final byte PUT = 1;
+
+    private static final byte DELETE = 2;
+
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    private static final int STRIPES = 1024;
+
+    private static ByteBuffer encode(final byte type, final String id, final byte[] value) {
+        final byte[] key = id.getBytes(UTF_8);
+        final int bodyLength = 1 + Integer.BYTES + key.length + (value != null ? value.length : 0);
+        final ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + bodyLength);
+        buf.putInt(bodyLength);
+        buf.putInt(0);
+        buf.put(type);
+        buf.putInt(key.length);
+        buf.put(key);
+        if (value != null) {
+            buf.put(value);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(buf.array(), HEADER_SIZE, bodyLength);
+        buf.putInt(Integer.BYTES, (int) crc.getValue());
+        buf.flip();
+        return buf;
+    }
+
+    private static byte[] encodeTime(final ZonedDateTime time) {
+        final Instant instant = time.toInstant();
+        return ByteBuffer.allocate(Long.BYTES + Integer.BYTES) //
+                .putLong(instant.getEpochSecond()) //
+                .putInt(instant.getNano()) //
+                .array();
+    }
+
+    /** Serializes values to and from bytes **/
+    private final StoreObjectMapper<T> mapper;
+
+    /** Directory containing log segments **/
+    private final Path directory;
+
+    /** When to force log to disk **/
+    private final FsyncPolicy policy;
+
+    /** Interval between forces when policy is {@link FsyncPolicy#INTERVAL} **/
+    private final long fsyncIntervalNanos;
+
+    /** Size at which a new segment is started **/
+    private final long segmentSize;
+
+    /** Orders changes to the same id **/
+    private final Striped<Lock> locks = Striped.lock(STRIPES);
+
+    /** Guards queue and state below **/
+    private final Object lock = new Object();
+
+    /** Records waiting to be committed; guarded by lock **/
+    private List<Pending> queue = new ArrayList<>();
+
+    /** Segment we are appending to; only used by committer thread after construction **/
+    private FileChannel channel;
+
+    /** Id of segment we are appending to; guarded by lock **/
+    private long segmentId;
+
+    /** Thread that commits queued records **/
+    private final Thread committer;
+
+    /** Set if committer has failed; guarded by lock **/
+    private IOException failure;
+
+    /** True once closed; guarded by lock **/
+    private boolean closed;
+
+    public WriteAheadLog(final Path directory, final StoreObjectMapper<T> mapper, final FsyncPolicy policy) {
+        this(directory, mapper, policy, Duration.ofMillis(100), DEFAULT_SEGMENT_SIZE);
+    }
+
+    public WriteAheadLog(
+            final Path directory,
+            final StoreObjectMapper<T> mapper,
+            final FsyncPolicy policy,
+            final Duration fsyncInterval,
+            final long segmentSize) {
+        Preconditions.checkArgument(directory != null, "directory must be non-null");
+        Preconditions.checkArgument(mapper != null, "mapper must be non-null");
+        Preconditions.checkArgument(policy != null, "policy must be non-null");
+        Preconditions.checkArgument(
+                fsyncInterval != null && !fsyncInterval.isNegative() && !fsyncInterval.isZero(),
+                "fsyncInterval must be positive");
+        Preconditions.checkArgument(segmentSize > 0, "segmentSize must be positive");
+        this.directory = directory;
+        this.mapper = mapper;
+        this.policy = policy;
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+        this.segmentSize = segmentSize;
+
+        try {
+            Files.createDirectories(directory);
+            final List<Long> ids = segmentIds();
+            segmentId = ids.isEmpty() ? 0 : ids.get(ids.size() - 1) + 1;
+            channel = openSegment(segmentId);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to open write-ahead log in " + directory, e);
+        }
+
+        committer = ExecutorUtils.newThreadFactory(WriteAheadLog.class, true).newThread(this::commitLoop);
+        committer.start();
+    }
+
+    /**
+     * Starts a new segment and deletes all older segments. Every change that was logged before this
+     * method was called must already have been made durable by some other means, such as a snapshot
+     * of the store.
+     */
+    public void checkpoint() {
+        final Pending marker = new Pending(null);
+        final long checkpoint = roll(marker);
+        await(marker);
+        truncate(checkpoint);
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public FsyncPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Logs the deletion of the given id, applies it to the store, and waits for the record to be
+     * committed.
+     *
+     * @param id
+     *            id being deleted
+     * @param deleted
+     *            time of deletion
+     * @param apply
+     *            applies deletion to store
+     */
+    public void logDelete(final String id, final ZonedDateTime deleted, final Consumer<String> apply) {
+        final Pending pending = new Pending(encode(DELETE, id, encodeTime(deleted)));
+        final Lock stripe = locks.get(id);
+        stripe.lock();
+        try {
+            apply.accept(id);
+            enqueue(pending);
+        } finally {
+            stripe.unlock();
+        }
+        await(pending);
+    }
+
+    /**
+     * Logs the deletion of the given ids, applies them to the store as a single batch, and waits for
+     * the records to be committed.
+     *
+     * @param ids
+     *            ids being deleted
+     * @param deleted
+     *            time of deletion
+     * @param apply
+     *            applies deletion to store
+     */
+    public void logDeleteAll(final List<String> ids, final ZonedDateTime deleted, final Runnable apply) {
+        final byte[] value = encodeTime(deleted);
+        final List<String> keys = new ArrayList<>(ids.size());
+        final List<Pending> pending = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id)) {
+                keys.add(id);
+                pending.add(new Pending(encode(DELETE, id, value)));
+            }
+        }
+
+        logAll(keys, pending, apply);
+    }
+
+    /**
+     * Logs the given value, applies it to the store, and waits for the record to be committed.
+     *
+     * @param value
+     *            value being stored
+     * @param apply
+     *            applies value to store
+     */
+    public void logPut(final T value, final Consumer<T> apply) {
+        final String id = value.getId();
+        final Pending pending = new Pending(encode(PUT, id, serialize(value)));
+        final Lock stripe = locks.get(id);
+        stripe.lock();
+        try {
+            apply.accept(value);
+            enqueue(pending);
+        } finally {
+            stripe.unlock();
+        }
+        await(pending);
+    }
+
+    /**
+     * Logs the given values, applies them to the store as a single batch, and waits for the records
+     * to be committed.
+     *
+     * @param values
+     *            values being stored, which must have non-empty ids
+     * @param apply
+     *            applies values to store
+     */
+    public void logPutAll(final List<T> values, final Runnable apply) {
+        final List<String> keys = new ArrayList<>(values.size());
+        final List<Pending> pending = new ArrayList<>(values.size());
+        for (final T value : values) {
+            keys.add(value.getId());
+            pending.add(new Pending(encode(PUT, value.getId(), serialize(value))));
+        }
+        logAll(keys, pending, apply);
+    }
+
+    /**
+     * Replays every record in the log, in order. This must be called before any new changes are
+     * logged.
+     *
+     * @param put
+     *            applies a logged put
+     * @param delete
+     *            applies a logged delete, given the id and the time of deletion
+     */
+    public void replay(final Consumer<T> put, final BiConsumer<String, ZonedDateTime> delete) {
+        final long current;
+        synchronized (lock) {
+            checkOpen();
+            current = segmentId;
+        }
+
+        try {
+            for (final Long id : segmentIds()) {
+                if (id < current) {
+                    replay(segmentPath(id), put, delete);
+                }
+            }
+        } catch (final IOException e) {
+            throw new StoreException("Unable to replay write-ahead log in " + directory, e);
+        }
+    }
+
+    /**
+     * Starts a new segment once every change logged so far has been written, without waiting for
+     * it, and returns a checkpoint that covers every change applied to the store before this method
+     * was called.
+     *
+     * @return checkpoint to pass to {@link #truncate(long)}
+     */
+    public long roll() {
+        return roll(new Pending(null));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("directory", directory) //
+                .add("policy", policy) //
+                .toString();
+    }
+
+    /**
+     * Deletes every segment that holds only changes covered by the given checkpoint. The changes
+     * must already have been made durable by some other means. The segment currently being
+     * appended to is never deleted.
+     *
+     * @param checkpoint
+     *            checkpoint returned by {@link #roll()}
+     */
+    public void truncate(final long checkpoint) {
+        final long limit;
+        synchronized (lock) {
+            limit = Math.min(checkpoint, segmentId);
+        }
+        try {
+            for (final Long id : segmentIds()) {
+                if (id < limit) {
+                    Files.deleteIfExists(segmentPath(id));
+                }
+            }
+        } catch (final IOException e) {
+            throw new StoreException("Unable to truncate write-ahead log in " + directory, e);
+        }
+    }
+
+    private void await(final Pending pending) {
+        try {
+            pending.join();
+        } catch (final CompletionException e) {
+            throw new StoreException("Unable to commit to write-ahead log in " + directory, e.getCause());
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new StoreException("Write-ahead log in " + directory + " is closed");
+        }
+        if (failure != null) {
+            throw new StoreException("Write-ahead log in " + directory + " has failed", failure);
+        }
+    }
+
+    private void commit(final List<Pending> batch) throws IOException {
+        int count = 0;
+        for (final Pending pending : batch) {
+            if (pending.record != null) {
+                count++;
+            }
+        }
+
+        // gathering write of every record in batch
+        final ByteBuffer[] buffers = new ByteBuffer[count];
+        count = 0;
+        boolean roll = false;
+        for (final Pending pending : batch) {
+            if (pending.record != null) {
+                buffers[count++] = pending.record;
+            } else {
+                roll = true;
+            }
+        }
+        while (count != 0 && buffers[count - 1].hasRemaining()) {
+            channel.write(buffers);
+        }
+
+        if (policy == FsyncPolicy.ALWAYS) {
+            channel.force(false);
+        }
+        if (roll || channel.size() >= segmentSize) {
+            rollSegment();
+        }
+    }
+
+    private void commitLoop() {
+        long lastForce = System.nanoTime();
+        boolean dirty = false;
+        for (;;) {
+            final List<Pending> batch;
+            synchronized (lock) {
+                while (queue.isEmpty() && !closed) {
+                    try {
+                        if (policy == FsyncPolicy.INTERVAL && dirty) {
+                            final long remaining = fsyncIntervalNanos - (System.nanoTime() - lastForce);
+                            if (remaining <= 0) {
+                                break;
+                            }
+                            lock.wait(Math.max(1, remaining / 1_000_000));
+                        } else {
+                            lock.wait();
+                        }
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        closed = true;
+                    }
+                }
+                batch = queue;
+                queue = new ArrayList<>();
+            }
+
+            try {
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                    dirty = policy == FsyncPolicy.INTERVAL;
+                }
+                if (dirty && System.nanoTime() - lastForce >= fsyncIntervalNanos) {
+                    channel.force(false);
+                    lastForce = System.nanoTime();
+                    dirty = false;
+                }
+            } catch (final IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                }
+                for (final Pending pending : batch) {
+                    pending.completeExceptionally(e);
+                }
+                failQueued(e);
+                return;
+            }
+
+            for (final Pending pending : batch) {
+                pending.complete(null);
+            }
+
+            synchronized (lock) {
+                if (closed && queue.isEmpty()) {
+                    break;
+                }
+            }
+        }
+
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (final IOException e) {
+            failQueued(e);
+        }
+    }
+
+    private void enqueue(final List<Pending> pending) {
+        synchronized (lock) {
+            checkOpen();
+            queue.addAll(pending);
+            lock.notifyAll();
+        }
+    }
+
+    private void enqueue(final Pending pending) {
+        synchronized (lock) {
+            checkOpen();
+            queue.add(pending);
+            lock.notifyAll();
+        }
+    }
+
+    private void failQueued(final IOException e) {
+        final List<Pending> remaining;
+        synchronized (lock) {
+            remaining = queue;
+            queue = new ArrayList<>();
+        }
+        for (final Pending pending : remaining) {
+            pending.completeExceptionally(e);
+        }
+    }
+
+    private void logAll(final List<String> keys, final List<Pending> pending, final Runnable apply) {
+        // bulkGet returns locks in a consistent order, so batches cannot deadlock
+        final List<Lock> stripes = new ArrayList<>();
+        for (final Lock stripe : locks.bulkGet(keys)) {
+            stripes.add(stripe);
+        }
+        stripes.forEach(Lock::lock);
+        try {
+            apply.run();
+            enqueue(pending);
+        } finally {
+            Collections.reverse(stripes);
+            stripes.forEach(Lock::unlock);
+        }
+        for (final Pending p : pending) {
+            await(p);
+        }
+    }
+
+    private FileChannel openSegment(final long id) throws IOException {
+        return FileChannel.open(
+                segmentPath(id),
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+    }
+
+    private void replay(
+            final Path path,
+            final Consumer<T> put,
+            final BiConsumer<String, ZonedDateTime> delete) throws IOException {
+        final ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+        final CRC32 crc = new CRC32();
+        while (buf.remaining() >= HEADER_SIZE) {
+            final int bodyLength = buf.getInt();
+            final int checksum = buf.getInt();
+            if (bodyLength < 1 + Integer.BYTES || bodyLength > buf.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buf.array(), buf.position(), bodyLength);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            final byte type = buf.get();
+            final byte[] key = new byte[buf.getInt()];
+            buf.get(key);
+            final int valueLength = bodyLength - 1 - Integer.BYTES - key.length;
+            final int valueOffset = buf.position();
+            if (type == PUT) {
+                put.accept(mapper.readValue(buf.array(), valueOffset, valueLength));
+            } else if (type == DELETE) {
+                final Instant deleted = Instant.ofEpochSecond(buf.getLong(), buf.getInt());
+                delete.accept(new String(key, UTF_8), ZonedDateTime.ofInstant(deleted, ZoneOffset.UTC));
+            }
+            buf.position(valueOffset + valueLength);
+        }
+    }
+
+    private long roll(final Pending marker) {
+        // committer rolls to a new segment once it sees the marker, so every record queued before
+        // the marker ends up in a segment older than the checkpoint
+        synchronized (lock) {
+            checkOpen();
+            queue.add(marker);
+            lock.notifyAll();
+            return segmentId + 1;
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        channel.force(false);
+        channel.close();
+        synchronized (lock) {
+            segmentId++;
+        }
+        channel = openSegment(segmentId);
+    }
+
+    private List<Long> segmentIds() throws IOException {
+        final List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (final Path path : stream) {
+                final String name = path.getFileName().toString();
+                ids.add(Long.parseLong(StringUtils.removeEnd(name, SEGMENT_SUFFIX), 16));
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private Path segmentPath(final long id) {
+        return directory.resolve(String.format("%016x%s", id, SEGMENT_SUFFIX));
+    }
+
+    private byte[] serialize(final T value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (final IOException e) {
+            throw new StoreException("Unable to serialize " + value, e);
+        }
+    }
+}
@@ -0,0 +1,479 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store.writebehind;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.arakelian.core.utils.ExecutorUtils;
+import com.arakelian.store.MutableStore;
+import com.arakelian.store.StoreException;
+import com.arakelian.store.event.StoreEvent.Action;
+import com.arakelian.store.feature.HasId;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Write-behind decorator for a {@link MutableStore}.
+ *
+ * <p>
+ * Puts and deletes are recorded in a buffer that keeps only the latest change of each id, and
+ * return without waiting for the delegate. A background thread drains the buffer every
+ * {@link #getInterval()}, writing changes to the delegate in batches of up to
+ * {@link #getBatchSize()}, which is typically the partition size of the delegate. An id that is
+ * changed many times between flushes is therefore written once. Reads see buffered changes.
+ * </p>
+ *
+ * <p>
+ * The buffer holds changes to at most {@link #getCapacity()} ids. A writer that needs to buffer a
+ * change to another id when the buffer is full starts a flush and waits until there is room, so
+ * memory stays bounded when the delegate cannot keep up. Replacing a change that is already
+ * buffered never waits.
+ * </p>
+ *
+ * <p>
+ * Buffered changes are lost if the process dies before they are flushed, and listeners of the
+ * delegate are notified when changes are flushed rather than when they are made. Call
+ * {@link #flush()} to write every buffered change, or {@link #close()} to stop the background
+ * thread and flush at shutdown.
+ * </p>
+ *
+ * @param <T>
+ *            type of value stored
+ */
+public class WriteBehindStore<T extends HasId> implements MutableStore<T>, Closeable {
+    /** Latest change of an id **/
+    private static final class Pending<T> {
+        private final Action action;
+        private final String id;
+        private final T value;
+
+        private Pending(final Action action, final String id, final T value) {
+            this.action = action;
+            this.id = id;
+            this.value = value;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindStore.class);
+
+    /** Underlying store **/
+    private final MutableStore<T> delegate;
+
+    /** Maximum number of ids with buffered changes **/
+    private final int capacity;
+
+    /** Maximum number of changes written to delegate at once **/
+    private final int batchSize;
+
+    /** Interval between background flushes **/
+    private final Duration interval;
+
+    /** Latest buffered change of each id **/
+    private final ConcurrentHashMap<String, Pending<T>> buffer = new ConcurrentHashMap<>();
+
+    /** One permit for each id that may be added to the buffer **/
+    private final Semaphore permits;
+
+    /** Only one flush may run at a time **/
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /** Runs background flushes **/
+    private final ScheduledExecutorService scheduler;
+
+    /** Number of changes that replaced a buffered change **/
+    private final LongAdder coalesced = new LongAdder();
+
+    /** Number of changes written to delegate **/
+    private final LongAdder flushed = new LongAdder();
+
+    /** Number of times that a writer waited for room in the buffer **/
+    private final LongAdder blocked = new LongAdder();
+
+    /** True once closed **/
+    private volatile boolean closed;
+
+    public WriteBehindStore(final MutableStore<T> delegate, final int capacity, final int batchSize) {
+        this(delegate, capacity, batchSize, Duration.ofMillis(100));
+    }
+
+    public WriteBehindStore(
+            final MutableStore<T> delegate,
+            final int capacity,
+            final int batchSize,
+            final Duration interval) {
+        Preconditions.checkArgument(delegate != null, "delegate must be non-null");
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+        Preconditions.checkArgument(batchSize > 0, "batchSize must be positive");
+        Preconditions.checkArgument(
+                interval != null && !interval.isNegative() && !interval.isZero(),
+                "interval must be positive");
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.interval = interval;
+        this.permits = new Semaphore(capacity);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                ExecutorUtils.newThreadFactory(WriteBehindStore.class, true));
+        scheduler.scheduleWithFixedDelay(
+                this::flushQuietly,
+                interval.toMillis(),
+                interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops flushing in the background, and flushes every buffered change. Writers should be stopped
+     * first; changes made after this method is called are rejected.
+     *
+     * @throws StoreException
+     *             if buffered changes cannot be written
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    @Override
+    public void delete(final String id) {
+        if (!StringUtils.isEmpty(id)) {
+            buffer(new Pending<>(Action.DELETE, id, null));
+        }
+    }
+
+    @Override
+    public void delete(final T value) {
+        if (value != null && !StringUtils.isEmpty(value.getId())) {
+            buffer(new Pending<>(Action.DELETE, value.getId(), value));
+        }
+    }
+
+    @Override
+    public void deleteAll(final Collection<T> values) {
+        if (values != null) {
+            for (final T value : values) {
+                delete(value);
+            }
+        }
+    }
+
+    @Override
+    public void deleteAll(final String... ids) {
+        if (ids != null) {
+            for (final String id : ids) {
+                delete(id);
+            }
+        }
+    }
+
+    /**
+     * Writes every change that was buffered before this method was called to the delegate. Changes
+     * made while the flush is running may remain buffered.
+     *
+     * @return number of changes written
+     * @throws StoreException
+     *             if changes cannot be written; changes that were not written remain buffered
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            int count = 0;
+            final List<Pending<T>> batch = new ArrayList<>(batchSize);
+            for (final Iterator<Pending<T>> it = buffer.values().iterator(); it.hasNext();) {
+                batch.add(it.next());
+                if (batch.size() == batchSize) {
+                    count += write(batch);
+                    batch.clear();
+                }
+            }
+            if (batch.size() != 0) {
+                count += write(batch);
+            }
+            return count;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public T get(final String id) {
+        if (StringUtils.isEmpty(id)) {
+            return null;
+        }
+        final Pending<T> pending = buffer.get(id);
+        if (pending != null) {
+            return pending.action == Action.PUT ? pending.value : null;
+        }
+        return delegate.get(id);
+    }
+
+    @Override
+    public List<T> getAll(final Collection<String> ids) {
+        if (ids == null || ids.size() == 0) {
+            return Collections.<T> emptyList();
+        }
+
+        // read ids without buffered changes from delegate
+        final Map<String, Pending<T>> buffered = new HashMap<>();
+        final List<String> unbuffered = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            if (!StringUtils.isEmpty(id)) {
+                final Pending<T> pending = buffer.get(id);
+                if (pending != null) {
+                    buffered.put(id, pending);
+                } else {
+                    unbuffered.add(id);
+                }
+            }
+        }
+        if (buffered.size() == 0) {
+            return delegate.getAll(unbuffered);
+        }
+        final Map<String, T> stored = new HashMap<>();
+        if (unbuffered.size() != 0) {
+            for (final T value : delegate.getAll(unbuffered)) {
+                stored.put(value.getId(), value);
+            }
+        }
+
+        // reassemble in order of ids
+        final List<T> values = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            final Pending<T> pending = buffered.get(id);
+            final T value;
+            if (pending != null) {
+                value = pending.action == Action.PUT ? pending.value : null;
+            } else {
+                value = stored.get(id);
+            }
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public List<T> getAll(final String... ids) {
+        if (ids == null || ids.length == 0) {
+            return Collections.<T> emptyList();
+        }
+        return getAll(Arrays.asList(ids));
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the number of times that a writer waited for room in a full buffer.
+     *
+     * @return number of times that a writer waited
+     */
+    public long getBlockedCount() {
+        return blocked.sum();
+    }
+
+    /**
+     * Returns the number of ids that currently have buffered changes.
+     *
+     * @return number of ids with buffered changes
+     */
+    public int getBufferedCount() {
+        return buffer.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of changes that replaced a buffered change to the same id, and so were
+     * never written to the delegate on their own.
+     *
+     * @return number of coalesced changes
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public MutableStore<T> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the number of changes written to the delegate.
+     *
+     * @return number of changes written
+     */
+    public long getFlushedCount() {
+        return flushed.sum();
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    @Override
+    public void put(final T value) {
+        if (value == null) {
+            return;
+        }
+        final String id = value.getId();
+        if (StringUtils.isEmpty(id)) {
+            throw new StoreException("Id not specified for " + value);
+        }
+        buffer(new Pending<>(Action.PUT, id, value));
+    }
+
+    @Override
+    public void putAll(final Collection<T> values) {
+        if (values == null || values.size() == 0) {
+            return;
+        }
+
+        // make sure every bean has an id before we buffer any of them
+        for (final T value : values) {
+            if (value != null && StringUtils.isEmpty(value.getId())) {
+                throw new StoreException("Id not specified for " + value);
+            }
+        }
+        for (final T value : values) {
+            put(value);
+        }
+    }
+
+    @Override
+    public void putAll(final T[] values) {
+        if (values == null || values.length == 0) {
+            return;
+        }
+        putAll(Arrays.asList(values));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("delegate", delegate) //
+                .add("capacity", capacity) //
+                .add("batchSize", batchSize) //
+                .add("interval", interval) //
+                .toString();
+    }
+
+    private void buffer(final Pending<T> pending) {
+        Preconditions.checkState(!closed, "store is closed");
+
+        // replacing a buffered change does not use any more room
+        if (buffer.computeIfPresent(pending.id, (id, existing) -> pending) != null) {
+            coalesced.increment();
+            return;
+        }
+
+        if (!permits.tryAcquire()) {
+            blocked.increment();
+            try {
+                scheduler.execute(this::flushQuietly);
+            } catch (final RejectedExecutionException e) {
+                // closing, and will flush once more
+            }
+            try {
+                permits.acquire();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StoreException("Interrupted while waiting for room in write-behind buffer", e);
+            }
+        }
+        if (buffer.put(pending.id, pending) != null) {
+            // another writer buffered a change to this id while we waited, and holds its room
+            permits.release();
+            coalesced.increment();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (final RuntimeException e) {
+            LOGGER.error("Unable to flush write-behind buffer to {}", delegate, e);
+        }
+    }
+
+    /**
+     * Writes a batch of changes to the delegate, and removes each change from the buffer unless it
+     * has since been replaced by a newer one.
+     */
+    private int write(final List<Pending<T>> batch) {
+        final List<T> puts = new ArrayList<>();
+        final List<T> deletedValues = new ArrayList<>();
+        final List<String> deletedIds = new ArrayList<>();
+        for (final Pending<T> pending : batch) {
+            if (pending.action == Action.PUT) {
+                puts.add(pending.value);
+            } else if (pending.value != null) {
+                deletedValues.add(pending.value);
+            } else {
+                deletedIds.add(pending.id);
+            }
+        }
+        if (puts.size() != 0) {
+            delegate.putAll(puts);
+        }
+        if (deletedValues.size() != 0) {
+            delegate.deleteAll(deletedValues);
+        }
+        if (deletedIds.size() != 0) {
+            delegate.deleteAll(deletedIds.toArray(new String[deletedIds.size()]));
+        }
+
+        for (final Pending<T> pending : batch) {
+            if (buffer.remove(pending.id, pending)) {
+                permits.release();
+            }
+        }
+        flushed.add(batch.size());
+        return batch.size();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.store.async.AbstractAsyncMutableStore;
+import com.arakelian.store.async.AsyncMutableStore;
+import com.arakelian.store.async.AsyncMutableStoreAdapter;
+import com.arakelian.store.event.StoreListener;
+import com.arakelian.store.memory.InMemoryStore;
+import com.google.common.collect.Lists;
+
+public class AsyncStoreTest {
+    /**
+     * Native engine whose writes complete only when the test says so.
+     */
+    private static class ManualStore extends AbstractAsyncMutableStore<Record> {
+        private final Map<String, Record> values = new ConcurrentHashMap<>();
+
+        private final Map<String, ZonedDateTime> deleted = new ConcurrentHashMap<>();
+
+        private final List<CompletableFuture<Void>> writes = Lists.newArrayList();
+
+        public ManualStore(final StoreConfig<Record> config) {
+            super(config);
+        }
+
+        public ManualStore(final StoreConfig<Record> config, final Clock clock) {
+            super(config, clock);
+        }
+
+        @Override
+        protected CompletableFuture<Void> doDeleteAsync(final String id) {
+            values.remove(id);
+            return write();
+        }
+
+        @Override
+        protected CompletableFuture<Void> doDeleteAsync(final String id, final ZonedDateTime time) {
+            deleted.put(id, time);
+            return doDeleteAsync(id);
+        }
+
+        @Override
+        protected CompletableFuture<Record> doGetAsync(final String id) {
+            return CompletableFuture.completedFuture(values.get(id));
+        }
+
+        @Override
+        protected CompletableFuture<Void> doPutAsync(final Record value) {
+            values.put(value.getId(), value);
+            return write();
+        }
+
+        private CompletableFuture<Void> write() {
+            final CompletableFuture<Void> write = new CompletableFuture<>();
+            writes.add(write);
+            return write;
+        }
+    }
+
+    @Test
+    public void testAdapter() {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final AsyncMutableStore<Record> store = new AsyncMutableStoreAdapter<>(
+                    new InMemoryStore<>(new TestStoreConfig<>(Record.class)), executor);
+            store.putAll(Lists.newArrayList(new Record("1", "one"), new Record("2", "two"))).join();
+            assertEquals("one", store.get("1").join().getName());
+            assertEquals(2, store.getAll("2", "3", "1").join().size());
+
+            store.delete("1").join();
+            assertNull(store.get("1").join());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testListenersNotifiedOnCompletion() {
+        final List<String> events = Lists.newArrayList();
+        final ManualStore store = new ManualStore(new TestStoreConfig<>(Record.class) //
+                .withListener(new StoreListener<Record>() {
+                    @Override
+                    public void delete(final Record value) {
+                        events.add("delete " + value.getId());
+                    }
+
+                    @Override
+                    public void delete(final String id) {
+                        events.add("delete " + id);
+                    }
+
+                    @Override
+                    public void put(final Record value) {
+                        events.add("put " + value.getId());
+                    }
+                }));
+
+        final CompletableFuture<Void> put = store.put(new Record("1", "one"));
+        final CompletableFuture<Void> delete = store.deleteAll("2", "3");
+        assertTrue(events.isEmpty());
+
+        store.writes.get(0).complete(null);
+        assertTrue(put.isDone());
+        assertEquals(Lists.newArrayList("put 1"), events);
+
+        // bulk delete completes once all of its partitions have completed
+        store.writes.get(1).complete(null);
+        assertEquals(1, events.size());
+        store.writes.get(2).complete(null);
+        assertTrue(delete.isDone());
+        assertEquals(Lists.newArrayList("put 1", "delete 2", "delete 3"), events);
+
+        assertEquals(Lists.newArrayList("1"),
+                Lists.transform(store.getAll("3", "1", "").join(), Record::getId));
+    }
+
+    @Test
+    public void testPutAllPartitions() {
+        final List<List<String>> batches = Lists.newArrayList();
+        final ManualStore store = new ManualStore(new TestStoreConfig<>(Record.class) //
+                .withPartitionSize(2) //
+                .withListener(new StoreListener<Record>() {
+                    @Override
+                    public void delete(final Record value) {
+                    }
+
+                    @Override
+                    public void delete(final String id) {
+                    }
+
+                    @Override
+                    public void put(final Record value) {
+                    }
+
+                    @Override
+                    public void putAll(final List<Record> values) {
+                        batches.add(Lists.newArrayList(Lists.transform(values, Record::getId)));
+                    }
+                }));
+
+        // nothing is stored if any value is missing its id
+        final CompletableFuture<Void> invalid = store
+                .putAll(Lists.newArrayList(new Record("1", "one"), new Record(null, "none")));
+        assertTrue(invalid.isCompletedExceptionally());
+        assertTrue(store.writes.isEmpty());
+
+        // last value of a duplicate id wins, and listeners are notified once per partition
+        final CompletableFuture<Void> putAll = store.putAll(Lists.newArrayList(new Record("1", "one"),
+                new Record("2", "two"), new Record("3", "three"), new Record("1", "uno")));
+        assertEquals(3, store.writes.size());
+        assertEquals("uno", store.get("1").join().getName());
+        store.writes.forEach(write -> write.complete(null));
+        assertTrue(putAll.isDone());
+        assertEquals(Lists.newArrayList(Lists.newArrayList("1", "2"), Lists.newArrayList("3")), batches);
+    }
+
+    @Test
+    public void testTimestamps() {
+        final Instant then = Instant.parse("2020-01-01T00:00:00Z");
+        final ManualStore store = new ManualStore(new TestStoreConfig<>(Record.class),
+                Clock.fixed(then, ZoneOffset.UTC));
+        final ZonedDateTime now = ZonedDateTime.ofInstant(then, ZoneOffset.UTC);
+
+        // values are stamped before they are handed to the engine
+        final Record one = new Record("1", "one");
+        store.put(one);
+        assertEquals(now, store.values.get("1").getCreated());
+        assertEquals(now, store.values.get("1").getUpdated());
+        final Record two = new Record("2", "two");
+        store.putAll(Lists.newArrayList(two));
+        assertEquals(now, two.getCreated());
+        assertEquals(now, two.getUpdated());
+
+        // deletes are given their time of deletion, including those in bulk
+        store.delete("1");
+        store.deleteAll("2");
+        assertEquals(now, store.deleted.get("1"));
+        assertEquals(now, store.deleted.get("2"));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.store.cache.CachingMutableStore;
+import com.arakelian.store.cache.CachingStore;
+import com.arakelian.store.memory.InMemoryStore;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+public class CachingStoreTest {
+    @Test
+    public void testEviction() {
+        final InMemoryStore<Record> store = new InMemoryStore<>(new TestStoreConfig<>(Record.class));
+        final CachingStore<Record> cache = new CachingStore<>(store,
+                Caffeine.newBuilder().maximumSize(10).executor(Runnable::run), true);
+        for (int i = 0; i < 100; i++) {
+            store.put(new Record(Integer.toString(i), "name" + i));
+            cache.get(Integer.toString(i));
+        }
+        cache.cleanUp();
+        assertTrue(cache.getEstimatedSize() <= 10);
+        assertTrue(cache.getStats().evictionCount() >= 90);
+    }
+
+    @Test
+    public void testGetAllForwardsMisses() {
+        final InMemoryStore<Record> store = new InMemoryStore<>(new TestStoreConfig<>(Record.class));
+        final Record one = new Record("1", "one");
+        final Record two = new Record("2", "two");
+        final Record three = new Record("3", "three");
+        store.putAll(Lists.newArrayList(one, two, three));
+
+        final CachingStore<Record> cache = new CachingStore<>(store, 100);
+        assertSame(one, cache.get("1"));
+        assertEquals(Lists.newArrayList(three, one, two), cache.getAll("3", "4", "1", "2"));
+
+        // only one lookup for each call, and absent ids are not cached
+        final CacheStats stats = cache.getStats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(4, stats.missCount());
+        assertEquals(2, stats.loadSuccessCount());
+        assertEquals(3, cache.getEstimatedSize());
+    }
+
+    @Test
+    public void testInvalidationDuringGetAll() {
+        final TestStoreConfig<Record> config = new TestStoreConfig<>(Record.class);
+        final InMemoryStore<Record> store = new InMemoryStore<>(config.withSoftDeletes(false));
+        store.put(new Record("1", "one"));
+
+        // value is changed after delegate has read it, but before getAll has cached it
+        final AtomicReference<CachingStore<Record>> ref = new AtomicReference<>();
+        final Store<Record> racing = new Store<Record>() {
+            @Override
+            public Record get(final String id) {
+                return store.get(id);
+            }
+
+            @Override
+            public List<Record> getAll(final Collection<String> ids) {
+                final List<Record> stale = Lists.newArrayList(new Record("1", "one"));
+                ref.get().getListener().delete("1");
+                return stale;
+            }
+
+            @Override
+            public List<Record> getAll(final String... ids) {
+                return getAll(Lists.newArrayList(ids));
+            }
+        };
+        final CachingStore<Record> cache = new CachingStore<>(racing, 100);
+        ref.set(cache);
+
+        // caller sees value that was read, but it is not cached over the invalidation
+        assertEquals("one", cache.getAll("1").get(0).getName());
+        assertEquals(0, cache.getEstimatedSize());
+        assertEquals(1, cache.getStats().loadSuccessCount());
+    }
+
+    @Test
+    public void testListenerInvalidation() {
+        final TestStoreConfig<Record> config = new TestStoreConfig<>(Record.class);
+        final InMemoryStore<Record> store = new InMemoryStore<>(config.withSoftDeletes(false));
+        final CachingStore<Record> cache = new CachingStore<>(store,
+                Caffeine.newBuilder().maximumSize(100), false);
+        config.withListener(cache.getListener());
+
+        store.put(new Record("1", "one"));
+        assertEquals("one", cache.get("1").getName());
+
+        // changes made directly to delegate are seen through listener
+        store.put(new Record("1", "uno"));
+        assertEquals("uno", cache.get("1").getName());
+        store.delete("1");
+        assertNull(cache.get("1"));
+    }
+
+    @Test
+    public void testConcurrentPutsOfSameId() throws Exception {
+        final CountDownLatch stored = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+        final InMemoryStore<Record> store = new InMemoryStore<Record>(new TestStoreConfig<>(Record.class)) {
+            @Override
+            public void put(final Record value) {
+                super.put(value);
+                if ("slow".equals(value.getName())) {
+                    // slow writer pauses between writing the delegate and updating the cache
+                    stored.countDown();
+                    Uninterruptibles.awaitUninterruptibly(resume);
+                }
+            }
+        };
+        final CachingMutableStore<Record> cache = new CachingMutableStore<>(store, 100);
+
+        final Thread slow = new Thread(() -> cache.put(new Record("1", "slow")));
+        slow.start();
+        stored.await();
+        cache.put(new Record("1", "fast"));
+        assertEquals("fast", cache.get("1").getName());
+        resume.countDown();
+        slow.join();
+
+        // delegate holds the later write, and the slow writer must not have cached its own value
+        assertEquals("fast", store.get("1").getName());
+        assertEquals("fast", cache.get("1").getName());
+    }
+
+    @Test
+    public void testMutableStore() {
+        final InMemoryStore<Record> store = new InMemoryStore<>(new TestStoreConfig<>(Record.class));
+        final CachingMutableStore<Record> cache = new CachingMutableStore<>(store, 100);
+        cache.put(new Record("1", "one"));
+        cache.put(new Record("2", "two"));
+        assertEquals("one", cache.get("1").getName());
+        assertEquals(2, cache.getAll("1", "2").size());
+
+        // writes invalidate the cache, so the next read sees the new value
+        cache.put(new Record("1", "uno"));
+        assertEquals("uno", cache.get("1").getName());
+
+        cache.deleteAll("1", "2");
+        assertNull(cache.get("1"));
+        assertNull(store.get("2"));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import static com.arakelian.store.TestPeople.person;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.arakelian.jackson.utils.JacksonUtils;
+import com.arakelian.store.JacksonStoreObjectMapperTest.Person;
+import com.arakelian.store.event.StoreEvent.Action;
+import com.arakelian.store.event.StoreEventPublisher;
+import com.arakelian.store.json.JacksonStoreObjectMapper;
+import com.arakelian.store.memory.InMemoryStore;
+import com.arakelian.store.replication.ChangeLog;
+import com.arakelian.store.replication.ChangeLogFollower;
+import com.arakelian.store.replication.ChangeLogHandler;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class ChangeLogTest {
+    private final JacksonStoreObjectMapper<Person> mapper = new JacksonStoreObjectMapper<>(Person.class,
+            JacksonUtils.getObjectMapper());
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testFollowerResumes() {
+        final Path logDirectory = directory.resolve("log");
+        final Path checkpoint = directory.resolve("follower.checkpoint");
+        final InMemoryStore<Person> replica = new InMemoryStore<>(
+                new TestStoreConfig<>(Person.class).withSoftDeletes(false));
+
+        // small segments, so that follower has to move between them
+        try (ChangeLog log = new ChangeLog(logDirectory, 512)) {
+            write(log, 0, 100);
+            try (ChangeLogFollower<Person> follower = new ChangeLogFollower<>(logDirectory, mapper,
+                    replica, checkpoint, 16)) {
+                assertEquals(100, follower.poll());
+                assertEquals(100, follower.getLastAppliedSequence());
+                assertEquals(0, follower.poll());
+            }
+            assertEquals(100, replica.size());
+        }
+
+        // writer reopens log and continues its sequence, follower resumes after its checkpoint
+        try (ChangeLog log = new ChangeLog(logDirectory, 512)) {
+            assertEquals(100, log.getLastSequence());
+            write(log, 100, 150);
+            try (ChangeLogFollower<Person> follower = new ChangeLogFollower<>(logDirectory, mapper,
+                    replica, checkpoint, 16)) {
+                assertEquals(100, follower.getLastAppliedSequence());
+                assertEquals(50, follower.poll());
+                assertTrue(log.truncate(follower.getLastAppliedSequence()) > 0);
+            }
+        }
+
+        assertEquals(150, replica.size());
+        assertEquals("name149", replica.get("149").getName());
+    }
+
+    @Test
+    public void testReplicateEvents() {
+        final Path logDirectory = directory.resolve("log");
+        final InMemoryStore<Person> replica = new InMemoryStore<>(
+                new TestStoreConfig<>(Person.class).withSoftDeletes(false));
+
+        try (ChangeLog log = new ChangeLog(logDirectory, 4096)) {
+            try (StoreEventPublisher<Person> publisher = new StoreEventPublisher<>(64,
+                    ImmutableList.of(new ChangeLogHandler<>(log, mapper, true)))) {
+                final InMemoryStore<Person> primary = new InMemoryStore<>(
+                        new TestStoreConfig<>(Person.class).withSoftDeletes(false).withListener(publisher));
+                final List<Person> values = Lists.newArrayList();
+                for (int i = 0; i < 200; i++) {
+                    values.add(person(Integer.toString(i), "name" + i));
+                }
+                primary.putAll(values);
+                primary.delete("7");
+                primary.deleteAll("8", "9");
+                primary.put(person("8", "name8"));
+            }
+
+            // closing publisher waits for every event to be logged
+            assertEquals(204, log.getLastSequence());
+            try (ChangeLogFollower<Person> follower = new ChangeLogFollower<>(logDirectory, mapper,
+                    replica, directory.resolve("follower.checkpoint"))) {
+                assertEquals(204, follower.poll());
+            }
+        }
+
+        assertEquals(198, replica.size());
+        assertNull(replica.get("7"));
+        assertNull(replica.get("9"));
+        assertEquals("name8", replica.get("8").getName());
+    }
+
+    @Test
+    public void testReplayedDeletesKeepTombstones() {
+        final Path logDirectory = directory.resolve("log");
+        final InMemoryStore<Person> replica = new InMemoryStore<>(
+                new TestStoreConfig<>(Person.class).withSoftDeletes(true));
+
+        try (ChangeLog log = new ChangeLog(logDirectory, 4096)) {
+            try (StoreEventPublisher<Person> publisher = new StoreEventPublisher<>(64,
+                    ImmutableList.of(new ChangeLogHandler<>(log, mapper, true)))) {
+                final InMemoryStore<Person> primary = new InMemoryStore<>(
+                        new TestStoreConfig<>(Person.class).withSoftDeletes(true).withListener(publisher));
+                primary.putAll(Lists.newArrayList(person("1", "name1"), person("2", "name2")));
+                primary.delete("1");
+            }
+
+            // second follower has lost its checkpoint, and applies every change again
+            for (final String name : new String[] { "first.checkpoint", "second.checkpoint" }) {
+                try (ChangeLogFollower<Person> follower = new ChangeLogFollower<>(logDirectory, mapper,
+                        replica, directory.resolve(name))) {
+                    assertEquals(3, follower.poll());
+                }
+                assertNull(replica.get("1"));
+                assertEquals(List.of("1"), replica.deletedIds(ZonedDateTime.now().plusDays(1)) //
+                        .collect(Collectors.toList()));
+            }
+        }
+    }
+
+    private void write(final ChangeLog log, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            final Person person = person(Integer.toString(i), "name" + i);
+            log.append(Action.PUT, person.getId(), serialize(person));
+        }
+    }
+
+    private byte[] serialize(final Person person) {
+        try {
+            return mapper.writeValueAsBytes(person);
+        } catch (final IOException e) {
+            throw new StoreException(e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.store.coalesce.CoalescingMutableStore;
+import com.arakelian.store.memory.InMemoryStore;
+import com.google.common.collect.Lists;
+
+public class CoalescingStoreTest {
+    /** Store that counts reads, and holds them until released **/
+    private static class SlowStore extends InMemoryStore<Record> {
+        private final AtomicInteger reads = new AtomicInteger();
+        private final CountDownLatch release;
+
+        private SlowStore(final CountDownLatch release) {
+            super(new TestStoreConfig<>(Record.class).withSoftDeletes(false));
+            this.release = release;
+        }
+
+        @Override
+        public List<Record> getAll(final Collection<String> ids) {
+            reads.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.getAll(ids);
+        }
+    }
+
+    @Test
+    public void testBatching() throws Exception {
+        final SlowStore delegate = new SlowStore(new CountDownLatch(0));
+        for (int i = 0; i < 8; i++) {
+            delegate.put(new Record(Integer.toString(i), "name" + i));
+        }
+
+        // a long window only delays reads of batches that are not filled
+        final CoalescingMutableStore<Record> store = new CoalescingMutableStore<>(delegate,
+                Duration.ofSeconds(5), 4);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final long start = System.nanoTime();
+            final List<Future<Record>> futures = Lists.newArrayList();
+            for (int i = 0; i < 8; i++) {
+                final String id = Integer.toString(i);
+                futures.add(executor.submit(() -> store.get(id)));
+            }
+            for (int i = 0; i < 8; i++) {
+                assertEquals("name" + i, futures.get(i).get().getName());
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2, store.getBatchCount());
+        assertEquals(2, delegate.reads.get());
+
+        // writes are visible to gets that follow them
+        store.delete("0");
+        assertNull(store.get("0"));
+        assertEquals(3, store.getAll("0", "1", "2", "3").size());
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final SlowStore delegate = new SlowStore(release);
+        delegate.put(new Record("hot", "hot"));
+
+        final CoalescingMutableStore<Record> store = new CoalescingMutableStore<>(delegate, Duration.ZERO,
+                100);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Record>> futures = Lists.newArrayList();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> store.get("hot")));
+            }
+
+            // every get joins the single read in flight
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (store.getCoalescedCount() < 7 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (final Future<Record> future : futures) {
+                assertEquals("hot", future.get().getName());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, delegate.reads.get());
+        assertEquals(7, store.getCoalescedCount());
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.store.event.StoreListener;
+import com.arakelian.store.memory.InMemoryStore;
+import com.arakelian.store.purge.TombstonePurger;
+import com.google.common.collect.Lists;
+
+public class InMemoryStoreTest {
+    @Test
+    public void testConcurrentPutAndGet() throws Exception {
+        final InMemoryStore<Record> store = new InMemoryStore<>(new TestStoreConfig<>(Record.class));
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = Lists.newArrayList();
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        final String id = thread + "-" + i;
+                        store.put(new Record(id, "name" + i));
+                        assertNotNull(store.get(id));
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(4000, store.size());
+    }
+
+    @Test
+    public void testHardDelete() {
+        final InMemoryStore<Record> store = new InMemoryStore<>(
+                new TestStoreConfig<>(Record.class).withSoftDeletes(false));
+        store.putAll(Lists.newArrayList(new Record("1", "one"), new Record("2", "two")));
+        store.delete("1");
+        assertNull(store.get("1"));
+        assertEquals(1, store.size());
+        assertEquals(1, store.getAll("1", "2").size());
+    }
+
+    @Test
+    public void testParallelPartitions() {
+        final List<String> deleted = Lists.newArrayList();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final InMemoryStore<Record> store = new InMemoryStore<>(new TestStoreConfig<>(Record.class)
+                    .withPartitionSize(3).withExecutor(executor, 2).withSoftDeletes(false)
+                    .withListener(new StoreListener<Record>() {
+                        @Override
+                        public void delete(final Record value) {
+                            deleted.add(value.getId());
+                        }
+
+                        @Override
+                        public void delete(final String id) {
+                            deleted.add(id);
+                        }
+
+                        @Override
+                        public void put(final Record value) {
+                        }
+                    }));
+            final List<String> ids = Lists.newArrayList();
+            for (int i = 0; i < 100; i++) {
+                store.put(new Record(Integer.toString(i), "name" + i));
+                ids.add(Integer.toString(99 - i));
+            }
+
+            // results are in order of ids, even though partitions are fetched concurrently
+            final List<Record> values = store.getAll(ids);
+            assertEquals(100, values.size());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(ids.get(i), values.get(i).getId());
+            }
+
+            // listeners are notified on calling thread, in order
+            store.deleteAll(ids.toArray(new String[0]));
+            assertEquals(0, store.size());
+            assertEquals(ids, deleted);
+
+            // partitions of a putAll are applied in order, so the last value of an id always wins
+            final List<Record> records = Lists.newArrayList();
+            for (int i = 0; i < 10; i++) {
+                records.add(new Record(i == 9 ? "0" : Integer.toString(i), "name" + i));
+            }
+            store.putAll(records);
+            assertEquals("name9", store.get("0").getName());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPutAndGetAll() {
+        final InMemoryStore<Record> store = new InMemoryStore<>(
+                new TestStoreConfig<>(Record.class).withPartitionSize(2));
+        final Record one = new Record("1", "one");
+        final Record two = new Record("2", "two");
+        final Record three = new Record("3", "three");
+        store.putAll(Lists.newArrayList(one, two, three));
+
+        assertSame(two, store.get("2"));
+        assertNull(store.get("4"));
+        assertEquals(Lists.newArrayList(three, one, two), store.getAll("3", "4", "1", "2"));
+    }
+
+    @Test
+    public void testPutAllPartitions() {
+        final List<Integer> batches = Lists.newArrayList();
+        final InMemoryStore<Record> store = new InMemoryStore<Record>(
+                new TestStoreConfig<>(Record.class).withPartitionSize(4)) {
+            @Override
+            protected void doPutAll(final List<Record> values) {
+                batches.add(values.size());
+                super.doPutAll(values);
+            }
+        };
+
+        final List<Record> values = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            values.add(new Record(Integer.toString(i), "name" + i));
+        }
+        values.add(null);
+        store.putAll(values);
+        assertEquals(Lists.newArrayList(4, 4, 2), batches);
+        assertEquals(10, store.size());
+
+        // values are validated before any of them are stored
+        values.add(new Record(null, "invalid"));
+        store.clear();
+        assertThrows(StoreException.class, () -> store.putAll(values));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testPurge() {
+        final Instant now = Instant.parse("2020-01-01T12:00:00Z");
+        final InMemoryStore<Record> store = new InMemoryStore<>(
+                new TestStoreConfig<>(Record.class).withSoftDeletes(true), 16,
+                Clock.fixed(now.minus(Duration.ofHours(2)), ZoneOffset.UTC));
+        for (int i = 0; i < 100; i++) {
+            store.put(new Record(Integer.toString(i), "name" + i));
+        }
+        for (int i = 0; i < 50; i++) {
+            store.delete(Integer.toString(i));
+        }
+
+        // recently soft-deleted value is retained
+        store.get("50").setDeleted(ZonedDateTime.ofInstant(now, ZoneOffset.UTC));
+        store.get("51").setDeleted(ZonedDateTime.ofInstant(now.minus(Duration.ofDays(1)), ZoneOffset.UTC));
+
+        try (TombstonePurger<Record> purger = new TombstonePurger<>(store, Duration.ofHours(1), 20,
+                Duration.ZERO, Clock.fixed(now, ZoneOffset.UTC))) {
+            assertEquals(51, purger.purge());
+            assertEquals(3, purger.getBatchCount());
+            assertEquals(1, purger.getPassCount());
+            assertEquals(49, store.mappingCount());
+            assertEquals(0, purger.purge());
+        }
+
+        // values stored again after scan are not purged
+        store.put(new Record("52", "again"));
+        assertEquals(0, store.purgeAll(Lists.newArrayList("52", "53")));
+        assertEquals("again", store.get("52").getName());
+    }
+
+    @Test
+    public void testScan() {
+        final InMemoryStore<Record> store = new InMemoryStore<>(
+                new TestStoreConfig<>(Record.class).withSoftDeletes(true));
+        for (int i = 0; i < 1000; i++) {
+            store.put(new Record(Integer.toString(i), "name" + i));
+        }
+
+        // tombstones are never returned, soft-deleted values are optional
+        store.delete("1");
+        store.get("2").setDeleted(ZonedDateTime.now());
+        assertEquals(999, store.ids().count());
+        assertEquals(999, store.stream().parallel().map(Record::getId).distinct().count());
+        assertEquals(998, store.stream(true).parallel().count());
+        assertTrue(store.ids().noneMatch("1"::equals));
+    }
+
+    @Test
+    public void testSoftDelete() {
+        final InMemoryStore<Record> store = new InMemoryStore<>(
+                new TestStoreConfig<>(Record.class).withSoftDeletes(true));
+        store.put(new Record("1", "one"));
+
+        // first delete leaves tombstone behind
+        store.delete("1");
+        assertNull(store.get("1"));
+        assertEquals(0, store.size());
+        assertEquals(1, store.mappingCount());
+
+        // second delete purges tombstone
+        store.delete("1");
+        assertEquals(0, store.mappingCount());
+    }
+
+    @Test
+    public void testTimestamps() {
+        final InMemoryStore<Record> store = new InMemoryStore<>(new TestStoreConfig<>(Record.class));
+        final Record record = new Record("1", "one");
+        store.put(record);
+        assertNotNull(record.getCreated());
+        assertNotNull(record.getUpdated());
+
+        final ZonedDateTime created = record.getCreated();
+        store.put(record);
+        assertSame(created, record.getCreated());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.store.index.IndexedMutableStore;
+import com.arakelian.store.index.SecondaryIndex;
+import com.arakelian.store.index.TimestampIndex;
+import com.arakelian.store.index.TimestampIndex.Field;
+import com.arakelian.store.memory.InMemoryStore;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class IndexedMutableStoreTest {
+    @Test
+    public void testIndexes() {
+        final TestStoreConfig<Record> config = new TestStoreConfig<>(Record.class);
+        final IndexedMutableStore<Record> store = new IndexedMutableStore<>(
+                new InMemoryStore<>(config.withSoftDeletes(false)));
+        final SecondaryIndex<Record> byName = store.addIndex("name", Record::getName);
+        store.addIndex("initial", record -> ImmutableList.of(record.getName().substring(0, 1), "x"));
+        config.withListener(store.getListener());
+
+        final Record one = new Record("1", "one");
+        final Record two = new Record("2", "two");
+        final Record three = new Record("3", "three");
+        store.putAll(Lists.newArrayList(one, two, three));
+        assertSame(one, store.getBy("name", "one"));
+        assertEquals(Lists.newArrayList(two, three), sorted(store.getAllBy("initial", "t", "x")));
+        assertTrue(store.getAllBy("name", "four").isEmpty());
+
+        // updates move value to new key
+        store.put(new Record("2", "one"));
+        assertEquals(2, store.getAllBy("name", "one").size());
+        assertTrue(store.getAllBy("name", "two").isEmpty());
+        assertEquals(2, byName.getKeyCount());
+
+        // deletes by id and by index
+        store.delete("1");
+        assertEquals("2", store.getBy("name", "one").getId());
+        store.deleteBy("initial", "t", "x");
+        assertNull(store.get("3"));
+        assertEquals(1, byName.size());
+
+        assertThrows(IllegalArgumentException.class, () -> store.getBy("missing", "one"));
+        assertThrows(IllegalArgumentException.class, () -> store.addIndex("name", Record::getId));
+    }
+
+    @Test
+    public void testTimestampIndex() {
+        final AtomicLong millis = new AtomicLong(1_000_000L);
+        final Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(millis.get());
+            }
+
+            @Override
+            public Clock withZone(final ZoneId zone) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        final TestStoreConfig<Record> config = new TestStoreConfig<>(Record.class);
+        final IndexedMutableStore<Record> store = new IndexedMutableStore<>(
+                new InMemoryStore<>(config.withSoftDeletes(false), 16, clock));
+        final TimestampIndex<Record> updated = store.addTimestampIndex("updated", Field.UPDATED);
+        config.withListener(store.getListener());
+
+        // ten values, two per millisecond
+        final List<ZonedDateTime> times = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            if (i % 2 == 0) {
+                times.add(clock.instant().atZone(ZoneOffset.UTC));
+            }
+            store.put(new Record(Integer.toString(i), "name"));
+            if (i % 2 == 1) {
+                millis.incrementAndGet();
+            }
+        }
+
+        // range queries, bounds may be in other zones
+        final ZonedDateTime since = times.get(3).withZoneSameInstant(ZoneId.of("America/New_York"));
+        assertEquals(Lists.newArrayList("6", "7", "8", "9"), updated.getIds(since, null));
+        assertEquals(
+                Lists.newArrayList("2", "3"),
+                ids(store.getAllBy("updated", times.get(1), times.get(2))));
+
+        // paginate through values changed since, with cursor of last value of each page
+        final List<String> ids = new ArrayList<>();
+        TimestampIndex.Entry after = null;
+        for (List<Record> page; (page = store.getAllBetween("updated", times.get(1), null, after, 3))
+                .size() != 0;) {
+            ids.addAll(ids(page));
+            after = updated.entryOf(page.get(page.size() - 1));
+        }
+        assertEquals(Lists.newArrayList("2", "3", "4", "5", "6", "7", "8", "9"), ids);
+
+        // updates move value to end, deletes remove it
+        store.put(store.get("2"));
+        store.delete("9");
+        assertEquals(Lists.newArrayList("8", "2"), updated.getIds(times.get(4), null));
+        assertEquals(9, updated.size());
+    }
+
+    private List<String> ids(final List<Record> records) {
+        return Lists.transform(records, Record::getId);
+    }
+
+    private List<Record> sorted(final List<Record> records) {
+        final List<Record> list = Lists.newArrayList(records);
+        list.sort((a, b) -> a.getId().compareTo(b.getId()));
+        return list;
+    }
+}
@@ -17,9 +17,22 @@
 
 package com.arakelian.store;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.jupiter.api.Test;
 
@@ -27,6 +40,8 @@ import com.arakelian.core.utils.MoreStringUtils;
 import com.arakelian.jackson.utils.JacksonUtils;
 import com.arakelian.store.feature.HasId;
 import com.arakelian.store.json.JacksonStoreObjectMapper;
+import com.arakelian.store.json.SmileStoreObjectMapper;
+import com.arakelian.store.json.StoreObjectMapper;
 
 public class JacksonStoreObjectMapperTest {
     public enum Gender {
@@ -120,4 +135,118 @@ public class JacksonStoreObjectMapperTest {
         final Person actual = mapper.readValue(json);
         assertEquals(expected, actual);
     }
+
+    @Test
+    public void testBytes() throws IOException {
+        assertRoundTrip(new JacksonStoreObjectMapper<>(Person.class, JacksonUtils.getObjectMapper()));
+    }
+
+    @Test
+    public void testReadValues() throws IOException {
+        final JacksonStoreObjectMapper<Person> mapper = new JacksonStoreObjectMapper<>(Person.class,
+                JacksonUtils.getObjectMapper());
+        final List<Person> expected = new ArrayList<>();
+        final List<byte[]> payloads = new ArrayList<>();
+        final StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 3 * StoreObjectMapper.PARALLEL_CHUNK_SIZE; i++) {
+            final Person person = person();
+            expected.add(person);
+            payloads.add(mapper.writeValueAsBytes(person));
+            ndjson.append(mapper.writeValueAsString(person)).append('\n');
+        }
+
+        // empty payloads are skipped
+        final List<byte[]> withEmpty = new ArrayList<>(payloads);
+        withEmpty.add(1, new byte[0]);
+        assertEquals(expected, mapper.readValues(withEmpty));
+
+        // chunks decoded concurrently are returned in order
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(expected, mapper.readValues(payloads, executor));
+        } finally {
+            executor.shutdown();
+        }
+
+        // newline-delimited stream, read with single parser or line by line
+        final byte[] stream = ndjson.toString().getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected, mapper.readValues(new ByteArrayInputStream(stream)));
+        final StoreObjectMapper<Person> lines = new StoreObjectMapper<Person>() {
+            @Override
+            public Person readValue(final String value) throws IOException {
+                return mapper.readValue(value);
+            }
+
+            @Override
+            public String writeValueAsString(final Person value) throws IOException {
+                return mapper.writeValueAsString(value);
+            }
+        };
+        assertEquals(expected, lines.readValues(new ByteArrayInputStream(stream)));
+
+        // concatenated binary values
+        final SmileStoreObjectMapper<Person> smile = new SmileStoreObjectMapper<>(Person.class);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final List<byte[]> smilePayloads = new ArrayList<>();
+        for (final Person person : expected) {
+            smile.writeValue(out, person);
+            smilePayloads.add(smile.writeValueAsBytes(person));
+        }
+        assertEquals(expected, smile.readValues(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(expected, smile.readValues(smilePayloads));
+
+        // truncated payload is not allowed to run into the next one
+        final List<byte[]> truncated = new ArrayList<>(payloads);
+        truncated.set(0, Arrays.copyOf(payloads.get(0), payloads.get(0).length - 1));
+        assertThrows(IOException.class, () -> mapper.readValues(truncated));
+    }
+
+    @Test
+    public void testSmile() throws IOException {
+        final SmileStoreObjectMapper<Person> mapper = new SmileStoreObjectMapper<>(Person.class);
+        assertRoundTrip(mapper);
+
+        // binary encoding is more compact than JSON
+        final Person person = person();
+        final JacksonStoreObjectMapper<Person> json = new JacksonStoreObjectMapper<>(Person.class,
+                JacksonUtils.getObjectMapper());
+        assertTrue(mapper.writeValueAsBytes(person).length < json.writeValueAsBytes(person).length);
+        assertEquals(person, mapper.readValue(mapper.writeValueAsString(person)));
+    }
+
+    private void assertRoundTrip(final StoreObjectMapper<Person> mapper) throws IOException {
+        final Person expected = person();
+        final byte[] bytes = mapper.writeValueAsBytes(expected);
+        assertEquals(expected, mapper.readValue(bytes));
+
+        // ranges of arrays, and heap and direct buffers
+        final byte[] padded = new byte[bytes.length + 2];
+        System.arraycopy(bytes, 0, padded, 1, bytes.length);
+        assertEquals(expected, mapper.readValue(padded, 1, bytes.length));
+        assertEquals(expected, mapper.readValue(ByteBuffer.wrap(padded, 1, bytes.length)));
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals(expected, mapper.readValue(direct));
+        assertEquals(0, direct.position());
+
+        // streams are left open
+        final ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                throw new AssertionError("stream should not be closed");
+            }
+        };
+        mapper.writeValue(out, expected);
+        assertArrayEquals(bytes, out.toByteArray());
+        assertEquals(expected, mapper.readValue(new ByteArrayInputStream(out.toByteArray())));
+        assertNull(mapper.readValue(new byte[0]));
+    }
+
+    private Person person() {
+        final Person person = new Person();
+        person.setId(MoreStringUtils.uuid());
+        person.setName("Greg Arakelian");
+        person.setGender(Gender.MALE);
+        return person;
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import static com.arakelian.store.TestPeople.person;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.arakelian.jackson.utils.JacksonUtils;
+import com.arakelian.store.JacksonStoreObjectMapperTest.Person;
+import com.arakelian.store.json.JacksonStoreObjectMapper;
+import com.arakelian.store.log.LogStore;
+
+public class LogStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testMergeAndRestart() throws Exception {
+        try (LogStore<Person> store = open()) {
+            for (int i = 0; i < 500; i++) {
+                store.put(person(Integer.toString(i % 50), "name" + i));
+            }
+            for (int i = 0; i < 10; i++) {
+                store.delete(Integer.toString(i));
+            }
+            assertTrue(store.getSegmentCount() > 2);
+            store.merge();
+            assertEquals(40, store.size());
+            store.put(person("0", "resurrected"));
+        }
+
+        // hint files are written by merge
+        assertTrue(Files.list(directory).anyMatch(path -> path.toString().endsWith(".hint")));
+
+        try (LogStore<Person> store = open()) {
+            assertEquals(41, store.size());
+            assertEquals("resurrected", store.get("0").getName());
+            assertNull(store.get("1"));
+            assertEquals("name499", store.get("49").getName());
+        }
+    }
+
+    @Test
+    public void testMergeGarbage() throws Exception {
+        final Path first = directory.resolve(String.format("%016x.log", 0));
+        final int segments;
+        try (LogStore<Person> store = open()) {
+            // first segments hold values that are never overwritten, and one that is deleted later
+            store.put(person("d", "deleted"));
+            for (int i = 0; i < 20; i++) {
+                store.put(person("a" + i, "name" + i));
+            }
+            store.delete("d");
+            for (int i = 0; i < 200; i++) {
+                store.put(person("b", "name" + i));
+            }
+
+            final int before = store.getSegmentCount();
+            store.mergeGarbage(0.5);
+            segments = store.getSegmentCount();
+            assertTrue(segments < before / 2, "Expected segments of overwritten values to be merged");
+            assertTrue(Files.exists(first), "Expected segment with little garbage to be left alone");
+            assertNull(store.get("d"));
+        }
+
+        // tombstone must survive the merge, since the deleted record is still in the first segment
+        try (LogStore<Person> store = open()) {
+            assertEquals(segments + 1, store.getSegmentCount());
+            assertNull(store.get("d"));
+            assertEquals(21, store.size());
+            assertEquals("name19", store.get("a19").getName());
+            assertEquals("name199", store.get("b").getName());
+        }
+    }
+
+    @Test
+    public void testPutDeleteAndRestart() {
+        try (LogStore<Person> store = open()) {
+            store.put(person("1", "one"));
+            store.put(person("2", "two"));
+            store.put(person("1", "uno"));
+            store.delete("2");
+            assertEquals("uno", store.get("1").getName());
+            assertNull(store.get("2"));
+        }
+
+        try (LogStore<Person> store = open()) {
+            assertEquals(1, store.size());
+            assertEquals("uno", store.get("1").getName());
+            assertNull(store.get("2"));
+            assertEquals(1, store.getAll("1", "2").size());
+        }
+    }
+
+    private LogStore<Person> open() {
+        return new LogStore<>(new TestStoreConfig<>(Person.class),
+                new JacksonStoreObjectMapper<>(Person.class, JacksonUtils.getObjectMapper()), directory, 1024,
+                0);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import static com.arakelian.store.TestPeople.person;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.arakelian.jackson.utils.JacksonUtils;
+import com.arakelian.store.JacksonStoreObjectMapperTest.Person;
+import com.arakelian.store.json.JacksonStoreObjectMapper;
+import com.arakelian.store.lsm.LsmStore;
+import com.arakelian.store.wal.FsyncPolicy;
+import com.arakelian.store.wal.WriteAheadLog;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+
+public class LsmStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testCompactionAndRestart() {
+        try (LsmStore<Person> store = open()) {
+            for (int i = 0; i < 5000; i++) {
+                store.put(person(String.format("%05d", i % 2000), "name" + i));
+            }
+            for (int i = 0; i < 2000; i += 10) {
+                store.delete(String.format("%05d", i));
+            }
+            store.compact();
+            assertTrue(store.getLevelSizes().size() > 1, "Expected compaction into level 1");
+            assertEquals("name4999", store.get("00999").getName());
+            assertNull(store.get("00010"));
+        }
+
+        try (LsmStore<Person> store = open()) {
+            assertEquals("name4001", store.get("00001").getName());
+            assertEquals("name4999", store.get("00999").getName());
+            assertNull(store.get("00010"));
+            assertEquals(2, store.getAll("00001", "00010", "00011").size());
+        }
+    }
+
+    @Test
+    public void testBloomFilters() {
+        try (LsmStore<Person> store = open()) {
+            for (int i = 0; i < 2000; i++) {
+                store.put(person("id" + i, "name" + i));
+            }
+            store.compact();
+
+            final long reads = store.getTableReads();
+            for (int i = 0; i < 1000; i++) {
+                assertNull(store.get("missing" + i));
+            }
+            assertTrue(store.getBloomFilterNegatives() > 0);
+            assertTrue(store.getTableReads() - reads < 100, "Bloom filters should avoid most reads");
+        }
+    }
+
+    @Test
+    public void testConcurrentRotateAndFlush() throws InterruptedException {
+        // small memtables make writers rotate while background flushes install new versions
+        final int threads = 4;
+        final int perThread = 2000;
+        try (LsmStore<Person> store = open()) {
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                executor.execute(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        store.put(person(thread + "-" + i, "name" + i));
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+            store.compact();
+            assertEquals(threads * perThread, store.ids().count());
+        }
+
+        // tables dropped by a rotation racing a flush would be missing from the manifest
+        try (LsmStore<Person> store = open()) {
+            assertEquals(threads * perThread, store.ids().count());
+            for (int t = 0; t < threads; t++) {
+                assertEquals("name" + (perThread - 1), store.get(t + "-" + (perThread - 1)).getName());
+            }
+        }
+    }
+
+    @Test
+    public void testFlushFailure() throws Exception {
+        final Path path = directory.resolve("store");
+        int written = 0;
+        try (LsmStore<Person> store = open(path)) {
+            // nothing has been flushed yet, so we can pull the directory out from under the store
+            Files.delete(path);
+            StoreException failure = null;
+            while (failure == null && written < 1_000_000) {
+                try {
+                    store.put(person("id" + written, "name" + written));
+                    written++;
+                } catch (final StoreException e) {
+                    failure = e;
+                }
+            }
+            assertNotNull(failure, "Expected writes to be refused once a flush fails");
+            assertEquals("name0", store.get("id0").getName());
+
+            // flush is retried in the background, and writes resume once it succeeds
+            Files.createDirectories(path);
+            boolean resumed = false;
+            for (int i = 0; i < 100 && !resumed; i++) {
+                try {
+                    store.put(person("id" + written, "name" + written));
+                    written++;
+                    resumed = true;
+                } catch (final StoreException e) {
+                    Thread.sleep(100);
+                }
+            }
+            assertTrue(resumed, "Expected writes to resume once the flush is retried");
+            assertEquals(written, store.ids().count());
+        }
+
+        try (LsmStore<Person> store = open(path)) {
+            assertEquals(written, store.ids().count());
+        }
+    }
+
+    @Test
+    public void testScan() {
+        try (LsmStore<Person> store = open()) {
+            for (int i = 0; i < 3000; i++) {
+                store.put(person(String.format("%05d", i % 2000), "name" + i));
+            }
+            store.compact();
+            for (int i = 0; i < 2000; i += 10) {
+                store.delete(String.format("%05d", i));
+            }
+
+            // latest value of each id, merged from memtable and tables in id order
+            final List<String> ids = store.ids().collect(Collectors.toList());
+            assertEquals(1800, ids.size());
+            assertEquals("00001", ids.get(0));
+            assertEquals(Ordering.natural().sortedCopy(ids), ids);
+            final List<Person> values = store.stream().parallel().collect(Collectors.toList());
+            assertEquals(ids, Lists.transform(values, Person::getId));
+            assertEquals("name2001", values.get(0).getName());
+        }
+    }
+
+    @Test
+    public void testWriteAheadLogTruncation() throws Exception {
+        final Path path = directory.resolve("store");
+        final Path log = directory.resolve("wal");
+        final Path crashed = directory.resolve("crashed");
+        try (WriteAheadLog<Person> wal = wal(log); LsmStore<Person> store = open(path, wal)) {
+            for (int i = 0; i < 2000; i++) {
+                store.put(person("id" + i, "name" + i));
+            }
+            store.compact();
+
+            // every rotation starts a new log segment, but flushed segments are deleted
+            assertTrue(list(log).size() <= 2, "Expected flushed log segments to be deleted");
+
+            // copy files of the running store, as if the process had died
+            copy(path, crashed.resolve("store"));
+            copy(log, crashed.resolve("wal"));
+        }
+
+        try (WriteAheadLog<Person> wal = wal(crashed.resolve("wal"));
+                LsmStore<Person> store = open(crashed.resolve("store"), wal)) {
+            store.recover();
+            assertEquals(2000, store.ids().count());
+            assertEquals("name1999", store.get("id1999").getName());
+        }
+    }
+
+    private void copy(final Path from, final Path to) throws IOException {
+        Files.createDirectories(to);
+        for (final Path file : list(from)) {
+            Files.copy(file, to.resolve(file.getFileName()));
+        }
+    }
+
+    private List<Path> list(final Path path) throws IOException {
+        try (Stream<Path> files = Files.list(path)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    private LsmStore<Person> open() {
+        return open(directory);
+    }
+
+    private LsmStore<Person> open(final Path path) {
+        return open(path, null);
+    }
+
+    private LsmStore<Person> open(final Path path, final WriteAheadLog<Person> wal) {
+        return new LsmStore<>(new TestStoreConfig<>(Person.class).withWriteAheadLog(wal),
+                new JacksonStoreObjectMapper<>(Person.class, JacksonUtils.getObjectMapper()), path,
+                8 * 1024, 4 * 1024);
+    }
+
+    private WriteAheadLog<Person> wal(final Path path) {
+        return new WriteAheadLog<>(path,
+                new JacksonStoreObjectMapper<>(Person.class, JacksonUtils.getObjectMapper()), FsyncPolicy.OS);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import static com.arakelian.store.TestPeople.person;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.jackson.utils.JacksonUtils;
+import com.arakelian.store.JacksonStoreObjectMapperTest.Person;
+import com.arakelian.store.json.JacksonStoreObjectMapper;
+import com.arakelian.store.offheap.OffHeapStore;
+import com.google.common.base.Strings;
+
+public class OffHeapStoreTest {
+    private final OffHeapStore<Person> store = new OffHeapStore<>(new TestStoreConfig<>(Person.class),
+            new JacksonStoreObjectMapper<>(Person.class, JacksonUtils.getObjectMapper()), 4096);
+
+    @Test
+    public void testFreeSpaceReuse() {
+        store.put(person("1", "Jane"));
+        final long used = store.getOffHeapUsed();
+        assertTrue(used > 0);
+
+        // overwrite with value of same size class
+        for (int i = 0; i < 100; i++) {
+            store.put(person("1", "Jane" + i % 10));
+        }
+        assertEquals(used, store.getOffHeapUsed());
+        assertEquals(4096, store.getOffHeapAllocated());
+
+        store.delete("1");
+        assertEquals(0, store.getOffHeapUsed());
+        assertNull(store.get("1"));
+    }
+
+    @Test
+    public void testPutAndGet() {
+        final Person jane = person("1", "Jane");
+        final Person mary = person("2", "Mary");
+        store.putAll(new Person[] { jane, mary });
+        assertEquals(jane, store.get("1"));
+        assertEquals(mary, store.get("2"));
+        assertEquals(2, store.getAll("2", "1", "3").size());
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void testValueTooLarge() {
+        assertThrows(StoreException.class, () -> store.put(person("1", Strings.repeat("x", 8192))));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import java.time.ZonedDateTime;
+
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.feature.HasMutableTimestamp;
+import com.arakelian.store.feature.HasSoftDeletes;
+import com.arakelian.store.json.StoreObjectMapper;
+import com.google.common.base.MoreObjects;
+
+public class Record implements HasId, HasMutableTimestamp, HasSoftDeletes {
+    /**
+     * Returns a mapper that preserves timestamps, which the Jackson mapper used by tests does not
+     * know how to read.
+     *
+     * @return mapper that preserves timestamps
+     */
+    public static StoreObjectMapper<Record> mapper() {
+        return new StoreObjectMapper<Record>() {
+            @Override
+            public Record readValue(final String value) {
+                final String[] fields = value.split("\t", -1);
+                final Record record = new Record(fields[0], fields[1]);
+                record.setCreated(parse(fields[2]));
+                record.setUpdated(parse(fields[3]));
+                record.setDeleted(parse(fields[4]));
+                return record;
+            }
+
+            @Override
+            public String writeValueAsString(final Record value) {
+                return String.join("\t", value.getId(), value.getName(), format(value.getCreated()),
+                        format(value.getUpdated()), format(value.getDeleted()));
+            }
+        };
+    }
+
+    private static String format(final ZonedDateTime time) {
+        return time != null ? time.toString() : "";
+    }
+
+    private static ZonedDateTime parse(final String time) {
+        return !time.isEmpty() ? ZonedDateTime.parse(time) : null;
+    }
+
+    private String id;
+
+    private String name;
+
+    private ZonedDateTime created;
+
+    private ZonedDateTime updated;
+
+    private ZonedDateTime deleted;
+
+    public Record() {
+    }
+
+    public Record(final String id, final String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    @Override
+    public final ZonedDateTime getCreated() {
+        return created;
+    }
+
+    @Override
+    public final ZonedDateTime getDeleted() {
+        return deleted;
+    }
+
+    @Override
+    public final String getId() {
+        return id;
+    }
+
+    public final String getName() {
+        return name;
+    }
+
+    @Override
+    public final ZonedDateTime getUpdated() {
+        return updated;
+    }
+
+    @Override
+    public final void setCreated(final ZonedDateTime created) {
+        this.created = created;
+    }
+
+    public final void setDeleted(final ZonedDateTime deleted) {
+        this.deleted = deleted;
+    }
+
+    public final void setId(final String id) {
+        this.id = id;
+    }
+
+    public final void setName(final String name) {
+        this.name = name;
+    }
+
+    @Override
+    public final void setUpdated(final ZonedDateTime updated) {
+        this.updated = updated;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("id", id) //
+                .add("name", name) //
+                .toString();
+    }
+}
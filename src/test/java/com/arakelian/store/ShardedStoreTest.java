@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.store.event.StoreListener;
+import com.arakelian.store.memory.InMemoryStore;
+import com.arakelian.store.shard.ShardedStore;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+public class ShardedStoreTest {
+    private static InMemoryStore<Record> shard() {
+        return new InMemoryStore<>(new TestStoreConfig<>(Record.class).withSoftDeletes(false));
+    }
+
+    @Test
+    public void testAddShard() throws Exception {
+        final ShardedStore<Record> store = new ShardedStore<>(new TestStoreConfig<>(Record.class),
+                ImmutableMap.of("a", shard(), "b", shard()), 64, 100);
+        final List<Record> values = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            values.add(new Record(Integer.toString(i), "name" + i));
+        }
+        store.putAll(values);
+
+        // writers keep running while ids are moved to the new shard
+        final InMemoryStore<Record> c = shard();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    store.put(new Record(Integer.toString(i), "updated" + i));
+                    assertEquals("updated" + i, store.get(Integer.toString(i)).getName());
+                }
+            });
+            final long moved = store.addShard("c", c);
+            writer.get();
+            assertTrue(moved > 0);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(false, store.isRebalancing());
+        assertTrue(c.size() > 0);
+        int total = 0;
+        for (final MutableStore<Record> shard : store.getShards().values()) {
+            total += ((InMemoryStore<Record>) shard).size();
+        }
+        assertEquals(1000, total);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("updated" + i, store.get(Integer.toString(i)).getName());
+        }
+    }
+
+    @Test
+    public void testFanOut() {
+        final AtomicInteger notifications = new AtomicInteger();
+        final StoreListener<Record> listener = new StoreListener<Record>() {
+            @Override
+            public void delete(final Record value) {
+                notifications.incrementAndGet();
+            }
+
+            @Override
+            public void delete(final String id) {
+                notifications.incrementAndGet();
+            }
+
+            @Override
+            public void deleteAllIds(final List<String> ids) {
+                notifications.incrementAndGet();
+            }
+
+            @Override
+            public void put(final Record value) {
+                notifications.incrementAndGet();
+            }
+
+            @Override
+            public void putAll(final List<Record> values) {
+                notifications.incrementAndGet();
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Map<String, InMemoryStore<Record>> shards = ImmutableMap
+                    .of("a", shard(), "b", shard(), "c", shard(), "d", shard());
+            final ShardedStore<Record> store = new ShardedStore<>(new TestStoreConfig<>(Record.class)
+                    .withExecutor(executor, 8).withListener(listener), shards);
+            final List<Record> values = Lists.newArrayList();
+            final List<String> ids = Lists.newArrayList();
+            for (int i = 0; i < 400; i++) {
+                values.add(new Record(Integer.toString(i), "name" + i));
+                ids.add(0, Integer.toString(i));
+            }
+            store.putAll(values);
+            assertEquals(1, notifications.get());
+            for (final InMemoryStore<Record> shard : shards.values()) {
+                assertTrue(shard.size() > 0);
+            }
+
+            // results are returned in order of request
+            ids.add(100, "missing");
+            final List<Record> result = store.getAll(ids);
+            assertEquals(400, result.size());
+            for (int i = 0; i < 400; i++) {
+                assertEquals(Integer.toString(399 - i), result.get(i).getId());
+            }
+
+            // delete ids 399 to 200, and the missing id
+            store.deleteAll(ids.subList(0, 201).toArray(new String[0]));
+            assertEquals(2, notifications.get());
+            assertEquals(200, store.getAll(ids).size());
+            assertNull(store.get("399"));
+            assertEquals("name0", store.get("0").getName());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.arakelian.jackson.utils.JacksonUtils;
+import com.arakelian.store.JacksonStoreObjectMapperTest.Gender;
+import com.arakelian.store.JacksonStoreObjectMapperTest.Person;
+import com.arakelian.store.json.JacksonStoreObjectMapper;
+import com.arakelian.store.memory.InMemoryStore;
+import com.arakelian.store.snapshot.SnapshotReader;
+import com.arakelian.store.snapshot.SnapshotWriter;
+import com.google.common.collect.Lists;
+
+public class SnapshotTest {
+    private final JacksonStoreObjectMapper<Person> mapper = new JacksonStoreObjectMapper<>(Person.class,
+            JacksonUtils.getObjectMapper());
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testCorruptSnapshot() throws Exception {
+        final Path path = directory.resolve("store.snapshot");
+        new SnapshotWriter<>(mapper, 256).write(populate(100), path);
+
+        // flip a byte within the records of a block in the middle of the file
+        final byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 0x55;
+        Files.write(path, bytes);
+        final SnapshotReader<Person> reader = new SnapshotReader<>(mapper);
+        assertThrows(StoreException.class, () -> reader.restore(path, store()));
+
+        // snapshot that ends before its trailer
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - Long.BYTES));
+        assertThrows(StoreException.class, () -> reader.restore(path, store()));
+
+        // length of first block is larger than file, and must not be allocated
+        final byte[] header = Files.readAllBytes(path);
+        ByteBuffer.wrap(header).putInt(Integer.BYTES + 1 + Integer.BYTES, Integer.MAX_VALUE);
+        Files.write(path, header);
+        final StoreException e = assertThrows(StoreException.class, () -> reader.restore(path, store()));
+        assertTrue(e.getMessage().startsWith("Corrupt block at offset 5"), e.getMessage());
+    }
+
+    @Test
+    public void testTruncatedSnapshotWaitsForBlocks() throws Exception {
+        final Path path = directory.resolve("store.snapshot");
+        new SnapshotWriter<>(mapper, 256).write(populate(100), path);
+        final byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length / 2));
+
+        // slow consumer is still running when reader reaches end of file
+        final AtomicInteger running = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final SnapshotReader<Person> reader = new SnapshotReader<>(mapper, executor, 4);
+            assertThrows(StoreException.class, () -> reader.read(path, values -> {
+                running.incrementAndGet();
+                try {
+                    Thread.sleep(50);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+            }));
+            assertEquals(0, running.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWriteAndRestore() throws Exception {
+        final InMemoryStore<Person> source = populate(1000);
+        final Path path = directory.resolve("store.snapshot");
+        assertEquals(1000, new SnapshotWriter<>(mapper, 1024).write(source, path));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final InMemoryStore<Person> target = store();
+            assertEquals(1000, new SnapshotReader<>(mapper, executor, 4).restore(path, target));
+            assertEquals(1000, target.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("name" + i, target.get(Integer.toString(i)).getName());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private InMemoryStore<Person> populate(final int size) {
+        final List<Person> values = Lists.newArrayList();
+        for (int i = 0; i < size; i++) {
+            final Person person = new Person();
+            person.setId(Integer.toString(i));
+            person.setName("name" + i);
+            person.setGender(Gender.MALE);
+            values.add(person);
+        }
+        final InMemoryStore<Person> store = store();
+        store.putAll(values);
+        return store;
+    }
+
+    private InMemoryStore<Person> store() {
+        return new InMemoryStore<>(new TestStoreConfig<>(Person.class));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.store.event.AbstractStoreEventHandler;
+import com.arakelian.store.event.StoreEvent;
+import com.arakelian.store.event.StoreEventPublisher;
+import com.arakelian.store.memory.InMemoryStore;
+import com.google.common.collect.Lists;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.dsl.ProducerType;
+
+public class StoreEventPublisherTest {
+    @Test
+    public void testBulkPublish() throws Exception {
+        final List<String> events = Lists.newArrayList();
+        final CountDownLatch latch = new CountDownLatch(200);
+        final AbstractStoreEventHandler<Record> handler = new AbstractStoreEventHandler<Record>() {
+            @Override
+            protected void handle(
+                    final StoreEvent<Record> event,
+                    final long sequence,
+                    final boolean endOfBatch) {
+                events.add(event.getAction() + " " + event.getId());
+                latch.countDown();
+            }
+        };
+
+        // bulk operations are larger than ring buffer, so they are published in several ranges
+        try (StoreEventPublisher<Record> publisher = new StoreEventPublisher<>(16, handler)) {
+            final InMemoryStore<Record> store = new InMemoryStore<>(
+                    new TestStoreConfig<>(Record.class).withPartitionSize(50).withListener(publisher));
+            final List<Record> values = Lists.newArrayList();
+            final List<String> ids = Lists.newArrayList();
+            for (int i = 0; i < 100; i++) {
+                values.add(new Record(Integer.toString(i), "name" + i));
+                ids.add(Integer.toString(i));
+            }
+            store.putAll(values);
+            store.deleteAll(ids.toArray(new String[0]));
+            latch.await(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(200, events.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("PUT " + i, events.get(i));
+            assertEquals("DELETE " + i, events.get(100 + i));
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(4000);
+        final StoreEventPublisher<Record> publisher = StoreEventPublisher.<Record> builder() //
+                .ringBufferSize(64) //
+                .producerType(ProducerType.MULTI) //
+                .waitStrategy(new SleepingWaitStrategy()) //
+                .handler((event, sequence, endOfBatch) -> {
+                    count.incrementAndGet();
+                    latch.countDown();
+                }) //
+                .build();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = Lists.newArrayList();
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        publisher.put(new Record(thread + "-" + i, "name" + i));
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            latch.await(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+            publisher.close();
+        }
+        assertEquals(4000, count.get());
+    }
+
+    @Test
+    public void testHealthMetrics() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(20);
+        final AbstractStoreEventHandler<Record> handler = new AbstractStoreEventHandler<Record>() {
+            @Override
+            protected void handle(
+                    final StoreEvent<Record> event,
+                    final long sequence,
+                    final boolean endOfBatch) throws InterruptedException {
+                release.await();
+                done.countDown();
+            }
+        };
+
+        try (StoreEventPublisher<Record> publisher = new StoreEventPublisher<>(8, handler)) {
+            assertEquals(8, publisher.getBufferSize());
+            assertEquals(8, publisher.getRemainingCapacity());
+            for (int i = 0; i < 8; i++) {
+                publisher.put(new Record(Integer.toString(i), "name" + i));
+            }
+            assertEquals(0, publisher.getRemainingCapacity());
+            assertEquals(8, publisher.getMaxHandlerLag());
+            assertEquals(8, publisher.getHandlerLags()[0]);
+
+            // ring buffer is full, so next writer blocks until handler catches up
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                final Future<?> future = executor.submit(() -> {
+                    for (int i = 8; i < 20; i++) {
+                        publisher.put(new Record(Integer.toString(i), "name" + i));
+                    }
+                });
+                Thread.sleep(50);
+                release.countDown();
+                future.get(10, TimeUnit.SECONDS);
+            } finally {
+                executor.shutdown();
+            }
+            done.await(10, TimeUnit.SECONDS);
+
+            assertEquals(20, publisher.getPublishedCount());
+            assertTrue(publisher.getBlockedCount() >= 1);
+            assertTrue(publisher.getBlockedTotalMillis() > 0);
+
+            // processing time is reported for each handler, in the order handlers were added
+            assertEquals(1, publisher.getHandlerP99Micros().length);
+            assertTrue(publisher.getHandlerP99Micros()[0] > 0);
+            assertTrue(publisher.getHandlerP99Micros()[0] >= publisher.getHandlerP50Micros()[0]);
+        }
+
+        // handler records its time after the event is handled; closing waits for it
+        assertEquals(20, handler.getProcessingTime().getCount());
+        assertTrue(handler.getProcessingTime().getMax() > 0);
+    }
+}
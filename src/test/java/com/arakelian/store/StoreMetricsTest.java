@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.store.memory.InMemoryStore;
+import com.arakelian.store.metrics.Histogram;
+import com.arakelian.store.metrics.InstrumentedMutableStore;
+import com.arakelian.store.metrics.StoreMetrics;
+import com.arakelian.store.metrics.StoreMetrics.Operation;
+import com.google.common.collect.Lists;
+
+public class StoreMetricsTest {
+    @Test
+    public void testHistogram() {
+        final Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000, histogram.getMax());
+        assertEquals(50_000.5, histogram.getMean(), 0.001);
+        assertWithin(50_000, histogram.getPercentile(50));
+        assertWithin(99_000, histogram.getPercentile(99));
+        assertWithin(99_900, histogram.getPercentile(99.9));
+        assertEquals(100_000, histogram.getPercentile(100));
+
+        // small values are exact
+        final Histogram small = new Histogram();
+        small.record(3);
+        small.record(-1);
+        assertEquals(0, small.getPercentile(50));
+        assertEquals(3, small.getPercentile(100));
+    }
+
+    @Test
+    public void testHistogramConcurrentRecord() throws InterruptedException {
+        final Histogram histogram = new Histogram();
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(40_000, histogram.snapshot().getCount());
+        assertWithin(5_000, histogram.getPercentile(50));
+        assertEquals(10_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testHistogramInterval() {
+        final Histogram histogram = new Histogram();
+        for (int i = 0; i < 1_000; i++) {
+            histogram.record(1_000_000);
+        }
+        final Histogram.Snapshot earlier = histogram.snapshot();
+        for (int i = 0; i < 10; i++) {
+            histogram.record(100);
+        }
+
+        // cumulative percentiles are dominated by the earlier values
+        assertWithin(1_000_000, histogram.getPercentile(50));
+
+        final Histogram.Snapshot interval = histogram.snapshot().since(earlier);
+        assertEquals(10, interval.getCount());
+        assertEquals(1_000, interval.getSum());
+        assertWithin(100, interval.getPercentile(50));
+        assertWithin(100, interval.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+        histogram.record(7);
+        assertEquals(7, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void testInstrumentedStore() throws JMException {
+        final StoreMetrics metrics = new StoreMetrics("test");
+        final InstrumentedMutableStore<Record> store = new InstrumentedMutableStore<>(
+                new InMemoryStore<>(new TestStoreConfig<>(Record.class).withMetrics(metrics)
+                        .withPartitionSize(2)),
+                metrics);
+
+        store.putAll(Lists.newArrayList(new Record("1", "one"), new Record("2", "two")));
+        store.put(new Record("3", "three"));
+        store.get("1");
+        store.get("4");
+        store.getAll("1", "2", "3", "5", "6");
+        store.deleteAll("1", "2");
+
+        assertEquals(3, metrics.getRecordsWritten());
+        assertEquals(4, metrics.getRecordsRead());
+        assertEquals(3, metrics.getRecordsMissed());
+        assertEquals(2, metrics.getRecordsDeleted());
+        assertEquals(3, metrics.getGetAllPartitionCount());
+        assertEquals(2, metrics.getOperation(Operation.GET).getCount());
+        assertEquals(1, metrics.getOperation(Operation.DELETE_ALL).getCount());
+        assertTrue(metrics.getOperation(Operation.PUT).getMaxMicros() > 0);
+
+        // counters and latencies are visible through JMX
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        metrics.register();
+        try {
+            assertEquals(3L, server.getAttribute(
+                    new ObjectName("com.arakelian.store:type=StoreMetrics,name=\"test\""),
+                    "RecordsWritten"));
+            assertEquals(2L, server.getAttribute(
+                    new ObjectName("com.arakelian.store:type=StoreMetrics,name=\"test\",operation=get"),
+                    "Count"));
+        } finally {
+            metrics.unregister();
+        }
+        assertTrue(server.queryNames(new ObjectName("com.arakelian.store:*"), null).isEmpty());
+    }
+
+    private void assertWithin(final long expected, final long actual) {
+        assertTrue(
+                actual >= expected && actual <= expected * 1.07,
+                "Expected " + actual + " to be within 7% above " + expected);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import com.arakelian.store.event.StoreListener;
+import com.arakelian.store.feature.HasId;
+import com.arakelian.store.metrics.StoreMetrics;
+import com.arakelian.store.wal.WriteAheadLog;
+import com.google.common.collect.Lists;
+
+public class TestStoreConfig<T extends HasId> implements StoreConfig<T> {
+    private final Class<T> clazz;
+
+    private final List<StoreListener<T>> listeners = Lists.newArrayList();
+
+    private Executor executor;
+
+    private StoreMetrics metrics;
+
+    private int maxInFlightPartitions = StoreConfig.super.getMaxInFlightPartitions();
+
+    private int partitionSize = 10;
+
+    private boolean softDeletes;
+
+    private WriteAheadLog<T> writeAheadLog;
+
+    public TestStoreConfig(final Class<T> clazz) {
+        this.clazz = clazz;
+        this.softDeletes = StoreConfig.super.isSoftDeletes();
+    }
+
+    @Override
+    public Class<T> getClazz() {
+        return clazz;
+    }
+
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public List<StoreListener<T>> getListeners() {
+        return listeners;
+    }
+
+    @Override
+    public int getMaxInFlightPartitions() {
+        return maxInFlightPartitions;
+    }
+
+    @Override
+    public StoreMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public int getPartitionSize() {
+        return partitionSize;
+    }
+
+    @Override
+    public WriteAheadLog<T> getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    @Override
+    public boolean isSoftDeletes() {
+        return softDeletes;
+    }
+
+    public TestStoreConfig<T> withExecutor(final Executor executor, final int maxInFlightPartitions) {
+        this.executor = executor;
+        this.maxInFlightPartitions = maxInFlightPartitions;
+        return this;
+    }
+
+    public TestStoreConfig<T> withListener(final StoreListener<T> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public TestStoreConfig<T> withMetrics(final StoreMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public TestStoreConfig<T> withPartitionSize(final int partitionSize) {
+        this.partitionSize = partitionSize;
+        return this;
+    }
+
+    public TestStoreConfig<T> withSoftDeletes(final boolean softDeletes) {
+        this.softDeletes = softDeletes;
+        return this;
+    }
+
+    public TestStoreConfig<T> withWriteAheadLog(final WriteAheadLog<T> writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+        return this;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.arakelian.store;
+
+import static com.arakelian.store.TestPeople.person;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.arakelian.jackson.utils.JacksonUtils;
+import com.arakelian.store.JacksonStoreObjectMapperTest.Person;
+import com.arakelian.store.json.JacksonStoreObjectMapper;
+import com.arakelian.store.json.StoreObjectMapper;
+import com.arakelian.store.memory.InMemoryStore;
+import com.arakelian.store.wal.FsyncPolicy;
+import com.arakelian.store.wal.WriteAheadLog;
+
+public class WriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testCheckpoint() {
+        try (WriteAheadLog<Person> wal = open(FsyncPolicy.OS)) {
+            final InMemoryStore<Person> store = store(wal);
+            store.put(person("1", "one"));
+            wal.checkpoint();
+            store.put(person("2", "two"));
+        }
+
+        // changes before checkpoint are assumed to be durable elsewhere
+        try (WriteAheadLog<Person> wal = open(FsyncPolicy.OS)) {
+            final InMemoryStore<Person> store = store(wal);
+            store.recover();
+            assertNull(store.get("1"));
+            assertEquals("two", store.get("2").getName());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    public void testReplay(final FsyncPolicy policy) throws Exception {
+        try (WriteAheadLog<Person> wal = open(policy)) {
+            final InMemoryStore<Person> store = store(wal);
+
+            // concurrent writers are grouped into shared commits
+            final ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    final int thread = t;
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < 100; i++) {
+                            store.put(person(thread + "-" + i, "name" + i));
+                        }
+                    }));
+                }
+                for (final Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            store.put(person("0-0", "updated"));
+            store.delete("1-0");
+            store.deleteAll("2-0", "3-0");
+            assertEquals(797, store.size());
+        }
+
+        // store contents are lost, but log survives
+        try (WriteAheadLog<Person> wal = open(policy)) {
+            final InMemoryStore<Person> store = store(wal);
+            store.recover();
+            assertEquals(797, store.size());
+            assertEquals("updated", store.get("0-0").getName());
+            assertEquals("name99", store.get("7-99").getName());
+            assertNull(store.get("1-0"));
+            assertNull(store.get("3-0"));
+        }
+    }
+
+    @Test
+    public void testReplayKeepsTimestamps() {
+        final Instant then = Instant.parse("2020-01-01T00:00:00Z");
+        final StoreObjectMapper<Record> mapper = Record.mapper();
+        try (WriteAheadLog<Record> wal = new WriteAheadLog<>(directory, mapper, FsyncPolicy.OS)) {
+            final InMemoryStore<Record> store = new InMemoryStore<>(
+                    new TestStoreConfig<>(Record.class).withWriteAheadLog(wal), 16,
+                    Clock.fixed(then, ZoneOffset.UTC));
+            store.put(new Record("1", "one"));
+            store.put(new Record("2", "two"));
+            store.delete("2");
+        }
+
+        // replay happens much later, but values and tombstones keep their original times
+        try (WriteAheadLog<Record> wal = new WriteAheadLog<>(directory, mapper, FsyncPolicy.OS)) {
+            final InMemoryStore<Record> store = new InMemoryStore<>(
+                    new TestStoreConfig<>(Record.class).withWriteAheadLog(wal), 16,
+                    Clock.fixed(then.plusSeconds(3600), ZoneOffset.UTC));
+            store.recover();
+            final Record one = store.get("1");
+            assertEquals(then, one.getCreated().toInstant());
+            assertEquals(then, one.getUpdated().toInstant());
+            assertNull(store.get("2"));
+
+            final ZonedDateTime after = ZonedDateTime.ofInstant(then.plusSeconds(1), ZoneOffset.UTC);
+            assertEquals(List.of("2"), store.deletedIds(after).collect(Collectors.toList()));
+            assertTrue(store.deletedIds(ZonedDateTime.ofInstant(then, ZoneOffset.UTC)) //
+                    .collect(Collectors.toList()).isEmpty());
+        }
+    }
+
+    private WriteAheadLog<Person> open(final FsyncPolicy policy) {
+        return new WriteAheadLog<>(directory,
+                new JacksonStoreObjectMapper<>(Person.class, JacksonUtils.getObjectMapper()), policy);
+    }
+
+    private InMemoryStore<Person> store(final WriteAheadLog<Person> wal) {
+        return new InMemoryStore<>(new TestStoreConfig<>(Person.class).withWriteAheadLog(wal));
+    }
+}
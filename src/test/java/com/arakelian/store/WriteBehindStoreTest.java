@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.store.memory.InMemoryStore;
+import com.arakelian.store.writebehind.WriteBehindStore;
+
+public class WriteBehindStoreTest {
+    /** Store that counts bulk puts **/
+    private static class CountingStore extends InMemoryStore<Record> {
+        private final AtomicInteger putAlls = new AtomicInteger();
+
+        private CountingStore() {
+            super(new TestStoreConfig<>(Record.class).withSoftDeletes(false));
+        }
+
+        @Override
+        public void putAll(final Collection<Record> values) {
+            putAlls.incrementAndGet();
+            super.putAll(values);
+        }
+    }
+
+    @Test
+    public void testBackpressure() {
+        final CountingStore delegate = new CountingStore();
+        try (WriteBehindStore<Record> store = new WriteBehindStore<>(delegate, 10, 5, Duration.ofHours(1))) {
+            for (int i = 0; i < 100; i++) {
+                store.put(new Record(Integer.toString(i), "name" + i));
+                assertTrue(store.getBufferedCount() <= 10);
+            }
+            assertTrue(store.getBlockedCount() > 0);
+        }
+        assertEquals(100, delegate.size());
+    }
+
+    @Test
+    public void testCoalescing() {
+        final CountingStore delegate = new CountingStore();
+        delegate.put(new Record("2", "two"));
+        delegate.putAlls.set(0);
+
+        try (WriteBehindStore<Record> store = new WriteBehindStore<>(delegate, 100, 10,
+                Duration.ofHours(1))) {
+            for (int i = 0; i < 100; i++) {
+                store.put(new Record("1", "name" + i));
+            }
+            store.delete("2");
+
+            // reads see buffered changes before they reach the delegate
+            assertEquals("name99", store.get("1").getName());
+            assertNull(store.get("2"));
+            assertEquals(1, store.getAll("1", "2").size());
+            assertNull(delegate.get("1"));
+            assertEquals("two", delegate.get("2").getName());
+
+            assertEquals(2, store.flush());
+            assertEquals(99, store.getCoalescedCount());
+            assertEquals(0, store.getBufferedCount());
+        }
+        assertEquals(1, delegate.putAlls.get());
+        assertEquals("name99", delegate.get("1").getName());
+        assertNull(delegate.get("2"));
+    }
+}